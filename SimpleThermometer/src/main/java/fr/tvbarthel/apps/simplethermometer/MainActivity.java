@@ -1,13 +1,15 @@
 package fr.tvbarthel.apps.simplethermometer;
 
-import android.content.Intent;
 import android.content.SharedPreferences;
+import android.graphics.Bitmap;
 import android.graphics.PorterDuff;
+import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v7.app.ActionBarActivity;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
 import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
@@ -17,9 +19,13 @@ import fr.tvbarthel.apps.simplethermometer.dialogfragments.AboutDialogFragment;
 import fr.tvbarthel.apps.simplethermometer.dialogfragments.ChangeColorDialogFragment;
 import fr.tvbarthel.apps.simplethermometer.dialogfragments.SharedPreferenceColorPickerDialogFragment;
 import fr.tvbarthel.apps.simplethermometer.dialogfragments.TemperatureUnitPickerDialogFragment;
+import fr.tvbarthel.apps.simplethermometer.history.HistoryWriter;
+import fr.tvbarthel.apps.simplethermometer.history.RecentReadings;
 import fr.tvbarthel.apps.simplethermometer.utils.ConnectivityUtils;
+import fr.tvbarthel.apps.simplethermometer.utils.DisplayState;
 import fr.tvbarthel.apps.simplethermometer.utils.PreferenceUtils;
-import fr.tvbarthel.apps.simplethermometer.widget.STWidgetProvider;
+import fr.tvbarthel.apps.simplethermometer.utils.SparklineRenderer;
+import fr.tvbarthel.apps.simplethermometer.widget.WidgetUpdateDispatcher;
 
 public class MainActivity extends ActionBarActivity implements SharedPreferences.OnSharedPreferenceChangeListener,
 		ChangeColorDialogFragment.Listener, TemperatureLoader.Listener {
@@ -40,6 +46,8 @@ public class MainActivity extends ActionBarActivity implements SharedPreferences
 	private ImageView mImageViewRain;
 	//ImageView of the storm weather icon
 	private ImageView mImageViewStorm;
+	//ImageView of the trend of the recent temperatures
+	private ImageView mImageViewSparkline;
 
 	/*
 		Other
@@ -70,6 +78,7 @@ public class MainActivity extends ActionBarActivity implements SharedPreferences
 		mImageViewChange = (ImageView) findViewById(R.id.imageViewChange);
 		mImageViewRain = (ImageView) findViewById(R.id.imageViewRain);
 		mImageViewStorm = (ImageView) findViewById(R.id.imageViewStorm);
+		mImageViewSparkline = (ImageView) findViewById(R.id.imageViewSparkline);
 
 		//Retrieve the default shared preferences instance
 		mDefaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
@@ -88,6 +97,10 @@ public class MainActivity extends ActionBarActivity implements SharedPreferences
 		setIconColor();
 		//Display the temperature
 		displayLastKnownTemperature();
+		//Highlight the icon of the last known weather
+		displayLastKnownWeather();
+		//Draw the trend of the recent temperatures
+		displaySparkline();
 		//refresh the temperature if it's outdated
 		refreshTemperatureIfOutdated();
 	}
@@ -101,6 +114,8 @@ public class MainActivity extends ActionBarActivity implements SharedPreferences
 		hideToastIfDisplayed();
 		//Pause the temperature Loader
 		mTemperatureLoader.pause();
+		//Write the pending observations right away, the process may be killed in the background
+		HistoryWriter.getInstance(this).flush();
 	}
 
 	@Override
@@ -139,37 +154,46 @@ public class MainActivity extends ActionBarActivity implements SharedPreferences
 	 */
 	@Override
 	public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String sharedPreferenceKey) {
-		boolean broadcastChangeToWidgets = false;
+		int changedFields = 0;
+		//the displayed values may have changed, the display state has to be built again
+		DisplayState.invalidate(sharedPreferenceKey);
 		//the shared preference with the key "sharedPreferenceKey" has changed
 		if (sharedPreferenceKey.equals(PreferenceUtils.PREF_KEY_BACKGROUND_COLOR)) {
-			//Set the new background color stored in the SharedPreferences "sharedPreferences"
-			setBackgroundColor(sharedPreferences);
-			broadcastChangeToWidgets = true;
+			//Set the new background color
+			setBackgroundColor();
+			changedFields = WidgetUpdateDispatcher.FIELD_BACKGROUND_COLOR;
 		} else if (sharedPreferenceKey.equals(PreferenceUtils.PREF_KEY_TEXT_COLOR)) {
-			//Set the new text color stored in the SharedPreferences "sharedPreferences"
-			setTextColor(sharedPreferences);
-			broadcastChangeToWidgets = true;
+			//Set the new text color
+			setTextColor();
+			displaySparkline();
+			changedFields = WidgetUpdateDispatcher.FIELD_TEXT_COLOR;
 		} else if (sharedPreferenceKey.equals(PreferenceUtils.PREF_KEY_ICON_COLOR)) {
-			//Set the new icon color stored in the SharedPreferences "sharedPreferences"
-			setIconColor(sharedPreferences);
-			broadcastChangeToWidgets = true;
+			//Set the new icon color
+			setIconColor();
+			changedFields = WidgetUpdateDispatcher.FIELD_ICON_COLOR;
 		} else if (sharedPreferenceKey.equals(PreferenceUtils.PREF_KEY_TEMPERATURE_UNIT_STRING)) {
-			//Display the temperature with the new unit stored in the SharedPreferences "sharedPreferences"
+			//Display the temperature with the new unit
 			displayLastKnownTemperature();
-			broadcastChangeToWidgets = true;
+			changedFields = WidgetUpdateDispatcher.FIELD_TEMPERATURE;
 		} else if (sharedPreferenceKey.equals(PreferenceUtils.PREF_KEY_LAST_TEMPERATURE_IN_CELSIUS)) {
-			//Display the temperature with the new value stored in the SharedPreferences "sharedPreferences"
+			//Display the temperature with the new value
 			//This mainly happens when the App is displayed and an app widget background service
 			//update the temperature value.
 			displayLastKnownTemperature();
-			broadcastChangeToWidgets = true;
+			displaySparkline();
+			changedFields = WidgetUpdateDispatcher.FIELD_TEMPERATURE;
+		} else if (sharedPreferenceKey.equals(PreferenceUtils.PREF_KEY_LAST_UPDATE_TIME)) {
+			//Highlight the icon of the new weather
+			//The weather is saved with the time of the update, even if the temperature has not changed.
+			displayLastKnownWeather();
+			displaySparkline();
+			changedFields = WidgetUpdateDispatcher.FIELD_WEATHER;
 		}
 
-		if (broadcastChangeToWidgets) {
+		if (changedFields != 0) {
 			//A change has to be propagate to the app widgets
-			Intent intent = new Intent(this, STWidgetProvider.class);
-			intent.setAction(STWidgetProvider.APPWIDGET_DATA_CHANGED);
-			sendBroadcast(intent);
+			//the changes made together, like a new temperature, are sent in a single update
+			WidgetUpdateDispatcher.getInstance(this).notifyChanged(changedFields);
 		}
 
 	}
@@ -224,23 +248,68 @@ public class MainActivity extends ActionBarActivity implements SharedPreferences
 
 	/**
 	 * Display the temperature with a unit symbol.
-	 * The temperature and the unit are retrieved from {@code mDefaultSharedPreferences}
+	 * The temperature and the unit are retrieved from the {@link fr.tvbarthel.apps.simplethermometer.utils.DisplayState}
 	 * so the temperature should be up to date.
 	 */
 	private void displayLastKnownTemperature() {
-		final String temperature = PreferenceUtils.getTemperatureAsString(this, mDefaultSharedPreferences);
+		final String temperature = DisplayState.get(this).getTemperature();
 		mTextViewTemperature.setText(temperature);
 	}
 
 	/**
-	 * Retrieve the icon color stored in a {@link android.content.SharedPreferences},
-	 * and apply a color filter to the icon ImageViews.
+	 * Highlight the icon of the last known weather by dimming the other ones.
+	 * The weather is retrieved from the {@link fr.tvbarthel.apps.simplethermometer.utils.DisplayState},
+	 * all the icons are opaque if the weather is unknown.
+	 */
+	private void displayLastKnownWeather() {
+		final DisplayState displayState = DisplayState.get(this);
+		setImageAlpha(mImageViewFair, displayState.getWeatherIconAlpha(DisplayState.WEATHER_ICON_FAIR));
+		setImageAlpha(mImageViewChange, displayState.getWeatherIconAlpha(DisplayState.WEATHER_ICON_CHANGE));
+		setImageAlpha(mImageViewRain, displayState.getWeatherIconAlpha(DisplayState.WEATHER_ICON_RAIN));
+		setImageAlpha(mImageViewStorm, displayState.getWeatherIconAlpha(DisplayState.WEATHER_ICON_STORM));
+	}
+
+	/**
+	 * Set the alpha of the image drawn by {@code imageView}.
 	 *
-	 * @param sharedPreferences the {@link android.content.SharedPreferences} used to retrieve the icon color
+	 * @param imageView the {@link android.widget.ImageView}
+	 * @param alpha     the alpha, from 0 (transparent) to 255 (opaque)
+	 */
+	@SuppressWarnings("deprecation")
+	private static void setImageAlpha(ImageView imageView, int alpha) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			imageView.setImageAlpha(alpha);
+		} else {
+			//setImageAlpha() does not exist before Jelly Bean, the deprecated method does the same
+			imageView.setAlpha(alpha);
+		}
+	}
+
+	/**
+	 * Draw the trend of the recent temperatures with the text color,
+	 * the sparkline is hidden until two temperatures are known.
+	 */
+	private void displaySparkline() {
+		final Bitmap sparkline = SparklineRenderer.render(RecentReadings.getInstance(this),
+				getResources().getDimensionPixelSize(R.dimen.sparkline_width),
+				getResources().getDimensionPixelSize(R.dimen.sparkline_height),
+				getResources().getDimension(R.dimen.sparkline_stroke_width),
+				DisplayState.get(this).getTextColor());
+		if (sparkline == null) {
+			mImageViewSparkline.setVisibility(View.GONE);
+		} else {
+			mImageViewSparkline.setImageBitmap(sparkline);
+			mImageViewSparkline.setVisibility(View.VISIBLE);
+		}
+	}
+
+	/**
+	 * Retrieve the icon color from the {@link fr.tvbarthel.apps.simplethermometer.utils.DisplayState},
+	 * and apply a color filter to the icon ImageViews.
 	 */
-	private void setIconColor(SharedPreferences sharedPreferences) {
+	private void setIconColor() {
 		//Retrieve the icon color
-		final int iconColor = PreferenceUtils.getIconColor(this, sharedPreferences);
+		final int iconColor = DisplayState.get(this).getIconColor();
 		//Apply a color Filter to the four ImageViews
 		mImageViewFair.setColorFilter(iconColor, PorterDuff.Mode.SRC_ATOP);
 		mImageViewChange.setColorFilter(iconColor, PorterDuff.Mode.SRC_ATOP);
@@ -248,41 +317,24 @@ public class MainActivity extends ActionBarActivity implements SharedPreferences
 		mImageViewStorm.setColorFilter(iconColor, PorterDuff.Mode.SRC_ATOP);
 	}
 
-	private void setIconColor() {
-		setIconColor(mDefaultSharedPreferences);
-	}
-
 	/**
-	 * Retrieve the text color stored in a {@link android.content.SharedPreferences},
+	 * Retrieve the text color from the {@link fr.tvbarthel.apps.simplethermometer.utils.DisplayState},
 	 * and set it to the textViews.
-	 *
-	 * @param sharedPreferences the {@link android.content.SharedPreferences} used to retrieve the text color
 	 */
-	private void setTextColor(SharedPreferences sharedPreferences) {
+	private void setTextColor() {
 		//Retrieve the text color
-		final int textColor = PreferenceUtils.getTextColor(this, sharedPreferences);
+		final int textColor = DisplayState.get(this).getTextColor();
 		//Set the text color to the temperature textView
 		mTextViewTemperature.setTextColor(textColor);
 	}
 
-	private void setTextColor() {
-		setTextColor(mDefaultSharedPreferences);
-	}
-
-
 	/**
-	 * Retrieve the background color stored in a {@link android.content.SharedPreferences},
+	 * Retrieve the background color from the {@link fr.tvbarthel.apps.simplethermometer.utils.DisplayState},
 	 * and use it to set the background color of {@code mRelativeLayoutBackground}.
-	 *
-	 * @param sharedPreferences the {@link android.content.SharedPreferences} used to retrieve the background color
 	 */
-	private void setBackgroundColor(SharedPreferences sharedPreferences) {
-		final int backgroundColor = PreferenceUtils.getBackgroundColor(this, sharedPreferences);
-		mRelativeLayoutBackground.setBackgroundColor(backgroundColor);
-	}
-
 	private void setBackgroundColor() {
-		setBackgroundColor(mDefaultSharedPreferences);
+		final int backgroundColor = DisplayState.get(this).getBackgroundColor();
+		mRelativeLayoutBackground.setBackgroundColor(backgroundColor);
 	}
 
 	/**
@@ -341,11 +393,13 @@ public class MainActivity extends ActionBarActivity implements SharedPreferences
 	 * @param manualRefresh true if it's a manual refresh request
 	 */
 	private void refreshTemperatureIfOutdated(boolean manualRefresh) {
-		//Get the update Interval
-		long updateInterval = TemperatureLoader.UPDATE_INTERVAL_IN_MILLIS;
-		if (manualRefresh) updateInterval = TemperatureLoader.UPDATE_INTERVAL_IN_MILLIS_MANUAL;
+		//Ask the scheduler if an update is due
+		final RefreshScheduler refreshScheduler = RefreshScheduler.getInstance(this);
+		final long now = System.currentTimeMillis();
+		final boolean refreshNeeded = manualRefresh ? refreshScheduler.isManualRefreshAllowed(now)
+				: refreshScheduler.isRefreshDue(now);
 
-		if (TemperatureLoader.isTemperatureOutdated(mDefaultSharedPreferences, updateInterval)) {
+		if (refreshNeeded) {
 			if (!ConnectivityUtils.isNetworkConnected(this)) {
 				//there is no connection available
 				makeTextToast(R.string.error_message_network_not_connected);
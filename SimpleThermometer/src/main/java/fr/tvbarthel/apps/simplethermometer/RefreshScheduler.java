@@ -0,0 +1,298 @@
+package fr.tvbarthel.apps.simplethermometer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import java.util.Calendar;
+import java.util.Random;
+
+import fr.tvbarthel.apps.simplethermometer.history.RecentReadings;
+import fr.tvbarthel.apps.simplethermometer.utils.PreferenceUtils;
+
+/**
+ * Decide when the temperature should be requested again, for the application and the widgets.
+ * <p/>
+ * The interval between two updates follows the trend of the temperature: the faster the temperature
+ * changes, the sooner it is requested again. The interval is doubled during the night.
+ * <p/>
+ * After a failure, the update is retried with an exponential backoff. The backoff is randomized
+ * so that the retries are spread. The number of requests sent each day is limited by a budget,
+ * part of it being kept for the manual refreshes.
+ * <p/>
+ * The failures and the budget are stored in their own SharedPreferences so that they survive the process.
+ */
+public class RefreshScheduler {
+
+	//name of the SharedPreferences of the scheduler
+	private static final String SHARED_PREFERENCES_NAME = "RefreshScheduler";
+	//Used to store the number of failures since the last successful update
+	private static final String PREF_KEY_FAILURE_COUNT = "PrefKeyFailureCount";
+	//Used to store the time before which a failed update is not retried (in Millis)
+	private static final String PREF_KEY_RETRY_TIME = "PrefKeyRetryTime";
+	//Used to store the day of the request budget
+	private static final String PREF_KEY_BUDGET_DAY = "PrefKeyBudgetDay";
+	//Used to store the number of requests sent during the day of the budget
+	private static final String PREF_KEY_BUDGET_COUNT = "PrefKeyBudgetCount";
+
+	//min interval between two manual updates (in Millis)
+	public static final long MANUAL_REFRESH_INTERVAL_IN_MILLIS = 600000;
+	//interval used when the trend of the temperature is unknown (in Millis)
+	public static final long DEFAULT_REFRESH_INTERVAL_IN_MILLIS = 3600000;
+	//min interval between two automatic updates (in Millis)
+	public static final long MIN_REFRESH_INTERVAL_IN_MILLIS = 1200000;
+	//max interval between two automatic updates, during the day (in Millis)
+	public static final long MAX_REFRESH_INTERVAL_IN_MILLIS = 7200000;
+	//change of temperature expected between two automatic updates (in Celsius)
+	private static final float EXPECTED_CHANGE_IN_CELSIUS = 0.5f;
+	//the readings used to measure the trend of the temperature (in Millis)
+	private static final long TREND_WINDOW_IN_MILLIS = 10800000;
+	//the night, during which the interval is multiplied by NIGHT_FACTOR (in Hours of the day)
+	private static final int NIGHT_START_HOUR = 23;
+	private static final int NIGHT_END_HOUR = 6;
+	private static final int NIGHT_FACTOR = 2;
+	//backoff after the first failure, doubled after each following failure (in Millis)
+	private static final long MIN_BACKOFF_IN_MILLIS = 300000;
+	//max backoff after a failure (in Millis)
+	private static final long MAX_BACKOFF_IN_MILLIS = 7200000;
+	//max number of requests sent each day
+	public static final int DAILY_REQUEST_BUDGET = 48;
+	//number of requests of the daily budget kept for the manual updates
+	private static final int MANUAL_REQUEST_RESERVE = 8;
+	//time after which a request without an answer is not waited for anymore (in Millis)
+	private static final long REQUEST_TIMEOUT_IN_MILLIS = 60000;
+
+	private static RefreshScheduler sInstance;
+
+	//the DefaultSharedPreferences where the time of the last update is stored
+	private final SharedPreferences mDefaultSharedPreferences;
+	//the SharedPreferences of the scheduler
+	private final SharedPreferences mSharedPreferences;
+	private final RecentReadings mRecentReadings;
+	private final Random mRandom;
+	//number of failures since the last successful update
+	private int mFailureCount;
+	//time before which a failed update is not retried (in Millis)
+	private long mRetryTime;
+	//day of the budget, see getDay(long)
+	private int mBudgetDay;
+	//number of requests sent during mBudgetDay
+	private int mBudgetCount;
+	//time of the request waiting for an answer (in Millis), 0 if there is none
+	private long mPendingRequestTime;
+
+	/**
+	 * Return the shared instance of the scheduler.
+	 *
+	 * @param context the {@link android.content.Context} used to read the stored state
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler}
+	 */
+	public static synchronized RefreshScheduler getInstance(Context context) {
+		if (sInstance == null) {
+			final Context applicationContext = context.getApplicationContext();
+			sInstance = new RefreshScheduler(PreferenceManager.getDefaultSharedPreferences(applicationContext),
+					applicationContext.getSharedPreferences(SHARED_PREFERENCES_NAME, Context.MODE_PRIVATE),
+					RecentReadings.getInstance(applicationContext));
+		}
+		return sInstance;
+	}
+
+	private RefreshScheduler(SharedPreferences defaultSharedPreferences, SharedPreferences sharedPreferences,
+							 RecentReadings recentReadings) {
+		mDefaultSharedPreferences = defaultSharedPreferences;
+		mSharedPreferences = sharedPreferences;
+		mRecentReadings = recentReadings;
+		mRandom = new Random();
+		mFailureCount = sharedPreferences.getInt(PREF_KEY_FAILURE_COUNT, 0);
+		mRetryTime = sharedPreferences.getLong(PREF_KEY_RETRY_TIME, 0);
+		mBudgetDay = sharedPreferences.getInt(PREF_KEY_BUDGET_DAY, 0);
+		mBudgetCount = sharedPreferences.getInt(PREF_KEY_BUDGET_COUNT, 0);
+	}
+
+	/**
+	 * Check if an automatic update of the temperature is due.
+	 *
+	 * @param now the current time (in Millis)
+	 * @return true if the temperature should be requested, false otherwise.
+	 */
+	public synchronized boolean isRefreshDue(long now) {
+		return now >= getNextRefreshTime(now);
+	}
+
+	/**
+	 * Check if a manual update of the temperature can be made.
+	 * A manual update ignores the backoff but not the budget, and is not made if the temperature is
+	 * younger than {@link #MANUAL_REFRESH_INTERVAL_IN_MILLIS}.
+	 *
+	 * @param now the current time (in Millis)
+	 * @return true if the temperature should be requested, false otherwise.
+	 */
+	public synchronized boolean isManualRefreshAllowed(long now) {
+		return getRequestCount(now) < DAILY_REQUEST_BUDGET
+				&& TemperatureLoader.isTemperatureOutdated(getLastUpdateTime(), now, MANUAL_REFRESH_INTERVAL_IN_MILLIS);
+	}
+
+	/**
+	 * Return the time of the next automatic update.
+	 *
+	 * @param now the current time (in Millis)
+	 * @return the time from which the temperature should be requested (in Millis)
+	 */
+	public synchronized long getNextRefreshTime(long now) {
+		long nextRefreshTime = getLastUpdateTime() + getRefreshInterval(now);
+		if (mFailureCount > 0) {
+			//wait for the end of the backoff
+			nextRefreshTime = Math.max(nextRefreshTime, mRetryTime);
+		}
+		if (mPendingRequestTime != 0) {
+			//wait for the answer of the pending request
+			nextRefreshTime = Math.max(nextRefreshTime, mPendingRequestTime + REQUEST_TIMEOUT_IN_MILLIS);
+		}
+		if (getRequestCount(now) >= DAILY_REQUEST_BUDGET - MANUAL_REQUEST_RESERVE) {
+			//the budget of the day is spent, wait for the next day
+			nextRefreshTime = Math.max(nextRefreshTime, getStartOfNextDay(now));
+		}
+		return nextRefreshTime;
+	}
+
+	/**
+	 * Count a request in the budget of the day.
+	 * Should be called each time the weather is requested to the OpenWeatherMap Api,
+	 * no automatic update is due until the request succeeds or fails.
+	 *
+	 * @param now the current time (in Millis)
+	 */
+	public synchronized void onRequestSent(long now) {
+		final int day = getDay(now);
+		if (day != mBudgetDay) {
+			mBudgetDay = day;
+			mBudgetCount = 0;
+		}
+		mBudgetCount++;
+		mPendingRequestTime = now;
+		final SharedPreferences.Editor editor = mSharedPreferences.edit();
+		editor.putInt(PREF_KEY_BUDGET_DAY, mBudgetDay);
+		editor.putInt(PREF_KEY_BUDGET_COUNT, mBudgetCount);
+		PreferenceUtils.apply(editor);
+	}
+
+	/**
+	 * Forget the previous failures, the next update follows the trend of the temperature again.
+	 */
+	public synchronized void onRefreshSucceeded() {
+		mPendingRequestTime = 0;
+		if (mFailureCount != 0) {
+			mFailureCount = 0;
+			mRetryTime = 0;
+			storeFailures();
+		}
+	}
+
+	/**
+	 * Delay the next update by a randomized exponential backoff.
+	 *
+	 * @param now the current time (in Millis)
+	 */
+	public synchronized void onRefreshFailed(long now) {
+		mPendingRequestTime = 0;
+		mFailureCount++;
+		final long backoff = Math.min(MIN_BACKOFF_IN_MILLIS << Math.min(mFailureCount - 1, 16), MAX_BACKOFF_IN_MILLIS);
+		//wait between half the backoff and the whole backoff
+		mRetryTime = now + backoff / 2 + (long) (mRandom.nextDouble() * (backoff / 2));
+		storeFailures();
+	}
+
+	/*
+		Private Methods
+	 */
+
+	/**
+	 * Return the interval between two automatic updates, according to the trend of the temperature
+	 * and to the time of the day.
+	 */
+	private long getRefreshInterval(long now) {
+		final float changeRate = getChangeRateInCelsiusPerMillis();
+		long interval = DEFAULT_REFRESH_INTERVAL_IN_MILLIS;
+		if (changeRate > 0) {
+			interval = Math.max(MIN_REFRESH_INTERVAL_IN_MILLIS,
+					Math.min(MAX_REFRESH_INTERVAL_IN_MILLIS, (long) (EXPECTED_CHANGE_IN_CELSIUS / changeRate)));
+		} else if (changeRate == 0) {
+			//the temperature is steady
+			interval = MAX_REFRESH_INTERVAL_IN_MILLIS;
+		}
+
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(now);
+		final int hourOfDay = calendar.get(Calendar.HOUR_OF_DAY);
+		if (hourOfDay >= NIGHT_START_HOUR || hourOfDay < NIGHT_END_HOUR) {
+			interval *= NIGHT_FACTOR;
+		}
+		return interval;
+	}
+
+	/**
+	 * Return the change of the temperature over the last readings,
+	 * or a negative value if there are not enough readings.
+	 */
+	private float getChangeRateInCelsiusPerMillis() {
+		final RecentReadings.Snapshot snapshot = mRecentReadings.getSnapshot();
+		final int count = snapshot.getCount();
+		if (count < 2) {
+			return -1;
+		}
+		final long lastTime = snapshot.getTimeAt(count - 1);
+		final float lastTemperature = snapshot.getTemperatureAt(count - 1);
+		//the oldest reading of the window
+		int first = count - 2;
+		while (first > 0 && lastTime - snapshot.getTimeAt(first - 1) <= TREND_WINDOW_IN_MILLIS) {
+			first--;
+		}
+		final long firstTime = snapshot.getTimeAt(first);
+		final float firstTemperature = snapshot.getTemperatureAt(first);
+		if (!snapshot.isIntact() || lastTime - firstTime <= 0 || lastTime - firstTime > TREND_WINDOW_IN_MILLIS) {
+			return -1;
+		}
+		return Math.abs(lastTemperature - firstTemperature) / (lastTime - firstTime);
+	}
+
+	private long getLastUpdateTime() {
+		return mDefaultSharedPreferences.getLong(PreferenceUtils.PREF_KEY_LAST_UPDATE_TIME, 0);
+	}
+
+	/**
+	 * Return the number of requests sent during the day of {@code now}.
+	 */
+	private int getRequestCount(long now) {
+		return getDay(now) == mBudgetDay ? mBudgetCount : 0;
+	}
+
+	private void storeFailures() {
+		final SharedPreferences.Editor editor = mSharedPreferences.edit();
+		editor.putInt(PREF_KEY_FAILURE_COUNT, mFailureCount);
+		editor.putLong(PREF_KEY_RETRY_TIME, mRetryTime);
+		PreferenceUtils.apply(editor);
+	}
+
+	/**
+	 * Return a number identifying the local day of {@code timeInMillis}.
+	 */
+	private static int getDay(long timeInMillis) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(timeInMillis);
+		return calendar.get(Calendar.YEAR) * 1000 + calendar.get(Calendar.DAY_OF_YEAR);
+	}
+
+	/**
+	 * Return the time of the local midnight following {@code timeInMillis}.
+	 */
+	private static long getStartOfNextDay(long timeInMillis) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(timeInMillis);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.add(Calendar.DAY_OF_YEAR, 1);
+		return calendar.getTimeInMillis();
+	}
+}
@@ -8,30 +8,81 @@ import android.location.Location;
 import android.location.LocationManager;
 import android.preference.PreferenceManager;
 
+import fr.tvbarthel.apps.simplethermometer.cache.ObservationCache;
+import fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot;
+import fr.tvbarthel.apps.simplethermometer.history.HistoryWriter;
+import fr.tvbarthel.apps.simplethermometer.history.RecentReadings;
+import fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser;
 import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserAsyncTask;
-import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapRequestRegistry;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat;
 import fr.tvbarthel.apps.simplethermometer.utils.PreferenceUtils;
 
 /**
  * A simple class that use an {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserAsyncTask}
  * to load the temperature from the OpenWeatherMap Api.
  * The temperature loaded is stored in the DefaultSharedPreferences of the application.
+ * <p/>
+ * The requests go through the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapRequestRegistry}
+ * so that several loaders asking for the same weather share a single http request.
+ * A location whose grid cell has been observed recently is served by the
+ * {@link fr.tvbarthel.apps.simplethermometer.cache.ObservationCache} without any request.
+ * Each new observation is also appended to the
+ * {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog}
+ * and saved as the {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot} of the last weather.
+ * An observation is stored once per http request by the recorder of the request, the loaders that joined it
+ * are only notified.
+ * <p/>
+ * The requests sent, the successes and the failures are reported to the
+ * {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler} which decides when the next update is due.
+ * <p/>
+ * The observations are written behind: the listener is notified as soon as the in-memory values are updated,
+ * the disk is written in the background.
+ * {@link fr.tvbarthel.apps.simplethermometer.history.HistoryWriter#flush()} should be called when the
+ * application goes to the background.
  */
 public class TemperatureLoader implements OpenWeatherMapParserAsyncTask.Listener {
 
-	//automatic update interval (in Millis)
-	public static final long UPDATE_INTERVAL_IN_MILLIS = 3600000;
-	//manual update interval (in Millis)
-	public static final long UPDATE_INTERVAL_IN_MILLIS_MANUAL = 600000;
+	//the fields of the weather used by the loader, the history and the weather snapshot
+	//the clouds, the precipitations and the time of the last update are never displayed nor stored
+	private static final int REQUESTED_FIELDS = OpenWeatherMapParser.FIELD_CITY
+			| OpenWeatherMapParser.FIELD_TEMPERATURE
+			| OpenWeatherMapParser.FIELD_HUMIDITY
+			| OpenWeatherMapParser.FIELD_PRESSURE
+			| OpenWeatherMapParser.FIELD_WIND
+			| OpenWeatherMapParser.FIELD_WEATHER;
+	//the format in which the weather is requested by default
+	public static final WeatherFormat DEFAULT_WEATHER_FORMAT = WeatherFormat.XML;
 
 	private Context mContext;
-	private OpenWeatherMapParserAsyncTask mOpenWeatherMapParserAsyncTask;
+	//The url currently requested, null if there is no request running
+	private String mRequestedUrl;
+	//The location cell currently requested
+	private String mRequestedCellKey;
+	//The format in which the weather is requested
+	private WeatherFormat mWeatherFormat;
+	//The format of the request currently running
+	private WeatherFormat mRequestedWeatherFormat;
 	private Listener mListener;
 
 	public TemperatureLoader(Listener listener, Context context) {
 		mListener = listener;
 		mContext = context;
-		mOpenWeatherMapParserAsyncTask = null;
+		mRequestedUrl = null;
+		mWeatherFormat = DEFAULT_WEATHER_FORMAT;
+	}
+
+	/**
+	 * Set the format in which the weather is requested to the OpenWeatherMap Api.
+	 * The change is taken into account by the next call to {@link #start()}.
+	 *
+	 * @param weatherFormat the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat} to use
+	 */
+	public void setWeatherFormat(WeatherFormat weatherFormat) {
+		mWeatherFormat = weatherFormat;
 	}
 
 	/**
@@ -40,11 +91,11 @@ public class TemperatureLoader implements OpenWeatherMapParserAsyncTask.Listener
 	 * in order to keep the number of http request as little as possible.
 	 * <p/>
 	 * To check if the temperature is outdated use
-	 * {@link fr.tvbarthel.apps.simplethermometer.TemperatureLoader#isTemperatureOutdated(android.content.SharedPreferences, long)}
+	 * {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler#isRefreshDue(long)}
 	 */
 	public void start() {
-		if (mOpenWeatherMapParserAsyncTask != null) {
-			// there is already an async task running
+		if (mRequestedUrl != null) {
+			// there is already a request running
 			mListener.onTemperatureLoadingCancelled();
 		} else {
 			//retrieve an instance of the LocationManager
@@ -55,23 +106,38 @@ public class TemperatureLoader implements OpenWeatherMapParserAsyncTask.Listener
 			final String provider = locationManager.getBestProvider(criteria, true);
 			if (provider == null) {
 				//No Provider found
+				RefreshScheduler.getInstance(mContext).onRefreshFailed(System.currentTimeMillis());
 				mListener.onTemperatureLoadingFail(R.string.error_message_location_provider_not_found);
 			} else {
 				//Retrieve the location from the provider
 				final Location location = locationManager.getLastKnownLocation(provider);
 				if (location == null) {
 					//no location found
+					RefreshScheduler.getInstance(mContext).onRefreshFailed(System.currentTimeMillis());
 					mListener.onTemperatureLoadingFail(R.string.error_message_location_not_found);
 				} else {
-					//Retrieve the latitude and the longitude from the location
-					// and execute a weather loader
-					final double latitude = location.getLatitude();
-					final double longitude = location.getLongitude();
-
-					//execute the AsyncTask
-					mOpenWeatherMapParserAsyncTask = new OpenWeatherMapParserAsyncTask(this);
-					mOpenWeatherMapParserAsyncTask.execute(String.format(
-							mContext.getResources().getString(R.string.url_open_weather_api), latitude, longitude));
+					//Retrieve the grid cell of the location
+					final ObservationCache observationCache = ObservationCache.getInstance();
+					final String cellKey = observationCache.getCellKey(location.getLatitude(), location.getLongitude());
+					final SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+
+					if (observationCache.restore(cellKey, defaultSharedPreferences)) {
+						//this cell has been observed recently, no need to request the weather
+						RefreshScheduler.getInstance(mContext).onRefreshSucceeded();
+						mListener.onTemperatureLoadingSuccess();
+					} else {
+						//Retrieve the latitude and the longitude of the cell center
+						// and execute a weather loader
+						final double latitude = observationCache.getCellCenter(location.getLatitude());
+						final double longitude = observationCache.getCellCenter(location.getLongitude());
+
+						//request the weather, or join the in-flight request for the same url
+						mRequestedCellKey = cellKey;
+						mRequestedWeatherFormat = mWeatherFormat;
+						mRequestedUrl = String.format(mContext.getResources().getString(R.string.url_open_weather_api),
+								latitude, longitude, mWeatherFormat.getMode());
+						request();
+					}
 				}
 			}
 
@@ -82,8 +148,9 @@ public class TemperatureLoader implements OpenWeatherMapParserAsyncTask.Listener
 	 * Pause the loader
 	 */
 	public void pause() {
-		if (mOpenWeatherMapParserAsyncTask != null) {
-			mOpenWeatherMapParserAsyncTask.cancel(true);
+		if (mRequestedUrl != null) {
+			OpenWeatherMapRequestRegistry.getInstance().cancel(mRequestedUrl, mRequestedWeatherFormat,
+					REQUESTED_FIELDS, this);
 		}
 	}
 
@@ -92,22 +159,42 @@ public class TemperatureLoader implements OpenWeatherMapParserAsyncTask.Listener
 	 */
 
 	@Override
-	public void onWeatherLoadingSuccess(OpenWeatherMapParserResult result) {
-		if (result != null && result.getTemperatureValue() != null) {
-			//Store the temperature and the time of the update
-			//in the default shared preferences
-			final float newTemperatureInCelsius = result.getTemperatureValue();
-			final SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
-			PreferenceUtils.storeTemperatureInCelsius(defaultSharedPreferences, newTemperatureInCelsius);
-			mOpenWeatherMapParserAsyncTask = null;
+	public void onWeatherLoadingSuccess(CompactWeatherResult result) {
+		if (hasTemperature(result)) {
+			//the observation has already been stored by the ObservationRecorder of the request
+			RefreshScheduler.getInstance(mContext).onRefreshSucceeded();
+			mRequestedUrl = null;
 			mListener.onTemperatureLoadingSuccess();
+		} else {
+			//the answer holds no temperature, the load ends as a failure
+			OpenWeatherMapHttpClient.getInstance().forgetValidators(mRequestedUrl);
+			RefreshScheduler.getInstance(mContext).onRefreshFailed(System.currentTimeMillis());
+			mRequestedUrl = null;
+			mListener.onTemperatureLoadingFail(R.string.error_message_parser_exception);
+		}
+	}
+
+	@Override
+	public void onWeatherNotModified() {
+		//The last observation of the requested cell is still the current one
+		//only the time of the update has to be refreshed
+		final SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+		if (ObservationCache.getInstance().revalidate(mRequestedCellKey, defaultSharedPreferences)) {
+			RefreshScheduler.getInstance(mContext).onRefreshSucceeded();
+			mRequestedUrl = null;
+			mListener.onTemperatureLoadingSuccess();
+		} else {
+			//the observation of this cell is not known anymore, request the full weather
+			OpenWeatherMapHttpClient.getInstance().forgetValidators(mRequestedUrl);
+			request();
 		}
 	}
 
 	@Override
 	public void onWeatherLoadingFail(int stringResourceId) {
+		RefreshScheduler.getInstance(mContext).onRefreshFailed(System.currentTimeMillis());
 		mListener.onTemperatureLoadingFail(stringResourceId);
-		mOpenWeatherMapParserAsyncTask = null;
+		mRequestedUrl = null;
 	}
 
 	@Override
@@ -118,7 +205,70 @@ public class TemperatureLoader implements OpenWeatherMapParserAsyncTask.Listener
 	@Override
 	public void onWeatherLoadingCancelled() {
 		mListener.onTemperatureLoadingCancelled();
-		mOpenWeatherMapParserAsyncTask = null;
+		mRequestedUrl = null;
+	}
+
+	/**
+	 * Request the weather of {@link #mRequestedUrl}, or join the in-flight request for the same url.
+	 * Only a request that reaches the network is counted in the budget of the
+	 * {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler}.
+	 */
+	private void request() {
+		if (OpenWeatherMapRequestRegistry.getInstance().request(mRequestedUrl, mRequestedWeatherFormat,
+				REQUESTED_FIELDS, new ObservationRecorder(mContext, mRequestedCellKey), this)) {
+			RefreshScheduler.getInstance(mContext).onRequestSent(System.currentTimeMillis());
+		}
+	}
+
+	private static boolean hasTemperature(CompactWeatherResult result) {
+		return result != null && result.has(CompactWeatherResult.HAS_TEMPERATURE_VALUE);
+	}
+
+	/**
+	 * Store the observation of a request once, however many loaders joined it
+	 */
+	private static final class ObservationRecorder implements OpenWeatherMapRequestRegistry.ResultRecorder {
+		//The application context, the request may outlive the loader that started it
+		private final Context mContext;
+		//The location cell of the request
+		private final String mCellKey;
+
+		private ObservationRecorder(Context context, String cellKey) {
+			mContext = context.getApplicationContext();
+			mCellKey = cellKey;
+		}
+
+		@Override
+		public void onWeatherLoaded(CompactWeatherResult result) {
+			if (!hasTemperature(result)) {
+				//nothing to store, the loaders end as a failure
+				return;
+			}
+			//Store the temperature and the time of the update
+			//in the default shared preferences
+			final float newTemperatureInCelsius = result.getTemperatureValue();
+			final long now = System.currentTimeMillis();
+			//Save the whole weather first, the listeners of the preferences may display it
+			//the snapshot keeps a copy, result is recycled once the loaders are notified
+			WeatherSnapshot.save(mContext, new WeatherSnapshot(result, now));
+			final SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+			PreferenceUtils.storeTemperatureInCelsius(defaultSharedPreferences, newTemperatureInCelsius,
+					now, mCellKey);
+			ObservationCache.getInstance().put(mCellKey, newTemperatureInCelsius, now);
+			RecentReadings.getInstance(mContext).append(now, newTemperatureInCelsius);
+			appendToHistory(result, now);
+		}
+
+		/**
+		 * Append the observation {@code result} made at {@code timeInMillis} to the history
+		 */
+		private void appendToHistory(CompactWeatherResult result, long timeInMillis) {
+			HistoryWriter.getInstance(mContext).append(timeInMillis, result.getTemperatureValue(),
+					result.has(CompactWeatherResult.HAS_HUMIDITY_VALUE) ? result.getHumidityValue() : Float.NaN,
+					result.has(CompactWeatherResult.HAS_PRESSURE_VALUE) ? result.getPressureValue() : Float.NaN,
+					result.has(CompactWeatherResult.HAS_WEATHER_NUMBER) ? result.getWeatherNumber()
+							: TemperatureHistoryLog.WEATHER_ID_UNKNOWN);
+		}
 	}
 
 	/**
@@ -142,18 +292,24 @@ public class TemperatureLoader implements OpenWeatherMapParserAsyncTask.Listener
 	 * @return true if the temperature is outdated, false otherwise.
 	 */
 	public static boolean isTemperatureOutdated(SharedPreferences sharedPreferences, long updateInterval) {
-		boolean isOutdated = false;
-
 		//Retrieve the current time and the time of the last update (in Millis)
 		final long now = System.currentTimeMillis();
 		final long lastUpdate = sharedPreferences.getLong(PreferenceUtils.PREF_KEY_LAST_UPDATE_TIME, 0);
 
+		return isTemperatureOutdated(lastUpdate, now, updateInterval);
+	}
+
+	/**
+	 * Check if a temperature updated at {@code lastUpdate} is outdated at {@code now}.
+	 *
+	 * @param lastUpdate     the time of the last update (in Millis)
+	 * @param now            the current time (in Millis)
+	 * @param updateInterval is used to define "outdated". (now - lastUpdate > updateInterval)
+	 * @return true if the temperature is outdated, false otherwise.
+	 */
+	public static boolean isTemperatureOutdated(long lastUpdate, long now, long updateInterval) {
 		//Check if the temperature is outdated
 		//according to updateInterval
-		if (now - lastUpdate > updateInterval) {
-			isOutdated = true;
-		}
-
-		return isOutdated;
+		return now - lastUpdate > updateInterval;
 	}
 }
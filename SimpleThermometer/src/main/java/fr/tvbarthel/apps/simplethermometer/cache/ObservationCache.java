@@ -0,0 +1,182 @@
+package fr.tvbarthel.apps.simplethermometer.cache;
+
+import android.content.SharedPreferences;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.tvbarthel.apps.simplethermometer.RefreshScheduler;
+import fr.tvbarthel.apps.simplethermometer.utils.PreferenceUtils;
+
+/**
+ * A cache of the temperatures observed in the last minutes.
+ * <p/>
+ * The locations are quantized on a grid of {@code precisionInDegrees} so that a small move of
+ * the last known location is not considered as a new location.
+ * Each grid cell keeps its last observation for {@code timeToLiveInMillis}, the least recently
+ * used cells are evicted first.
+ * <p/>
+ * The cache has two levels: the recent cells are kept in memory,
+ * and the cell of the last stored temperature is read back from the DefaultSharedPreferences.
+ * <p/>
+ * The automatic updates of the {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler} are at least
+ * {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler#MIN_REFRESH_INTERVAL_IN_MILLIS} apart,
+ * longer than the default time to live: the cache does not serve them, on purpose. It serves the manual
+ * refreshes, the loaders of the application and of the widgets asking within a few minutes, and the moves
+ * back to a cell observed recently. A longer time to live would make a manual refresh show the same
+ * observation again instead of requesting a new one.
+ */
+public class ObservationCache {
+
+	//default size of a grid cell (in Degrees), about 5km
+	public static final double DEFAULT_PRECISION_IN_DEGREES = 0.05;
+	//default time to live of an observation (in Millis), the min time between two manual refreshes
+	public static final long DEFAULT_TIME_TO_LIVE_IN_MILLIS = RefreshScheduler.MANUAL_REFRESH_INTERVAL_IN_MILLIS;
+	//default max number of cells kept in memory
+	public static final int DEFAULT_MAX_ENTRIES = 16;
+
+	private static ObservationCache sInstance;
+
+	private final double mPrecisionInDegrees;
+	private final long mTimeToLiveInMillis;
+	private final Map<String, Observation> mObservations;
+
+	/**
+	 * Return the shared instance of the cache, created with the default parameters.
+	 *
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.cache.ObservationCache}
+	 */
+	public static synchronized ObservationCache getInstance() {
+		if (sInstance == null) {
+			sInstance = new ObservationCache(DEFAULT_PRECISION_IN_DEGREES,
+					DEFAULT_TIME_TO_LIVE_IN_MILLIS, DEFAULT_MAX_ENTRIES);
+		}
+		return sInstance;
+	}
+
+	public ObservationCache(double precisionInDegrees, long timeToLiveInMillis, final int maxEntries) {
+		mPrecisionInDegrees = precisionInDegrees;
+		mTimeToLiveInMillis = timeToLiveInMillis;
+		mObservations = new LinkedHashMap<String, Observation>(maxEntries, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Observation> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Return the key of the grid cell containing a location.
+	 *
+	 * @param latitude  the latitude of the location
+	 * @param longitude the longitude of the location
+	 * @return the {@link String} key of the cell
+	 */
+	public String getCellKey(double latitude, double longitude) {
+		return quantize(latitude) + ":" + quantize(longitude);
+	}
+
+	/**
+	 * Return the coordinate of the center of the grid cell containing {@code coordinate}.
+	 * Requesting the center of the cell keeps the requested url stable for a given cell.
+	 *
+	 * @param coordinate a latitude or a longitude
+	 * @return the coordinate of the cell center
+	 */
+	public double getCellCenter(double coordinate) {
+		return (quantize(coordinate) + 0.5) * mPrecisionInDegrees;
+	}
+
+	/**
+	 * Make sure that {@code sharedPreferences} holds a fresh observation of the cell {@code cellKey}.
+	 * <p/>
+	 * If the stored temperature already belongs to this cell and is still fresh, nothing is written.
+	 * Otherwise a fresh observation of this cell kept in memory is stored.
+	 *
+	 * @param cellKey           the key of the cell
+	 * @param sharedPreferences the {@link android.content.SharedPreferences} holding the last temperature
+	 * @return true if a fresh observation of the cell is stored, false if it has to be loaded.
+	 */
+	public synchronized boolean restore(String cellKey, SharedPreferences sharedPreferences) {
+		final long now = System.currentTimeMillis();
+
+		//Look for the cell in the DefaultSharedPreferences
+		final String storedCellKey = sharedPreferences.getString(PreferenceUtils.PREF_KEY_LAST_LOCATION_CELL, null);
+		final long storedUpdateTime = sharedPreferences.getLong(PreferenceUtils.PREF_KEY_LAST_UPDATE_TIME, 0);
+		if (cellKey.equals(storedCellKey) && now - storedUpdateTime < mTimeToLiveInMillis) {
+			return true;
+		}
+
+		//Look for the cell in memory
+		final Observation observation = mObservations.get(cellKey);
+		if (observation == null) {
+			return false;
+		}
+		if (now - observation.mTimeInMillis >= mTimeToLiveInMillis) {
+			//the observation is outdated
+			mObservations.remove(cellKey);
+			return false;
+		}
+		PreferenceUtils.storeTemperatureInCelsius(sharedPreferences, observation.mTemperatureInCelsius,
+				observation.mTimeInMillis, cellKey);
+		return true;
+	}
+
+	/**
+	 * Mark the last observation of the cell {@code cellKey} as fresh, used when the server
+	 * answered that the weather of this cell has not changed.
+	 *
+	 * @param cellKey           the key of the cell
+	 * @param sharedPreferences the {@link android.content.SharedPreferences} holding the last temperature
+	 * @return true if an observation of the cell has been refreshed, false if it has to be loaded again.
+	 */
+	public synchronized boolean revalidate(String cellKey, SharedPreferences sharedPreferences) {
+		final long now = System.currentTimeMillis();
+		final String storedCellKey = sharedPreferences.getString(PreferenceUtils.PREF_KEY_LAST_LOCATION_CELL, null);
+		if (cellKey.equals(storedCellKey)) {
+			//the stored temperature is the one of this cell
+			PreferenceUtils.storeLastUpdateTime(sharedPreferences);
+			final Observation observation = mObservations.get(cellKey);
+			if (observation != null) {
+				put(cellKey, observation.mTemperatureInCelsius, now);
+			}
+			return true;
+		}
+
+		final Observation observation = mObservations.get(cellKey);
+		if (observation == null) {
+			return false;
+		}
+		put(cellKey, observation.mTemperatureInCelsius, now);
+		PreferenceUtils.storeTemperatureInCelsius(sharedPreferences, observation.mTemperatureInCelsius, now, cellKey);
+		return true;
+	}
+
+	/**
+	 * Put an observation of the cell {@code cellKey} in the cache.
+	 *
+	 * @param cellKey              the key of the cell
+	 * @param temperatureInCelsius the observed temperature (in Celsius)
+	 * @param timeInMillis         the time of the observation (in Millis)
+	 */
+	public synchronized void put(String cellKey, float temperatureInCelsius, long timeInMillis) {
+		mObservations.put(cellKey, new Observation(temperatureInCelsius, timeInMillis));
+	}
+
+	private long quantize(double coordinate) {
+		return (long) Math.floor(coordinate / mPrecisionInDegrees);
+	}
+
+	/**
+	 * An observed temperature
+	 */
+	private static final class Observation {
+		private final float mTemperatureInCelsius;
+		private final long mTimeInMillis;
+
+		private Observation(float temperatureInCelsius, long timeInMillis) {
+			mTemperatureInCelsius = temperatureInCelsius;
+			mTimeInMillis = timeInMillis;
+		}
+	}
+}
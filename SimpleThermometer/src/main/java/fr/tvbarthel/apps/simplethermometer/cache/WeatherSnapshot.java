@@ -0,0 +1,308 @@
+package fr.tvbarthel.apps.simplethermometer.cache;
+
+import android.content.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import fr.tvbarthel.apps.simplethermometer.history.HistoryWriter;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult;
+
+/**
+ * The last observed weather, kept in a small binary file so that the whole weather
+ * can be displayed at start up before any request.
+ * <p/>
+ * The file is made of a header (magic, version, time of the observation, presence of the numeric values),
+ * the numeric values at fixed offsets, in the order of the {@link CompactWeatherResult} HAS_* flags,
+ * and the strings, each prefixed by its length in bytes or -1 if missing.
+ * It is read through a read-only mapping and replaced atomically when a new weather is saved.
+ */
+public final class WeatherSnapshot {
+
+	//name of the snapshot file in the files directory of the application
+	public static final String FILE_NAME = "weather_snapshot.bin";
+
+	//"STWS", identifies the file
+	private static final int MAGIC = 0x53545753;
+	private static final int VERSION = 1;
+	//number of numeric values, one per HAS_* flag
+	private static final int NUMERIC_VALUE_COUNT = 12;
+	//size of the header: magic (4), version (4), time (8), presence (4)
+	private static final int HEADER_SIZE_IN_BYTES = 20;
+	//offset of the strings, after the header and the numeric values
+	private static final int OFFSET_STRINGS = HEADER_SIZE_IN_BYTES + NUMERIC_VALUE_COUNT * 4;
+	//length of a missing string
+	private static final int LENGTH_NULL = 0xFFFF;
+	//suffix of the file written before replacing the snapshot
+	private static final String SUFFIX_WRITING = ".writing";
+	private static final String CHARSET = "UTF-8";
+
+	//The last saved or read snapshot
+	private static WeatherSnapshot sLast;
+	//True once the snapshot file has been read
+	private static boolean sIsLastRead;
+
+	//a copy of the observed weather, never recycled
+	private final CompactWeatherResult mResult;
+	private final long mTimeInMillis;
+
+	/**
+	 * @param result       the observed {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult},
+	 *                     copied so that it can be recycled afterwards
+	 * @param timeInMillis the time of the observation (in Millis)
+	 */
+	public WeatherSnapshot(CompactWeatherResult result, long timeInMillis) {
+		mResult = new CompactWeatherResult();
+		mResult.set(result);
+		mTimeInMillis = timeInMillis;
+	}
+
+	/**
+	 * Return the last observed weather, read from the snapshot file the first time.
+	 *
+	 * @param context the {@link android.content.Context} used to retrieve the files directory
+	 * @return the last {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot}, null if none
+	 */
+	public static synchronized WeatherSnapshot getLast(Context context) {
+		if (!sIsLastRead) {
+			sIsLastRead = true;
+			final File file = new File(context.getFilesDir(), FILE_NAME);
+			if (sLast == null && file.exists()) {
+				try {
+					sLast = read(file);
+				} catch (IOException e) {
+					//an unreadable snapshot is replaced by the next one
+				}
+			}
+		}
+		return sLast;
+	}
+
+	/**
+	 * Make {@code snapshot} the last observed weather.
+	 * It is returned by {@link #getLast(android.content.Context)} right away and written to the disk
+	 * by the {@link fr.tvbarthel.apps.simplethermometer.history.HistoryWriter}.
+	 *
+	 * @param context  the {@link android.content.Context} used to retrieve the writer
+	 * @param snapshot the new {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot}
+	 */
+	public static void save(Context context, WeatherSnapshot snapshot) {
+		synchronized (WeatherSnapshot.class) {
+			sLast = snapshot;
+		}
+		HistoryWriter.getInstance(context).writeSnapshot(snapshot);
+	}
+
+	/**
+	 * Map and decode a snapshot file.
+	 *
+	 * @param file the {@link java.io.File} of the snapshot
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot}
+	 * @throws IOException if the file can't be read or is not a snapshot
+	 */
+	public static WeatherSnapshot read(File file) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = randomAccessFile.getChannel();
+			return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Write this snapshot in a new file which then replaces {@code file},
+	 * so that an interrupted write leaves the previous snapshot.
+	 *
+	 * @param file the {@link java.io.File} of the snapshot
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(File file) throws IOException {
+		final File writingFile = new File(file.getPath() + SUFFIX_WRITING);
+		final FileOutputStream outputStream = new FileOutputStream(writingFile);
+		try {
+			outputStream.write(encode());
+			outputStream.getFD().sync();
+		} finally {
+			outputStream.close();
+		}
+		if (!writingFile.renameTo(file)) {
+			writingFile.delete();
+			throw new IOException("Can't replace " + file);
+		}
+	}
+
+	/**
+	 * @return the bytes of the snapshot file
+	 */
+	public byte[] encode() {
+		final CompactWeatherResult result = mResult;
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(OFFSET_STRINGS + 256);
+		final DataOutputStream output = new DataOutputStream(bytes);
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(mTimeInMillis);
+			output.writeInt(result.getPresence());
+
+			//the numeric values, a missing value is written as 0
+			writeInt(output, result, CompactWeatherResult.HAS_CITY_ID, result.getCityId());
+			writeFloat(output, result, CompactWeatherResult.HAS_LONGITUDE, result.getLongitude());
+			writeFloat(output, result, CompactWeatherResult.HAS_LATITUDE, result.getLatitude());
+			writeFloat(output, result, CompactWeatherResult.HAS_TEMPERATURE_VALUE, result.getTemperatureValue());
+			writeFloat(output, result, CompactWeatherResult.HAS_TEMPERATURE_MAX, result.getTemperatureMax());
+			writeFloat(output, result, CompactWeatherResult.HAS_TEMPERATURE_MIN, result.getTemperatureMin());
+			writeFloat(output, result, CompactWeatherResult.HAS_HUMIDITY_VALUE, result.getHumidityValue());
+			writeFloat(output, result, CompactWeatherResult.HAS_PRESSURE_VALUE, result.getPressureValue());
+			writeFloat(output, result, CompactWeatherResult.HAS_WIND_SPEED_VALUE, result.getWindSpeedValue());
+			writeFloat(output, result, CompactWeatherResult.HAS_WIND_DIRECTION_VALUE, result.getWindDirectionValue());
+			writeFloat(output, result, CompactWeatherResult.HAS_CLOUD_VALUE, result.getCloudValue());
+			writeInt(output, result, CompactWeatherResult.HAS_WEATHER_NUMBER, result.getWeatherNumber());
+
+			writeString(output, result.getCityName());
+			writeString(output, result.getCountry());
+			writeString(output, result.getSunRise());
+			writeString(output, result.getSunSet());
+			writeString(output, result.getTemperatureUnit());
+			writeString(output, result.getHumidityUnit());
+			writeString(output, result.getPressureUnit());
+			writeString(output, result.getWindSpeedName());
+			writeString(output, result.getWindDirectionCode());
+			writeString(output, result.getWindDirectionName());
+			writeString(output, result.getCloudName());
+			writeString(output, result.getPrecipitationMode());
+			writeString(output, result.getWeatherValue());
+			writeString(output, result.getWeatherIcon());
+			writeString(output, result.getLastUpdate());
+			output.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			//not thrown by a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Decode the bytes of a snapshot file.
+	 *
+	 * @param buffer a {@link java.nio.ByteBuffer} holding the snapshot from its position
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot}
+	 * @throws IOException if the bytes are not a snapshot
+	 */
+	public static WeatherSnapshot decode(ByteBuffer buffer) throws IOException {
+		try {
+			if (buffer.remaining() < OFFSET_STRINGS || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException("Not a weather snapshot");
+			}
+			final long timeInMillis = buffer.getLong();
+			final int presence = buffer.getInt();
+
+			//the numeric values are read in the order of the HAS_* flags, only the present ones are set
+			final CompactWeatherResult result = new CompactWeatherResult();
+			final int cityId = buffer.getInt();
+			final float longitude = buffer.getFloat();
+			final float latitude = buffer.getFloat();
+			final float temperatureValue = buffer.getFloat();
+			final float temperatureMax = buffer.getFloat();
+			final float temperatureMin = buffer.getFloat();
+			final float humidityValue = buffer.getFloat();
+			final float pressureValue = buffer.getFloat();
+			final float windSpeedValue = buffer.getFloat();
+			final float windDirectionValue = buffer.getFloat();
+			final float cloudValue = buffer.getFloat();
+			final int weatherNumber = buffer.getInt();
+			if (isSet(presence, CompactWeatherResult.HAS_CITY_ID)) result.setCityId(cityId);
+			if (isSet(presence, CompactWeatherResult.HAS_LONGITUDE)) result.setLongitude(longitude);
+			if (isSet(presence, CompactWeatherResult.HAS_LATITUDE)) result.setLatitude(latitude);
+			if (isSet(presence, CompactWeatherResult.HAS_TEMPERATURE_VALUE)) result.setTemperatureValue(temperatureValue);
+			if (isSet(presence, CompactWeatherResult.HAS_TEMPERATURE_MAX)) result.setTemperatureMax(temperatureMax);
+			if (isSet(presence, CompactWeatherResult.HAS_TEMPERATURE_MIN)) result.setTemperatureMin(temperatureMin);
+			if (isSet(presence, CompactWeatherResult.HAS_HUMIDITY_VALUE)) result.setHumidityValue(humidityValue);
+			if (isSet(presence, CompactWeatherResult.HAS_PRESSURE_VALUE)) result.setPressureValue(pressureValue);
+			if (isSet(presence, CompactWeatherResult.HAS_WIND_SPEED_VALUE)) result.setWindSpeedValue(windSpeedValue);
+			if (isSet(presence, CompactWeatherResult.HAS_WIND_DIRECTION_VALUE)) result.setWindDirectionValue(windDirectionValue);
+			if (isSet(presence, CompactWeatherResult.HAS_CLOUD_VALUE)) result.setCloudValue(cloudValue);
+			if (isSet(presence, CompactWeatherResult.HAS_WEATHER_NUMBER)) result.setWeatherNumber(weatherNumber);
+
+			result.setCityName(readString(buffer));
+			result.setCountry(readString(buffer));
+			result.setSunRise(readString(buffer));
+			result.setSunSet(readString(buffer));
+			result.setTemperatureUnit(readString(buffer));
+			result.setHumidityUnit(readString(buffer));
+			result.setPressureUnit(readString(buffer));
+			result.setWindSpeedName(readString(buffer));
+			result.setWindDirectionCode(readString(buffer));
+			result.setWindDirectionName(readString(buffer));
+			result.setCloudName(readString(buffer));
+			result.setPrecipitationMode(readString(buffer));
+			result.setWeatherValue(readString(buffer));
+			result.setWeatherIcon(readString(buffer));
+			result.setLastUpdate(readString(buffer));
+			return new WeatherSnapshot(result, timeInMillis);
+		} catch (RuntimeException e) {
+			//a truncated file
+			throw new IOException("Corrupted weather snapshot");
+		}
+	}
+
+	/**
+	 * @return the observed {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult},
+	 * must not be modified nor recycled
+	 */
+	public CompactWeatherResult getResult() {
+		return mResult;
+	}
+
+	/**
+	 * @return the time of the observation (in Millis)
+	 */
+	public long getTimeInMillis() {
+		return mTimeInMillis;
+	}
+
+	private static void writeInt(DataOutputStream output, CompactWeatherResult result, int flag, int value)
+			throws IOException {
+		output.writeInt(result.has(flag) ? value : 0);
+	}
+
+	private static void writeFloat(DataOutputStream output, CompactWeatherResult result, int flag, float value)
+			throws IOException {
+		output.writeFloat(result.has(flag) ? value : 0);
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		if (value == null) {
+			output.writeShort(LENGTH_NULL);
+			return;
+		}
+		byte[] bytes = value.getBytes(CHARSET);
+		if (bytes.length >= LENGTH_NULL) {
+			//never expected from the Api, keep the snapshot readable
+			bytes = new byte[0];
+		}
+		output.writeShort(bytes.length);
+		output.write(bytes);
+	}
+
+	private static boolean isSet(int presence, int flag) {
+		return (presence & flag) != 0;
+	}
+
+	private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException {
+		final int length = buffer.getShort() & 0xFFFF;
+		if (length == LENGTH_NULL) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, CHARSET);
+	}
+}
@@ -0,0 +1,61 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+/**
+ * Read the bits written by a {@link fr.tvbarthel.apps.simplethermometer.history.BitWriter}
+ * from a range of an array of bytes.
+ */
+class BitReader {
+
+	private final byte[] mBytes;
+	private final int mEnd;
+	//index of the next byte to read
+	private int mPosition;
+	//the bits read from mBytes and not yet returned, right aligned
+	private long mPendingBits;
+	//number of bits in mPendingBits
+	private int mPendingBitCount;
+
+	/**
+	 * @param bytes  the array holding the bits
+	 * @param offset the index of the first byte
+	 * @param length the number of bytes
+	 */
+	BitReader(byte[] bytes, int offset, int length) {
+		mBytes = bytes;
+		mPosition = offset;
+		mEnd = offset + length;
+	}
+
+	/**
+	 * @return true if the next bit is 1
+	 */
+	boolean readBit() {
+		return readBits(1) != 0;
+	}
+
+	/**
+	 * Read {@code bitCount} bits.
+	 *
+	 * @param bitCount the number of bits to read, from 0 to 64
+	 * @return the bits, right aligned
+	 * @throws IllegalStateException if there are not enough bits left
+	 */
+	long readBits(int bitCount) {
+		if (bitCount > 32) {
+			final long high = readBits(bitCount - 32);
+			return (high << 32) | readBits(32);
+		}
+		if (bitCount == 0) {
+			return 0;
+		}
+		while (mPendingBitCount < bitCount) {
+			if (mPosition == mEnd) {
+				throw new IllegalStateException("No more bits");
+			}
+			mPendingBits = (mPendingBits << 8) | (mBytes[mPosition++] & 0xFF);
+			mPendingBitCount += 8;
+		}
+		mPendingBitCount -= bitCount;
+		return (mPendingBits >>> mPendingBitCount) & (-1L >>> (64 - bitCount));
+	}
+}
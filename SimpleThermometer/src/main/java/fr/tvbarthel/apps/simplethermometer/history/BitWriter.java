@@ -0,0 +1,76 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Append bits to a growing array of bytes, the most significant bit first.
+ */
+class BitWriter {
+
+	private static final int INITIAL_CAPACITY_IN_BYTES = 256;
+
+	private byte[] mBytes = new byte[INITIAL_CAPACITY_IN_BYTES];
+	//number of complete bytes in mBytes
+	private int mByteCount;
+	//the bits not yet written in mBytes, right aligned
+	private long mPendingBits;
+	//number of bits in mPendingBits, less than 8 between two calls
+	private int mPendingBitCount;
+
+	/**
+	 * Append a single bit.
+	 *
+	 * @param bit true for 1, false for 0
+	 */
+	void writeBit(boolean bit) {
+		writeBits(bit ? 1 : 0, 1);
+	}
+
+	/**
+	 * Append the {@code bitCount} lowest bits of {@code value}.
+	 *
+	 * @param value    the bits to append
+	 * @param bitCount the number of bits to append, from 0 to 64
+	 */
+	void writeBits(long value, int bitCount) {
+		if (bitCount > 32) {
+			writeBits(value >>> 32, bitCount - 32);
+			bitCount = 32;
+		}
+		if (bitCount == 0) {
+			return;
+		}
+		mPendingBits = (mPendingBits << bitCount) | (value & (-1L >>> (64 - bitCount)));
+		mPendingBitCount += bitCount;
+		if (mByteCount + 5 > mBytes.length) {
+			final byte[] bytes = new byte[mBytes.length * 2];
+			System.arraycopy(mBytes, 0, bytes, 0, mByteCount);
+			mBytes = bytes;
+		}
+		while (mPendingBitCount >= 8) {
+			mPendingBitCount -= 8;
+			mBytes[mByteCount++] = (byte) (mPendingBits >>> mPendingBitCount);
+		}
+	}
+
+	/**
+	 * @return the number of bytes needed to hold the written bits
+	 */
+	int getSizeInBytes() {
+		return mByteCount + (mPendingBitCount > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Write the bits to {@code output}, the last byte is padded with zeros.
+	 *
+	 * @param output the {@link java.io.DataOutputStream} receiving the bytes
+	 * @throws IOException
+	 */
+	void writeTo(DataOutputStream output) throws IOException {
+		output.write(mBytes, 0, mByteCount);
+		if (mPendingBitCount > 0) {
+			output.write((int) (mPendingBits << (8 - mPendingBitCount)));
+		}
+	}
+}
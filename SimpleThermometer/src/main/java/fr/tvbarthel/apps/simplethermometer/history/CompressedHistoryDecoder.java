@@ -0,0 +1,223 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decode the observations written by a {@link fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryEncoder},
+ * one at a time and without allocation.
+ * <p/>
+ * {@link #moveToNext()} decodes the next observation, its values are then returned by the getters.
+ */
+public class CompressedHistoryDecoder {
+
+	private final int mCount;
+	private final BitReader mTimeColumn;
+	private final FloatColumn mTemperatureColumn;
+	private final FloatColumn mHumidityColumn;
+	private final FloatColumn mPressureColumn;
+	private final BitReader mWeatherColumn;
+
+	//number of decoded observations
+	private int mPosition;
+	private long mTime;
+	private long mInterval;
+	private int mWeatherId;
+
+	/**
+	 * Decode the observations held by {@code bytes}.
+	 *
+	 * @param bytes the encoded observations, as written by
+	 *              {@link fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryEncoder#writeTo(java.io.OutputStream)}
+	 * @throws IOException if the bytes are not encoded observations
+	 */
+	public CompressedHistoryDecoder(byte[] bytes) throws IOException {
+		final ByteBuffer header = ByteBuffer.wrap(bytes);
+		if (bytes.length < CompressedHistoryEncoder.HEADER_SIZE_IN_BYTES
+				|| header.getInt() != CompressedHistoryEncoder.MAGIC
+				|| header.getInt() != CompressedHistoryEncoder.VERSION) {
+			throw new IOException("Not a compressed temperature history");
+		}
+		mCount = header.getInt();
+
+		//the columns follow the header
+		final BitReader[] columns = new BitReader[CompressedHistoryEncoder.COLUMN_COUNT];
+		int offset = CompressedHistoryEncoder.HEADER_SIZE_IN_BYTES;
+		for (int i = 0; i < columns.length; i++) {
+			final int length = header.getInt();
+			if (length < 0 || offset + length > bytes.length) {
+				throw new IOException("Truncated compressed temperature history");
+			}
+			columns[i] = new BitReader(bytes, offset, length);
+			offset += length;
+		}
+		mTimeColumn = columns[0];
+		mTemperatureColumn = new FloatColumn(columns[1]);
+		mHumidityColumn = new FloatColumn(columns[2]);
+		mPressureColumn = new FloatColumn(columns[3]);
+		mWeatherColumn = columns[4];
+	}
+
+	/**
+	 * Read and decode {@code file}.
+	 *
+	 * @param file the {@link java.io.File} written by
+	 *             {@link fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryEncoder#export(TemperatureHistoryLog, java.io.File)}
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryDecoder}
+	 * @throws IOException if the file can't be read or is not a compressed history
+	 */
+	public static CompressedHistoryDecoder open(File file) throws IOException {
+		final byte[] bytes = new byte[(int) file.length()];
+		final DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try {
+			input.readFully(bytes);
+		} finally {
+			input.close();
+		}
+		return new CompressedHistoryDecoder(bytes);
+	}
+
+	/**
+	 * Append the observations of {@code file} to {@code historyLog}.
+	 * The observations which are not newer than the last one of the log are skipped,
+	 * so importing the same file twice does not duplicate its last observation.
+	 *
+	 * @param file       the {@link java.io.File} to import
+	 * @param historyLog the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog} receiving the observations
+	 * @return the number of appended observations
+	 * @throws IOException if the file can't be read or the log can't grow
+	 */
+	public static int importInto(File file, TemperatureHistoryLog historyLog) throws IOException {
+		final CompressedHistoryDecoder decoder = open(file);
+		final int recordCount = historyLog.getRecordCount();
+		final long lastTime = recordCount == 0 ? Long.MIN_VALUE : historyLog.getTimeAt(recordCount - 1);
+		int appended = 0;
+		try {
+			while (decoder.moveToNext()) {
+				if (recordCount > 0 && decoder.getTimeInMillis() <= lastTime) {
+					//already in the log
+					continue;
+				}
+				if (historyLog.append(decoder.getTimeInMillis(), decoder.getTemperatureInCelsius(),
+						decoder.getHumidity(), decoder.getPressure(), decoder.getWeatherId())) {
+					appended++;
+				}
+			}
+		} catch (IllegalStateException e) {
+			throw new IOException("Truncated compressed temperature history");
+		}
+		historyLog.flush();
+		return appended;
+	}
+
+	/**
+	 * Decode the next observation.
+	 *
+	 * @return true if an observation has been decoded, false if all the observations have been read
+	 * @throws IllegalStateException if the columns are truncated
+	 */
+	public boolean moveToNext() {
+		if (mPosition == mCount) {
+			return false;
+		}
+		if (mPosition == 0) {
+			mTime = mTimeColumn.readBits(64);
+			mWeatherId = (int) mWeatherColumn.readBits(32);
+		} else {
+			mInterval += readTimeDifference();
+			mTime += mInterval;
+			if (mWeatherColumn.readBit()) {
+				mWeatherId = (int) mWeatherColumn.readBits(32);
+			}
+		}
+		mTemperatureColumn.next();
+		mHumidityColumn.next();
+		mPressureColumn.next();
+		mPosition++;
+		return true;
+	}
+
+	/**
+	 * @return the number of encoded observations
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	public long getTimeInMillis() {
+		return mTime;
+	}
+
+	public float getTemperatureInCelsius() {
+		return Float.intBitsToFloat(mTemperatureColumn.mBits);
+	}
+
+	public float getHumidity() {
+		return Float.intBitsToFloat(mHumidityColumn.mBits);
+	}
+
+	public float getPressure() {
+		return Float.intBitsToFloat(mPressureColumn.mBits);
+	}
+
+	public int getWeatherId() {
+		return mWeatherId;
+	}
+
+	/**
+	 * Read a difference of intervals written by the encoder.
+	 */
+	private long readTimeDifference() {
+		final int[] bitCounts = CompressedHistoryEncoder.TIME_BIT_COUNTS;
+		//the number of 1 gives the size of the difference
+		int size = 0;
+		while (size < bitCounts.length && mTimeColumn.readBit()) {
+			size++;
+		}
+		if (size == 0) {
+			return 0;
+		}
+		final int bitCount = bitCounts[size - 1];
+		final long difference = mTimeColumn.readBits(bitCount);
+		//sign extension
+		return bitCount == 64 ? difference : (difference << (64 - bitCount)) >> (64 - bitCount);
+	}
+
+	/**
+	 * A column of floats stored as the xor with the previous value
+	 */
+	private static final class FloatColumn {
+		private final BitReader mReader;
+		private boolean mIsEmpty = true;
+		private int mBits;
+		private int mLeadingZeros;
+		private int mTrailingZeros;
+
+		private FloatColumn(BitReader reader) {
+			mReader = reader;
+		}
+
+		private void next() {
+			if (mIsEmpty) {
+				mBits = (int) mReader.readBits(32);
+				mIsEmpty = false;
+				return;
+			}
+			if (!mReader.readBit()) {
+				//same value
+				return;
+			}
+			if (mReader.readBit()) {
+				//a new window
+				mLeadingZeros = (int) mReader.readBits(5);
+				final int significantBitCount = (int) mReader.readBits(5) + 1;
+				mTrailingZeros = 32 - mLeadingZeros - significantBitCount;
+			}
+			final int xor = (int) mReader.readBits(32 - mLeadingZeros - mTrailingZeros) << mTrailingZeros;
+			mBits ^= xor;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encode the observations of the history in a compressed columnar format, read back by a
+ * {@link fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryDecoder}.
+ * <p/>
+ * Each value is written in its own column of bits, as in the Gorilla time series database:
+ * <ul>
+ * <li>the times are stored as the difference between two successive intervals,
+ * a single bit when the observations are regular;</li>
+ * <li>the temperature, the humidity and the pressure are stored as the xor with the previous value,
+ * a single bit when the value has not changed and only the changed bits otherwise;</li>
+ * <li>the weather id is stored only when it changes.</li>
+ * </ul>
+ * The observations are added one by one, the file is made of a header followed by the columns.
+ */
+public class CompressedHistoryEncoder implements TemperatureHistoryLog.Visitor {
+
+	//"STHC", identifies the file
+	static final int MAGIC = 0x53544843;
+	static final int VERSION = 1;
+	//time, temperature, humidity, pressure and weather id
+	static final int COLUMN_COUNT = 5;
+	//size of the header: magic (4), version (4), observation count (4), and the size of each column (4)
+	static final int HEADER_SIZE_IN_BYTES = 12 + 4 * COLUMN_COUNT;
+
+	//number of bits of the differences of intervals, the last one holds any difference
+	static final int[] TIME_BIT_COUNTS = {7, 9, 12, 32, 64};
+
+	private final BitWriter mTimeColumn;
+	private final FloatColumn mTemperatureColumn;
+	private final FloatColumn mHumidityColumn;
+	private final FloatColumn mPressureColumn;
+	private final BitWriter mWeatherColumn;
+
+	//number of encoded observations
+	private int mCount;
+	private long mLastTime;
+	private long mLastInterval;
+	private int mLastWeatherId;
+
+	public CompressedHistoryEncoder() {
+		mTimeColumn = new BitWriter();
+		mTemperatureColumn = new FloatColumn();
+		mHumidityColumn = new FloatColumn();
+		mPressureColumn = new FloatColumn();
+		mWeatherColumn = new BitWriter();
+	}
+
+	/**
+	 * Encode the whole {@code historyLog} in {@code file}.
+	 *
+	 * @param historyLog the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog} to export
+	 * @param file       the {@link java.io.File} to write
+	 * @return the number of exported observations
+	 * @throws IOException if the file can't be written
+	 */
+	public static int export(TemperatureHistoryLog historyLog, File file) throws IOException {
+		final CompressedHistoryEncoder encoder = new CompressedHistoryEncoder();
+		historyLog.scan(Long.MIN_VALUE, Long.MAX_VALUE, encoder);
+		final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			encoder.writeTo(outputStream);
+		} finally {
+			outputStream.close();
+		}
+		return encoder.getCount();
+	}
+
+	/**
+	 * Encode an observation, the observations must be added in time order.
+	 *
+	 * @param timeInMillis         the time of the observation (in Millis)
+	 * @param temperatureInCelsius the temperature (in Celsius)
+	 * @param humidity             the humidity (in %), {@link Float#NaN} if unknown
+	 * @param pressure             the pressure (in hPa), {@link Float#NaN} if unknown
+	 * @param weatherId            the OpenWeatherMap weather condition id
+	 */
+	public void add(long timeInMillis, float temperatureInCelsius, float humidity, float pressure, int weatherId) {
+		if (mCount == 0) {
+			mTimeColumn.writeBits(timeInMillis, 64);
+			mWeatherColumn.writeBits(weatherId, 32);
+		} else {
+			final long interval = timeInMillis - mLastTime;
+			writeTimeDifference(interval - mLastInterval);
+			mLastInterval = interval;
+			if (weatherId == mLastWeatherId) {
+				mWeatherColumn.writeBit(false);
+			} else {
+				mWeatherColumn.writeBit(true);
+				mWeatherColumn.writeBits(weatherId, 32);
+			}
+		}
+		mLastTime = timeInMillis;
+		mLastWeatherId = weatherId;
+		mTemperatureColumn.add(temperatureInCelsius);
+		mHumidityColumn.add(humidity);
+		mPressureColumn.add(pressure);
+		mCount++;
+	}
+
+	/**
+	 * @return the number of encoded observations
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return the size of the encoded observations once written (in bytes)
+	 */
+	public int getSizeInBytes() {
+		return HEADER_SIZE_IN_BYTES + mTimeColumn.getSizeInBytes() + mTemperatureColumn.mBits.getSizeInBytes()
+				+ mHumidityColumn.mBits.getSizeInBytes() + mPressureColumn.mBits.getSizeInBytes()
+				+ mWeatherColumn.getSizeInBytes();
+	}
+
+	/**
+	 * Write the header and the columns to {@code outputStream}.
+	 *
+	 * @param outputStream the {@link java.io.OutputStream} receiving the encoded observations
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream outputStream) throws IOException {
+		final DataOutputStream output = new DataOutputStream(outputStream);
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(mCount);
+		output.writeInt(mTimeColumn.getSizeInBytes());
+		output.writeInt(mTemperatureColumn.mBits.getSizeInBytes());
+		output.writeInt(mHumidityColumn.mBits.getSizeInBytes());
+		output.writeInt(mPressureColumn.mBits.getSizeInBytes());
+		output.writeInt(mWeatherColumn.getSizeInBytes());
+		mTimeColumn.writeTo(output);
+		mTemperatureColumn.mBits.writeTo(output);
+		mHumidityColumn.mBits.writeTo(output);
+		mPressureColumn.mBits.writeTo(output);
+		mWeatherColumn.writeTo(output);
+		output.flush();
+	}
+
+	/*
+		TemperatureHistoryLog.Visitor Override
+	 */
+
+	@Override
+	public void onObservation(long timeInMillis, float temperatureInCelsius, float humidity,
+							  float pressure, int weatherId) {
+		add(timeInMillis, temperatureInCelsius, humidity, pressure, weatherId);
+	}
+
+	/**
+	 * Write a difference of intervals: a 0 if null, otherwise as many 1 as the index of the
+	 * smallest size that holds it, a 0 unless it is the last size, and the difference on this size.
+	 */
+	private void writeTimeDifference(long difference) {
+		if (difference == 0) {
+			mTimeColumn.writeBit(false);
+			return;
+		}
+		final int lastSize = TIME_BIT_COUNTS.length - 1;
+		for (int size = 0; size < lastSize; size++) {
+			final int bitCount = TIME_BIT_COUNTS[size];
+			final long bound = 1L << (bitCount - 1);
+			if (difference >= -bound && difference < bound) {
+				//"size + 1" 1 followed by a 0
+				mTimeColumn.writeBits(((1L << (size + 1)) - 1) << 1, size + 2);
+				mTimeColumn.writeBits(difference, bitCount);
+				return;
+			}
+		}
+		mTimeColumn.writeBits((1L << (lastSize + 1)) - 1, lastSize + 1);
+		mTimeColumn.writeBits(difference, TIME_BIT_COUNTS[lastSize]);
+	}
+
+	/**
+	 * A column of floats stored as the xor with the previous value
+	 */
+	private static final class FloatColumn {
+		private final BitWriter mBits = new BitWriter();
+		private boolean mIsEmpty = true;
+		private int mLastBits;
+		//the zeros around the last stored xor, -1 before the first xor
+		private int mLastLeadingZeros = -1;
+		private int mLastTrailingZeros;
+
+		private void add(float value) {
+			final int bits = Float.floatToRawIntBits(value);
+			if (mIsEmpty) {
+				mBits.writeBits(bits, 32);
+				mIsEmpty = false;
+				mLastBits = bits;
+				return;
+			}
+
+			final int xor = bits ^ mLastBits;
+			mLastBits = bits;
+			if (xor == 0) {
+				//same value
+				mBits.writeBit(false);
+				return;
+			}
+
+			mBits.writeBit(true);
+			final int leadingZeros = Integer.numberOfLeadingZeros(xor);
+			final int trailingZeros = Integer.numberOfTrailingZeros(xor);
+			if (mLastLeadingZeros >= 0 && leadingZeros >= mLastLeadingZeros && trailingZeros >= mLastTrailingZeros) {
+				//the changed bits fit in the window of the last xor
+				mBits.writeBit(false);
+				mBits.writeBits(xor >>> mLastTrailingZeros, 32 - mLastLeadingZeros - mLastTrailingZeros);
+			} else {
+				//a new window: leading zeros, number of changed bits - 1, changed bits
+				final int significantBitCount = 32 - leadingZeros - trailingZeros;
+				mBits.writeBit(true);
+				mBits.writeBits(leadingZeros, 5);
+				mBits.writeBits(significantBitCount - 1, 5);
+				mBits.writeBits(xor >>> trailingZeros, significantBitCount);
+				mLastLeadingZeros = leadingZeros;
+				mLastTrailingZeros = trailingZeros;
+			}
+		}
+	}
+}
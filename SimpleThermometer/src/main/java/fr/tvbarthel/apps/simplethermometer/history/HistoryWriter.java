@@ -0,0 +1,237 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot;
+
+/**
+ * A write-behind stage in front of the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog}.
+ * <p/>
+ * The observations are queued in memory and appended by a background thread, so that opening,
+ * growing and flushing the memory-mapped log never happen on the main thread.
+ * The observations queued during {@link #BATCH_DELAY_IN_MILLIS} are appended together
+ * and made durable with a single flush of the log.
+ * {@link #flush()} should be called when the application goes to the background
+ * so that the queue is written as soon as possible, the process may then be killed.
+ * <p/>
+ * The {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot} of the last weather is written
+ * with the same batch, only the last one is written if several are saved during a batch.
+ * <p/>
+ * The appended observations are summed up in the
+ * {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollupStore}, which is compacted
+ * by the same thread shortly after the start of the writer and then once a day.
+ */
+public class HistoryWriter implements Handler.Callback {
+
+	//delay during which the observations are gathered before being written (in Millis)
+	public static final long BATCH_DELAY_IN_MILLIS = 2000;
+	//delay before the first compaction of the history, out of the way of the start of the application (in Millis)
+	public static final long COMPACTION_DELAY_IN_MILLIS = 60 * 1000;
+	//time between two compactions of the history (in Millis)
+	public static final long COMPACTION_INTERVAL_IN_MILLIS = 24 * 60 * 60 * 1000L;
+
+	private static final String THREAD_NAME = "HistoryWriter";
+	private static final int MESSAGE_DRAIN = 1;
+	private static final int MESSAGE_COMPACT = 2;
+
+	private static HistoryWriter sInstance;
+
+	private final Context mContext;
+	private final Handler mHandler;
+	//Drain the queue, posted at the front of the queue of the writer thread by flush()
+	private final Runnable mDrainRunnable;
+	//The observations waiting to be written, guarded by itself
+	private ArrayList<Observation> mPending;
+	//The observations being written, only used by the writer thread
+	private ArrayList<Observation> mDraining;
+	//The last weather waiting to be written, null if none, guarded by this
+	private WeatherSnapshot mPendingSnapshot;
+
+	/**
+	 * Return the shared instance of the writer.
+	 *
+	 * @param context a {@link android.content.Context}, its application context is kept
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.history.HistoryWriter}
+	 */
+	public static synchronized HistoryWriter getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new HistoryWriter(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	private HistoryWriter(Context context) {
+		mContext = context;
+		mPending = new ArrayList<Observation>();
+		mDraining = new ArrayList<Observation>();
+		final HandlerThread thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		mHandler = new Handler(thread.getLooper(), this);
+		mDrainRunnable = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+		mHandler.sendEmptyMessageDelayed(MESSAGE_COMPACT, COMPACTION_DELAY_IN_MILLIS);
+	}
+
+	/**
+	 * Queue an observation, it is appended to the history by the writer thread.
+	 * See {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog#append(long, float, float, float, int)}
+	 *
+	 * @param timeInMillis         the time of the observation (in Millis)
+	 * @param temperatureInCelsius the temperature (in Celsius)
+	 * @param humidity             the humidity (in %), {@link Float#NaN} if unknown
+	 * @param pressure             the pressure (in hPa), {@link Float#NaN} if unknown
+	 * @param weatherId            the OpenWeatherMap weather condition id
+	 */
+	public void append(long timeInMillis, float temperatureInCelsius, float humidity, float pressure, int weatherId) {
+		final boolean isFirst;
+		synchronized (this) {
+			isFirst = isIdle();
+			mPending.add(new Observation(timeInMillis, temperatureInCelsius, humidity, pressure, weatherId));
+		}
+		if (isFirst) {
+			//start a new batch
+			mHandler.sendEmptyMessageDelayed(MESSAGE_DRAIN, BATCH_DELAY_IN_MILLIS);
+		}
+	}
+
+	/**
+	 * Queue the last observed weather, it replaces the snapshot file once written by the writer thread.
+	 * See {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot#save(android.content.Context, WeatherSnapshot)}
+	 *
+	 * @param snapshot the {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot} to write
+	 */
+	public void writeSnapshot(WeatherSnapshot snapshot) {
+		final boolean isFirst;
+		synchronized (this) {
+			isFirst = isIdle();
+			mPendingSnapshot = snapshot;
+		}
+		if (isFirst) {
+			//start a new batch
+			mHandler.sendEmptyMessageDelayed(MESSAGE_DRAIN, BATCH_DELAY_IN_MILLIS);
+		}
+	}
+
+	/**
+	 * Write the queued observations and the last weather now instead of at the end of the batch.
+	 * <p/>
+	 * The write is posted at the front of the queue of the writer thread, ahead of a pending compaction,
+	 * and made durable by the flush of the log. The caller does not wait for it,
+	 * so that the main thread never waits for the disk.
+	 */
+	public void flush() {
+		mHandler.removeMessages(MESSAGE_DRAIN);
+		mHandler.postAtFrontOfQueue(mDrainRunnable);
+	}
+
+	/*
+		Handler.Callback Override
+	 */
+
+	@Override
+	public boolean handleMessage(Message message) {
+		switch (message.what) {
+			case MESSAGE_DRAIN:
+				drain();
+				return true;
+			case MESSAGE_COMPACT:
+				compact();
+				mHandler.sendEmptyMessageDelayed(MESSAGE_COMPACT, COMPACTION_INTERVAL_IN_MILLIS);
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return true if nothing is waiting to be written, must be called with the lock held
+	 */
+	private boolean isIdle() {
+		return mPending.isEmpty() && mPendingSnapshot == null;
+	}
+
+	/**
+	 * Write the queued observations and the last weather, called by the writer thread.
+	 */
+	private void drain() {
+		//take the whole queue, the next observations start a new batch
+		final WeatherSnapshot snapshot;
+		synchronized (this) {
+			final ArrayList<Observation> pending = mPending;
+			mPending = mDraining;
+			mDraining = pending;
+			snapshot = mPendingSnapshot;
+			mPendingSnapshot = null;
+		}
+
+		if (snapshot != null) {
+			try {
+				snapshot.write(new File(mContext.getFilesDir(), WeatherSnapshot.FILE_NAME));
+			} catch (IOException e) {
+				//the previous snapshot is kept, the weather is still known in memory
+			}
+		}
+
+		if (mDraining.isEmpty()) {
+			return;
+		}
+
+		try {
+			final TemperatureHistoryLog historyLog = TemperatureHistoryLog.getInstance(mContext);
+			final TemperatureRollupStore rollupStore = TemperatureRollupStore.getInstance(mContext);
+			for (Observation observation : mDraining) {
+				if (historyLog.append(observation.mTimeInMillis, observation.mTemperatureInCelsius,
+						observation.mHumidity, observation.mPressure, observation.mWeatherId)) {
+					rollupStore.add(observation.mTimeInMillis, observation.mTemperatureInCelsius);
+				}
+			}
+			historyLog.flush();
+			rollupStore.flush();
+		} catch (IOException e) {
+			//the history is not available, the batch is lost but the current temperature is still stored
+		}
+		mDraining.clear();
+	}
+
+	/**
+	 * Sum up the old observations in the rollups and remove them from the log, called by the writer thread.
+	 */
+	private void compact() {
+		try {
+			TemperatureRollupStore.getInstance(mContext).compact(System.currentTimeMillis());
+		} catch (IOException e) {
+			//the history is not available, it will be compacted next time
+		}
+	}
+
+	/**
+	 * An observation waiting to be written
+	 */
+	private static final class Observation {
+		private final long mTimeInMillis;
+		private final float mTemperatureInCelsius;
+		private final float mHumidity;
+		private final float mPressure;
+		private final int mWeatherId;
+
+		private Observation(long timeInMillis, float temperatureInCelsius, float humidity, float pressure, int weatherId) {
+			mTimeInMillis = timeInMillis;
+			mTemperatureInCelsius = temperatureInCelsius;
+			mHumidity = humidity;
+			mPressure = pressure;
+			mWeatherId = weatherId;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The last temperatures read, kept in memory to draw the trend of the temperature.
+ * <p/>
+ * The readings are stored in a ring of parallel atomic arrays. An append writes the values
+ * in the oldest slot and then publishes them by incrementing a volatile counter, so that it never
+ * waits for the readers. A reader takes a {@link fr.tvbarthel.apps.simplethermometer.history.RecentReadings.Snapshot}
+ * of the published readings, which reads straight from the arrays.
+ * <p/>
+ * The slots are read and written with the volatile semantics of the atomic arrays, not as plain fields:
+ * the check of a snapshot reads the counter after the values, and plain loads of the values could be
+ * moved after that volatile read. With volatile accesses only, the values and the counter are read
+ * in the order of the program, as the writer wrote them.
+ * <p/>
+ * The appends must be made from a single thread, the main thread,
+ * the snapshots can be read from any thread.
+ */
+public final class RecentReadings {
+
+	//number of readings kept, two days of hourly updates
+	public static final int CAPACITY = 48;
+
+	private static RecentReadings sInstance;
+
+	//one slot more than the capacity, the slot being written is never part of a snapshot
+	private final AtomicLongArray mTimes;
+	//the raw int bits of the temperatures, see Float#floatToRawIntBits(float)
+	private final AtomicIntegerArray mTemperatures;
+	//number of readings appended since the creation, the last one is at (mWriteCount - 1) % mTimes.length()
+	private volatile long mWriteCount;
+
+	/**
+	 * Return the shared instance, filled with the last observations of the history the first time.
+	 *
+	 * @param context the {@link android.content.Context} used to open the history
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.history.RecentReadings}
+	 */
+	public static synchronized RecentReadings getInstance(Context context) {
+		if (sInstance == null) {
+			final RecentReadings recentReadings = new RecentReadings(CAPACITY);
+			try {
+				final TemperatureHistoryLog historyLog = TemperatureHistoryLog.getInstance(context);
+				final int recordCount = historyLog.getRecordCount();
+				if (recordCount > 0) {
+					historyLog.scan(historyLog.getTimeAt(Math.max(0, recordCount - CAPACITY)), Long.MAX_VALUE,
+							new TemperatureHistoryLog.Visitor() {
+								@Override
+								public void onObservation(long timeInMillis, float temperatureInCelsius, float humidity,
+														  float pressure, int weatherId) {
+									recentReadings.append(timeInMillis, temperatureInCelsius);
+								}
+							});
+				}
+			} catch (IOException e) {
+				//start without the history
+			}
+			sInstance = recentReadings;
+		}
+		return sInstance;
+	}
+
+	/**
+	 * @param capacity the number of readings kept
+	 */
+	public RecentReadings(int capacity) {
+		mTimes = new AtomicLongArray(capacity + 1);
+		mTemperatures = new AtomicIntegerArray(capacity + 1);
+	}
+
+	/**
+	 * Append a reading, the oldest one is dropped if the ring is full.
+	 * Must always be called from the same thread.
+	 *
+	 * @param timeInMillis         the time of the reading (in Millis)
+	 * @param temperatureInCelsius the temperature (in Celsius)
+	 */
+	public void append(long timeInMillis, float temperatureInCelsius) {
+		final long writeCount = mWriteCount;
+		final int index = (int) (writeCount % mTimes.length());
+		mTimes.set(index, timeInMillis);
+		mTemperatures.set(index, Float.floatToRawIntBits(temperatureInCelsius));
+		//publish the reading
+		mWriteCount = writeCount + 1;
+	}
+
+	/**
+	 * Return a snapshot of the readings published so far, the arrays are not copied.
+	 *
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.history.RecentReadings.Snapshot}
+	 */
+	public Snapshot getSnapshot() {
+		return new Snapshot(this, mWriteCount);
+	}
+
+	/**
+	 * @return the number of readings appended since the creation, changes with each new reading.
+	 */
+	public long getAppendCount() {
+		return mWriteCount;
+	}
+
+	/**
+	 * @return the number of readings kept
+	 */
+	public int getCapacity() {
+		return mTimes.length() - 1;
+	}
+
+	/**
+	 * A snapshot of the readings published before its creation, from the oldest to the newest.
+	 * <p/>
+	 * The values are read from the ring, the oldest ones may be overwritten by the appends made after
+	 * the creation of the snapshot: {@link #isIntact()} should be checked once the values have been read.
+	 */
+	public static final class Snapshot {
+		private final RecentReadings mReadings;
+		//number of readings written when the snapshot was created
+		private final long mEnd;
+		private final int mCount;
+
+		private Snapshot(RecentReadings readings, long end) {
+			mReadings = readings;
+			mEnd = end;
+			mCount = (int) Math.min(end, readings.mTimes.length() - 1);
+		}
+
+		/**
+		 * @return the number of readings of the snapshot
+		 */
+		public int getCount() {
+			return mCount;
+		}
+
+		/**
+		 * @param position the position of the reading, 0 for the oldest one
+		 * @return the time of the reading (in Millis)
+		 */
+		public long getTimeAt(int position) {
+			return mReadings.mTimes.get(getIndex(position));
+		}
+
+		/**
+		 * @param position the position of the reading, 0 for the oldest one
+		 * @return the temperature of the reading (in Celsius)
+		 */
+		public float getTemperatureAt(int position) {
+			return Float.intBitsToFloat(mReadings.mTemperatures.get(getIndex(position)));
+		}
+
+		/**
+		 * @return true if none of the readings of the snapshot has been overwritten,
+		 * false if the values read may be wrong and a new snapshot should be taken.
+		 */
+		public boolean isIntact() {
+			//The values read before are volatile reads, so they precede this read of the counter.
+			//A value read from an append started after the creation was written before that append
+			//published its reading, the append is counted here as the one being written at least.
+			//the appends started since the creation, including the one being written, only used the free slots
+			return mReadings.mWriteCount - mEnd < mReadings.mTimes.length() - mCount;
+		}
+
+		private int getIndex(int position) {
+			if (position < 0 || position >= mCount) {
+				throw new IndexOutOfBoundsException(position + " out of " + mCount);
+			}
+			return (int) ((mEnd - mCount + position) % mReadings.mTimes.length());
+		}
+	}
+}
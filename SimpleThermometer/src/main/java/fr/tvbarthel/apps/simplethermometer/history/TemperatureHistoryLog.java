@@ -0,0 +1,331 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An append-only log of all the weather observations, stored in a memory-mapped file.
+ * <p/>
+ * The file starts with a header followed by fixed size records:
+ * (time in Millis, temperature in Celsius, humidity in %, pressure in hPa, weather id).
+ * A missing value is stored as {@link Float#NaN}, or {@link #WEATHER_ID_UNKNOWN} for the weather id.
+ * <p/>
+ * A record is written in place in the mapping and the record count of the header is updated afterwards,
+ * so an append costs a few memory writes and an interrupted append is never read back.
+ * The records are kept in time order, a range of time is found with a binary search
+ * and read straight from the mapping.
+ * <p/>
+ * The old observations are removed with {@link #removeBefore(long)} once they have been summed up
+ * by the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollupStore}.
+ */
+public class TemperatureHistoryLog {
+
+	//name of the log file in the files directory of the application
+	public static final String FILE_NAME = "temperature_history.log";
+	//size of a record: time (8), temperature (4), humidity (4), pressure (4), weather id (4)
+	public static final int RECORD_SIZE_IN_BYTES = 24;
+	//weather id of a record without weather condition
+	public static final int WEATHER_ID_UNKNOWN = 0;
+
+	//"STHL", identifies the file
+	private static final int MAGIC = 0x5354484C;
+	private static final int VERSION = 1;
+	//size of the header: magic (4), version (4), record count (4), reserved (4)
+	private static final int HEADER_SIZE_IN_BYTES = 16;
+	private static final int OFFSET_VERSION = 4;
+	private static final int OFFSET_RECORD_COUNT = 8;
+	//offsets of the values in a record
+	private static final int OFFSET_TIME = 0;
+	private static final int OFFSET_TEMPERATURE = 8;
+	private static final int OFFSET_HUMIDITY = 12;
+	private static final int OFFSET_PRESSURE = 16;
+	private static final int OFFSET_WEATHER_ID = 20;
+	//number of records added to the mapping when it is full, a month of observations every 10 minutes
+	private static final int GROWTH_IN_RECORDS = 4096;
+	//suffix of the file written while the old observations are removed
+	private static final String SUFFIX_COMPACTING = ".compacting";
+
+	private static TemperatureHistoryLog sInstance;
+
+	private final File mPath;
+	private RandomAccessFile mFile;
+	private FileChannel mChannel;
+	private MappedByteBuffer mBuffer;
+	//number of records the current mapping can hold
+	private int mCapacity;
+	//number of records written
+	private int mRecordCount;
+
+	/**
+	 * Return the shared instance of the log, stored in the files directory of the application.
+	 *
+	 * @param context the {@link android.content.Context} used to retrieve the files directory
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog}
+	 * @throws IOException if the log can't be opened
+	 */
+	public static synchronized TemperatureHistoryLog getInstance(Context context) throws IOException {
+		if (sInstance == null) {
+			sInstance = new TemperatureHistoryLog(new File(context.getFilesDir(), FILE_NAME));
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Open the log stored in {@code file}, the file is created if it does not exist.
+	 *
+	 * @param file the {@link java.io.File} of the log
+	 * @throws IOException if the file can't be mapped or is not a log
+	 */
+	public TemperatureHistoryLog(File file) throws IOException {
+		mPath = file;
+		open();
+	}
+
+	/**
+	 * Open and map {@code mPath}, the file is created if it does not exist.
+	 */
+	private void open() throws IOException {
+		mFile = new RandomAccessFile(mPath, "rw");
+		mChannel = mFile.getChannel();
+		final long length = mFile.length();
+		if (length < HEADER_SIZE_IN_BYTES) {
+			//a new log
+			map(GROWTH_IN_RECORDS);
+			mBuffer.putInt(0, MAGIC);
+			mBuffer.putInt(OFFSET_VERSION, VERSION);
+			mBuffer.putInt(OFFSET_RECORD_COUNT, 0);
+			mRecordCount = 0;
+		} else {
+			map((int) ((length - HEADER_SIZE_IN_BYTES) / RECORD_SIZE_IN_BYTES));
+			if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(OFFSET_VERSION) != VERSION) {
+				mFile.close();
+				throw new IOException("Not a temperature history log: " + mPath);
+			}
+			mRecordCount = Math.min(mBuffer.getInt(OFFSET_RECORD_COUNT), mCapacity);
+		}
+	}
+
+	/**
+	 * Append an observation at the end of the log.
+	 *
+	 * @param timeInMillis         the time of the observation (in Millis)
+	 * @param temperatureInCelsius the temperature (in Celsius)
+	 * @param humidity             the humidity (in %), {@link Float#NaN} if unknown
+	 * @param pressure             the pressure (in hPa), {@link Float#NaN} if unknown
+	 * @param weatherId            the OpenWeatherMap weather condition id, {@link #WEATHER_ID_UNKNOWN} if unknown
+	 * @return true if the observation has been appended, false if it is older than the last one.
+	 * @throws IOException if the log can't grow
+	 */
+	public synchronized boolean append(long timeInMillis, float temperatureInCelsius, float humidity,
+									   float pressure, int weatherId) throws IOException {
+		if (mRecordCount > 0 && timeInMillis < getTime(mRecordCount - 1)) {
+			//the records are kept in time order
+			return false;
+		}
+		if (mRecordCount == mCapacity) {
+			map(mCapacity + GROWTH_IN_RECORDS);
+		}
+
+		//write the record, then publish it in the header
+		final int offset = getOffset(mRecordCount);
+		mBuffer.putLong(offset + OFFSET_TIME, timeInMillis);
+		mBuffer.putFloat(offset + OFFSET_TEMPERATURE, temperatureInCelsius);
+		mBuffer.putFloat(offset + OFFSET_HUMIDITY, humidity);
+		mBuffer.putFloat(offset + OFFSET_PRESSURE, pressure);
+		mBuffer.putInt(offset + OFFSET_WEATHER_ID, weatherId);
+		mRecordCount++;
+		mBuffer.putInt(OFFSET_RECORD_COUNT, mRecordCount);
+		return true;
+	}
+
+	/**
+	 * Visit the observations made between {@code fromTimeInMillis} and {@code toTimeInMillis}, both included,
+	 * in time order. The values are read straight from the mapping, nothing is allocated.
+	 * <p/>
+	 * The log is locked during the scan, {@code visitor} must not use it.
+	 *
+	 * @param fromTimeInMillis the start of the range (in Millis)
+	 * @param toTimeInMillis   the end of the range (in Millis)
+	 * @param visitor          the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog.Visitor}
+	 *                         called for each observation
+	 * @return the number of visited observations
+	 */
+	public synchronized int scan(long fromTimeInMillis, long toTimeInMillis, Visitor visitor) {
+		int visited = 0;
+		for (int index = indexOf(fromTimeInMillis); index < mRecordCount; index++) {
+			final int offset = getOffset(index);
+			final long time = mBuffer.getLong(offset + OFFSET_TIME);
+			if (time > toTimeInMillis) {
+				break;
+			}
+			visitor.onObservation(time,
+					mBuffer.getFloat(offset + OFFSET_TEMPERATURE),
+					mBuffer.getFloat(offset + OFFSET_HUMIDITY),
+					mBuffer.getFloat(offset + OFFSET_PRESSURE),
+					mBuffer.getInt(offset + OFFSET_WEATHER_ID));
+			visited++;
+		}
+		return visited;
+	}
+
+	/**
+	 * Return a read-only view of the records between {@code fromIndex} (included) and {@code toIndex} (excluded),
+	 * backed by the mapping. The view is only valid until the next append or removal.
+	 *
+	 * @param fromIndex the index of the first record
+	 * @param toIndex   the index after the last record
+	 * @return a read-only {@link java.nio.ByteBuffer} of {@code (toIndex - fromIndex) * RECORD_SIZE_IN_BYTES} bytes
+	 */
+	public synchronized ByteBuffer getRecords(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > mRecordCount || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("[" + fromIndex + ", " + toIndex + ") out of " + mRecordCount);
+		}
+		final ByteBuffer records = mBuffer.asReadOnlyBuffer();
+		records.limit(getOffset(toIndex));
+		records.position(getOffset(fromIndex));
+		return records.slice();
+	}
+
+	/**
+	 * Return the index of the first observation made at or after {@code timeInMillis}.
+	 *
+	 * @param timeInMillis a time (in Millis)
+	 * @return the index of the observation, {@link #getRecordCount()} if all the observations are older
+	 */
+	public synchronized int indexOf(long timeInMillis) {
+		int low = 0;
+		int high = mRecordCount;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (getTime(middle) < timeInMillis) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Return the time of the observation at {@code index}.
+	 *
+	 * @param index the index of the observation
+	 * @return the time of the observation (in Millis)
+	 */
+	public synchronized long getTimeAt(int index) {
+		if (index < 0 || index >= mRecordCount) {
+			throw new IndexOutOfBoundsException(index + " out of " + mRecordCount);
+		}
+		return getTime(index);
+	}
+
+	/**
+	 * Remove the observations made before {@code timeInMillis}.
+	 * <p/>
+	 * The remaining records are copied to a new file which then replaces the log,
+	 * so an interrupted removal leaves the log as it was.
+	 *
+	 * @param timeInMillis the time of the oldest observation to keep (in Millis)
+	 * @return the number of removed observations
+	 * @throws IOException if the log can't be rewritten
+	 */
+	public synchronized int removeBefore(long timeInMillis) throws IOException {
+		final int removedCount = indexOf(timeInMillis);
+		if (removedCount == 0) {
+			return 0;
+		}
+
+		//write the header and the kept records in a new file
+		final File compactedPath = new File(mPath.getPath() + SUFFIX_COMPACTING);
+		final RandomAccessFile compactedFile = new RandomAccessFile(compactedPath, "rw");
+		try {
+			compactedFile.setLength(0);
+			final FileChannel compactedChannel = compactedFile.getChannel();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE_IN_BYTES);
+			header.putInt(0, MAGIC);
+			header.putInt(OFFSET_VERSION, VERSION);
+			header.putInt(OFFSET_RECORD_COUNT, mRecordCount - removedCount);
+			write(compactedChannel, header);
+			write(compactedChannel, getRecords(removedCount, mRecordCount));
+			compactedChannel.force(true);
+		} finally {
+			compactedFile.close();
+		}
+
+		//replace the log by the new file
+		mFile.close();
+		final boolean replaced = compactedPath.renameTo(mPath);
+		open();
+		if (!replaced) {
+			compactedPath.delete();
+			throw new IOException("Can't replace " + mPath);
+		}
+		return removedCount;
+	}
+
+	/**
+	 * @return the number of observations in the log
+	 */
+	public synchronized int getRecordCount() {
+		return mRecordCount;
+	}
+
+	/**
+	 * Write the pending changes of the mapping to the storage.
+	 */
+	public synchronized void flush() {
+		mBuffer.force();
+	}
+
+	/**
+	 * Write the pending changes and close the log, it must not be used after this call.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		mBuffer.force();
+		mFile.close();
+		synchronized (TemperatureHistoryLog.class) {
+			if (sInstance == this) {
+				sInstance = null;
+			}
+		}
+	}
+
+	/**
+	 * Map the header and {@code capacityInRecords} records, the file is extended if needed.
+	 */
+	private void map(int capacityInRecords) throws IOException {
+		mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+				HEADER_SIZE_IN_BYTES + (long) capacityInRecords * RECORD_SIZE_IN_BYTES);
+		mCapacity = capacityInRecords;
+	}
+
+	private void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private long getTime(int index) {
+		return mBuffer.getLong(getOffset(index) + OFFSET_TIME);
+	}
+
+	private int getOffset(int index) {
+		return HEADER_SIZE_IN_BYTES + index * RECORD_SIZE_IN_BYTES;
+	}
+
+	/**
+	 * A public interface used to read the observations of the log
+	 */
+	public interface Visitor {
+		public void onObservation(long timeInMillis, float temperatureInCelsius, float humidity,
+								  float pressure, int weatherId);
+	}
+}
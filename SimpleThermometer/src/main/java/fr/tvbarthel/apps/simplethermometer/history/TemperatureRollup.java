@@ -0,0 +1,249 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Calendar;
+
+/**
+ * The temperatures summed up per hour or per day, stored in a memory-mapped file.
+ * <p/>
+ * The file starts with a header followed by fixed size buckets:
+ * (start time in Millis, sum of the temperatures, min, max, number of observations).
+ * The buckets start on the local hours or days and are kept in time order.
+ * <p/>
+ * The time of the last added observation is kept in the header and the older observations are ignored,
+ * so the observations of the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog}
+ * can be added again without being counted twice.
+ */
+public class TemperatureRollup {
+
+	//size of a bucket: start time (8), sum (8), min (4), max (4), count (4), reserved (4)
+	public static final int BUCKET_SIZE_IN_BYTES = 32;
+
+	//"STRU", identifies the file
+	private static final int MAGIC = 0x53545255;
+	private static final int VERSION = 1;
+	//size of the header: magic (4), version (4), bucket count (4), reserved (4), time of the last observation (8)
+	private static final int HEADER_SIZE_IN_BYTES = 24;
+	private static final int OFFSET_VERSION = 4;
+	private static final int OFFSET_BUCKET_COUNT = 8;
+	private static final int OFFSET_LAST_TIME = 16;
+	//offsets of the values in a bucket
+	private static final int OFFSET_START_TIME = 0;
+	private static final int OFFSET_SUM = 8;
+	private static final int OFFSET_MIN = 16;
+	private static final int OFFSET_MAX = 20;
+	private static final int OFFSET_COUNT = 24;
+	//number of buckets added to the mapping when it is full
+	private static final int GROWTH_IN_BUCKETS = 1024;
+
+	private final TemperatureRollupStore.Resolution mResolution;
+	private final RandomAccessFile mFile;
+	private final FileChannel mChannel;
+	//Used to find the local hour or day of an observation
+	private final Calendar mCalendar;
+	private MappedByteBuffer mBuffer;
+	//number of buckets the current mapping can hold
+	private int mCapacity;
+	//number of buckets written
+	private int mBucketCount;
+
+	/**
+	 * Open the rollup stored in {@code file}, the file is created if it does not exist.
+	 *
+	 * @param file       the {@link java.io.File} of the rollup
+	 * @param resolution the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollupStore.Resolution}
+	 *                   of the buckets, {@link TemperatureRollupStore.Resolution#HOURLY} or
+	 *                   {@link TemperatureRollupStore.Resolution#DAILY}
+	 * @throws IOException if the file can't be mapped or is not a rollup
+	 */
+	public TemperatureRollup(File file, TemperatureRollupStore.Resolution resolution) throws IOException {
+		mResolution = resolution;
+		mCalendar = Calendar.getInstance();
+		mFile = new RandomAccessFile(file, "rw");
+		mChannel = mFile.getChannel();
+		final long length = mFile.length();
+		if (length < HEADER_SIZE_IN_BYTES) {
+			//a new rollup
+			map(GROWTH_IN_BUCKETS);
+			mBuffer.putInt(0, MAGIC);
+			mBuffer.putInt(OFFSET_VERSION, VERSION);
+			mBuffer.putInt(OFFSET_BUCKET_COUNT, 0);
+			mBuffer.putLong(OFFSET_LAST_TIME, Long.MIN_VALUE);
+			mBucketCount = 0;
+		} else {
+			map((int) ((length - HEADER_SIZE_IN_BYTES) / BUCKET_SIZE_IN_BYTES));
+			if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(OFFSET_VERSION) != VERSION) {
+				mFile.close();
+				throw new IOException("Not a temperature rollup: " + file);
+			}
+			mBucketCount = Math.min(mBuffer.getInt(OFFSET_BUCKET_COUNT), mCapacity);
+		}
+	}
+
+	/**
+	 * Add an observation to the bucket of its local hour or day.
+	 *
+	 * @param timeInMillis         the time of the observation (in Millis)
+	 * @param temperatureInCelsius the temperature (in Celsius)
+	 * @return true if the observation has been added,
+	 * false if it is not newer than the last added observation or its bucket has been missed.
+	 * @throws IOException if the rollup can't grow
+	 */
+	public synchronized boolean add(long timeInMillis, float temperatureInCelsius) throws IOException {
+		if (timeInMillis <= getLastTime()) {
+			//already added
+			return false;
+		}
+
+		final long startTime = getBucketStart(timeInMillis);
+		int index = mBucketCount - 1;
+		if (mBucketCount == 0 || getStartTime(index) < startTime) {
+			//a new bucket
+			if (mBucketCount == mCapacity) {
+				map(mCapacity + GROWTH_IN_BUCKETS);
+			}
+			index = mBucketCount;
+			final int offset = getOffset(index);
+			mBuffer.putLong(offset + OFFSET_START_TIME, startTime);
+			mBuffer.putDouble(offset + OFFSET_SUM, 0);
+			mBuffer.putFloat(offset + OFFSET_MIN, Float.POSITIVE_INFINITY);
+			mBuffer.putFloat(offset + OFFSET_MAX, Float.NEGATIVE_INFINITY);
+			mBuffer.putInt(offset + OFFSET_COUNT, 0);
+			mBucketCount++;
+			mBuffer.putInt(OFFSET_BUCKET_COUNT, mBucketCount);
+		} else if (getStartTime(index) != startTime) {
+			//the local time went back, look for the bucket of the observation
+			index = indexOf(startTime);
+			if (index == mBucketCount || getStartTime(index) != startTime) {
+				return false;
+			}
+		}
+
+		//sum up the observation in its bucket
+		final int offset = getOffset(index);
+		mBuffer.putDouble(offset + OFFSET_SUM, mBuffer.getDouble(offset + OFFSET_SUM) + temperatureInCelsius);
+		mBuffer.putFloat(offset + OFFSET_MIN, Math.min(mBuffer.getFloat(offset + OFFSET_MIN), temperatureInCelsius));
+		mBuffer.putFloat(offset + OFFSET_MAX, Math.max(mBuffer.getFloat(offset + OFFSET_MAX), temperatureInCelsius));
+		mBuffer.putInt(offset + OFFSET_COUNT, mBuffer.getInt(offset + OFFSET_COUNT) + 1);
+		mBuffer.putLong(OFFSET_LAST_TIME, timeInMillis);
+		return true;
+	}
+
+	/**
+	 * Visit the buckets starting between {@code fromTimeInMillis} and {@code toTimeInMillis}, both included,
+	 * in time order. The bucket containing {@code fromTimeInMillis} is visited as well.
+	 * <p/>
+	 * The rollup is locked during the scan, {@code visitor} must not use it.
+	 *
+	 * @param fromTimeInMillis the start of the range (in Millis)
+	 * @param toTimeInMillis   the end of the range (in Millis)
+	 * @param visitor          the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollupStore.Visitor}
+	 *                         called for each bucket
+	 * @return the number of visited buckets
+	 */
+	public synchronized int scan(long fromTimeInMillis, long toTimeInMillis, TemperatureRollupStore.Visitor visitor) {
+		int visited = 0;
+		for (int index = indexOf(getBucketStart(fromTimeInMillis)); index < mBucketCount; index++) {
+			final int offset = getOffset(index);
+			final long startTime = mBuffer.getLong(offset + OFFSET_START_TIME);
+			if (startTime > toTimeInMillis) {
+				break;
+			}
+			final int count = mBuffer.getInt(offset + OFFSET_COUNT);
+			if (count == 0) {
+				//an interrupted add
+				continue;
+			}
+			visitor.onBucket(mResolution, startTime,
+					mBuffer.getFloat(offset + OFFSET_MIN),
+					mBuffer.getFloat(offset + OFFSET_MAX),
+					(float) (mBuffer.getDouble(offset + OFFSET_SUM) / count),
+					count);
+			visited++;
+		}
+		return visited;
+	}
+
+	/**
+	 * @return the time of the last added observation (in Millis), {@link Long#MIN_VALUE} if none
+	 */
+	public synchronized long getLastTime() {
+		return mBuffer.getLong(OFFSET_LAST_TIME);
+	}
+
+	/**
+	 * @return the number of buckets in the rollup
+	 */
+	public synchronized int getBucketCount() {
+		return mBucketCount;
+	}
+
+	/**
+	 * Write the pending changes of the mapping to the storage.
+	 */
+	public synchronized void flush() {
+		mBuffer.force();
+	}
+
+	/**
+	 * Write the pending changes and close the rollup, it must not be used after this call.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		mBuffer.force();
+		mFile.close();
+	}
+
+	/**
+	 * Return the start of the local hour or day of {@code timeInMillis}.
+	 */
+	private long getBucketStart(long timeInMillis) {
+		mCalendar.setTimeInMillis(timeInMillis);
+		if (mResolution == TemperatureRollupStore.Resolution.DAILY) {
+			mCalendar.set(Calendar.HOUR_OF_DAY, 0);
+		}
+		mCalendar.set(Calendar.MINUTE, 0);
+		mCalendar.set(Calendar.SECOND, 0);
+		mCalendar.set(Calendar.MILLISECOND, 0);
+		return mCalendar.getTimeInMillis();
+	}
+
+	/**
+	 * Return the index of the first bucket starting at or after {@code startTimeInMillis}.
+	 */
+	private int indexOf(long startTimeInMillis) {
+		int low = 0;
+		int high = mBucketCount;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (getStartTime(middle) < startTimeInMillis) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Map the header and {@code capacityInBuckets} buckets, the file is extended if needed.
+	 */
+	private void map(int capacityInBuckets) throws IOException {
+		mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+				HEADER_SIZE_IN_BYTES + (long) capacityInBuckets * BUCKET_SIZE_IN_BYTES);
+		mCapacity = capacityInBuckets;
+	}
+
+	private long getStartTime(int index) {
+		return mBuffer.getLong(getOffset(index) + OFFSET_START_TIME);
+	}
+
+	private int getOffset(int index) {
+		return HEADER_SIZE_IN_BYTES + index * BUCKET_SIZE_IN_BYTES;
+	}
+}
@@ -0,0 +1,200 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The history of the temperatures at three resolutions: the raw observations of the
+ * {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog}, and their
+ * hourly and daily {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollup}.
+ * <p/>
+ * The rollups are updated for each new observation. {@link #compact(long)} catches up the rollups
+ * with the log and removes the raw observations older than {@link #RAW_RETENTION_IN_MILLIS},
+ * so that the log does not grow forever and the long ranges are read from the rollups.
+ * A range is queried at the coarsest resolution that still shows the requested detail.
+ */
+public class TemperatureRollupStore {
+
+	//how long the raw observations are kept in the log (in Millis), two weeks
+	public static final long RAW_RETENTION_IN_MILLIS = 14 * 24 * 60 * 60 * 1000L;
+
+	//name of the rollup files in the files directory of the application
+	private static final String FILE_NAME_HOURLY = "temperature_rollup_hourly";
+	private static final String FILE_NAME_DAILY = "temperature_rollup_daily";
+
+	private static TemperatureRollupStore sInstance;
+
+	private final TemperatureHistoryLog mHistoryLog;
+	private final TemperatureRollup mHourlyRollup;
+	private final TemperatureRollup mDailyRollup;
+
+	/**
+	 * Return the shared instance of the store, stored in the files directory of the application.
+	 *
+	 * @param context the {@link android.content.Context} used to retrieve the files directory
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollupStore}
+	 * @throws IOException if the log or the rollups can't be opened
+	 */
+	public static synchronized TemperatureRollupStore getInstance(Context context) throws IOException {
+		if (sInstance == null) {
+			final File filesDir = context.getFilesDir();
+			sInstance = new TemperatureRollupStore(TemperatureHistoryLog.getInstance(context),
+					new TemperatureRollup(new File(filesDir, FILE_NAME_HOURLY), Resolution.HOURLY),
+					new TemperatureRollup(new File(filesDir, FILE_NAME_DAILY), Resolution.DAILY));
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Create a store from its parts.
+	 *
+	 * @param historyLog   the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog} of the raw observations
+	 * @param hourlyRollup the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollup} of the hours
+	 * @param dailyRollup  the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollup} of the days
+	 */
+	public TemperatureRollupStore(TemperatureHistoryLog historyLog, TemperatureRollup hourlyRollup,
+								  TemperatureRollup dailyRollup) {
+		mHistoryLog = historyLog;
+		mHourlyRollup = hourlyRollup;
+		mDailyRollup = dailyRollup;
+	}
+
+	/**
+	 * Add an observation appended to the log to the rollups.
+	 *
+	 * @param timeInMillis         the time of the observation (in Millis)
+	 * @param temperatureInCelsius the temperature (in Celsius)
+	 * @throws IOException if a rollup can't grow
+	 */
+	public void add(long timeInMillis, float temperatureInCelsius) throws IOException {
+		mHourlyRollup.add(timeInMillis, temperatureInCelsius);
+		mDailyRollup.add(timeInMillis, temperatureInCelsius);
+	}
+
+	/**
+	 * Add the observations of the log missing from the rollups,
+	 * then remove the observations older than {@link #RAW_RETENTION_IN_MILLIS} from the log.
+	 *
+	 * @param nowInMillis the current time (in Millis)
+	 * @return the number of observations removed from the log
+	 * @throws IOException if the rollups or the log can't be written
+	 */
+	public int compact(long nowInMillis) throws IOException {
+		//the rollups ignore the observations they already have
+		final long lastTime = Math.min(mHourlyRollup.getLastTime(), mDailyRollup.getLastTime());
+		final IOException[] error = new IOException[1];
+		mHistoryLog.scan(lastTime == Long.MIN_VALUE ? Long.MIN_VALUE : lastTime + 1, Long.MAX_VALUE,
+				new TemperatureHistoryLog.Visitor() {
+					@Override
+					public void onObservation(long timeInMillis, float temperatureInCelsius, float humidity,
+											  float pressure, int weatherId) {
+						if (error[0] == null) {
+							try {
+								add(timeInMillis, temperatureInCelsius);
+							} catch (IOException e) {
+								error[0] = e;
+							}
+						}
+					}
+				});
+		if (error[0] != null) {
+			throw error[0];
+		}
+		flush();
+
+		//the old observations are now summed up in the rollups
+		return mHistoryLog.removeBefore(nowInMillis - RAW_RETENTION_IN_MILLIS);
+	}
+
+	/**
+	 * Return the coarsest resolution whose points are not farther apart than {@code detailInMillis}.
+	 *
+	 * @param detailInMillis the time between two points of the display, for instance the range divided by its width
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollupStore.Resolution}
+	 */
+	public static Resolution getResolution(long detailInMillis) {
+		if (detailInMillis >= Resolution.DAILY.getIntervalInMillis()) {
+			return Resolution.DAILY;
+		} else if (detailInMillis >= Resolution.HOURLY.getIntervalInMillis()) {
+			return Resolution.HOURLY;
+		}
+		return Resolution.RAW;
+	}
+
+	/**
+	 * Visit the temperatures between {@code fromTimeInMillis} and {@code toTimeInMillis} in time order,
+	 * at the coarsest resolution that shows {@code detailInMillis}.
+	 * <p/>
+	 * The raw observations are visited as buckets of a single observation. The part of the range
+	 * older than the first observation of the log is visited from the hourly rollup.
+	 *
+	 * @param fromTimeInMillis the start of the range (in Millis)
+	 * @param toTimeInMillis   the end of the range (in Millis)
+	 * @param detailInMillis   the time between two points of the display, see {@link #getResolution(long)}
+	 * @param visitor          the {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureRollupStore.Visitor}
+	 *                         called for each point
+	 * @return the number of visited points
+	 */
+	public int query(long fromTimeInMillis, long toTimeInMillis, long detailInMillis, final Visitor visitor) {
+		switch (getResolution(detailInMillis)) {
+			case DAILY:
+				return mDailyRollup.scan(fromTimeInMillis, toTimeInMillis, visitor);
+			case HOURLY:
+				return mHourlyRollup.scan(fromTimeInMillis, toTimeInMillis, visitor);
+			default:
+				int visited = 0;
+				//the observations removed from the log are only known by hour
+				final long firstRawTime = mHistoryLog.getRecordCount() == 0 ? Long.MAX_VALUE : mHistoryLog.getTimeAt(0);
+				if (fromTimeInMillis < firstRawTime) {
+					visited += mHourlyRollup.scan(fromTimeInMillis, Math.min(toTimeInMillis, firstRawTime - 1), visitor);
+				}
+				visited += mHistoryLog.scan(fromTimeInMillis, toTimeInMillis, new TemperatureHistoryLog.Visitor() {
+					@Override
+					public void onObservation(long timeInMillis, float temperatureInCelsius, float humidity,
+											  float pressure, int weatherId) {
+						visitor.onBucket(Resolution.RAW, timeInMillis,
+								temperatureInCelsius, temperatureInCelsius, temperatureInCelsius, 1);
+					}
+				});
+				return visited;
+		}
+	}
+
+	/**
+	 * Write the pending changes of the rollups to the storage.
+	 */
+	public void flush() {
+		mHourlyRollup.flush();
+		mDailyRollup.flush();
+	}
+
+	/**
+	 * The resolutions of the history
+	 */
+	public enum Resolution {
+		RAW(0),
+		HOURLY(60 * 60 * 1000L),
+		DAILY(24 * 60 * 60 * 1000L);
+
+		//the nominal time between two points (in Millis)
+		private final long mIntervalInMillis;
+
+		private Resolution(long intervalInMillis) {
+			mIntervalInMillis = intervalInMillis;
+		}
+
+		public long getIntervalInMillis() {
+			return mIntervalInMillis;
+		}
+	}
+
+	/**
+	 * A public interface used to read the history
+	 */
+	public interface Visitor {
+		public void onBucket(Resolution resolution, long startTimeInMillis, float minInCelsius, float maxInCelsius,
+							 float meanInCelsius, int count);
+	}
+}
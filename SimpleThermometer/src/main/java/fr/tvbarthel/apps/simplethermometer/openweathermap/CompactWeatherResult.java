@@ -0,0 +1,449 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+/**
+ * A compact and reusable version of {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+ * filled by the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParser}s.
+ * <p/>
+ * The numeric values are stored as primitives, the presence of each of them is kept in a bitmask.
+ * Instances should be retrieved with {@link #obtain()} and given back with {@link #recycle()}
+ * so that the same instances are reused from one parsing to the other.
+ */
+public final class CompactWeatherResult {
+
+	//Presence flags of the numeric values
+	public static final int HAS_CITY_ID = 1;
+	public static final int HAS_LONGITUDE = 1 << 1;
+	public static final int HAS_LATITUDE = 1 << 2;
+	public static final int HAS_TEMPERATURE_VALUE = 1 << 3;
+	public static final int HAS_TEMPERATURE_MAX = 1 << 4;
+	public static final int HAS_TEMPERATURE_MIN = 1 << 5;
+	public static final int HAS_HUMIDITY_VALUE = 1 << 6;
+	public static final int HAS_PRESSURE_VALUE = 1 << 7;
+	public static final int HAS_WIND_SPEED_VALUE = 1 << 8;
+	public static final int HAS_WIND_DIRECTION_VALUE = 1 << 9;
+	public static final int HAS_CLOUD_VALUE = 1 << 10;
+	public static final int HAS_WEATHER_NUMBER = 1 << 11;
+
+	//max number of instances kept for reuse
+	private static final int MAX_POOL_SIZE = 4;
+	private static final Object sPoolLock = new Object();
+	private static CompactWeatherResult sPool;
+	private static int sPoolSize = 0;
+
+	//next instance in the pool
+	private CompactWeatherResult mNext;
+	//true once recycled, until obtained again
+	private boolean mIsRecycled;
+
+	private int mPresence;
+	private int mCityId;
+	private float mLongitude;
+	private float mLatitude;
+	private float mTemperatureValue;
+	private float mTemperatureMax;
+	private float mTemperatureMin;
+	private float mHumidityValue;
+	private float mPressureValue;
+	private float mWindSpeedValue;
+	private float mWindDirectionValue;
+	private float mCloudValue;
+	private int mWeatherNumber;
+
+	private String mCityName;
+	private String mCountry;
+	private String mSunRise;
+	private String mSunSet;
+	private String mTemperatureUnit;
+	private String mHumidityUnit;
+	private String mPressureUnit;
+	private String mWindSpeedName;
+	private String mWindDirectionCode;
+	private String mWindDirectionName;
+	private String mCloudName;
+	private String mPrecipitationMode;
+	private String mWeatherValue;
+	private String mWeatherIcon;
+	private String mLastUpdate;
+
+	/**
+	 * Return an empty instance from the pool, or a new one if the pool is empty.
+	 *
+	 * @return an empty {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
+	 */
+	public static CompactWeatherResult obtain() {
+		synchronized (sPoolLock) {
+			if (sPool != null) {
+				final CompactWeatherResult result = sPool;
+				sPool = result.mNext;
+				result.mNext = null;
+				result.mIsRecycled = false;
+				sPoolSize--;
+				return result;
+			}
+		}
+		return new CompactWeatherResult();
+	}
+
+	/**
+	 * Reset this instance and give it back to the pool.
+	 * The instance must not be used after this call.
+	 *
+	 * @throws IllegalStateException if this instance has already been recycled
+	 */
+	public void recycle() {
+		synchronized (sPoolLock) {
+			if (mIsRecycled) {
+				throw new IllegalStateException("This CompactWeatherResult has already been recycled");
+			}
+			mIsRecycled = true;
+			reset();
+			if (sPoolSize < MAX_POOL_SIZE) {
+				mNext = sPool;
+				sPool = this;
+				sPoolSize++;
+			}
+		}
+	}
+
+	/**
+	 * Clear all the values.
+	 */
+	public void reset() {
+		mPresence = 0;
+		mCityName = null;
+		mCountry = null;
+		mSunRise = null;
+		mSunSet = null;
+		mTemperatureUnit = null;
+		mHumidityUnit = null;
+		mPressureUnit = null;
+		mWindSpeedName = null;
+		mWindDirectionCode = null;
+		mWindDirectionName = null;
+		mCloudName = null;
+		mPrecipitationMode = null;
+		mWeatherValue = null;
+		mWeatherIcon = null;
+		mLastUpdate = null;
+	}
+
+	/**
+	 * Copy all the values of {@code other} in this instance.
+	 * Used to keep a result beyond its recycling.
+	 *
+	 * @param other the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult} to copy
+	 */
+	public void set(CompactWeatherResult other) {
+		mPresence = other.mPresence;
+		mCityId = other.mCityId;
+		mLongitude = other.mLongitude;
+		mLatitude = other.mLatitude;
+		mTemperatureValue = other.mTemperatureValue;
+		mTemperatureMax = other.mTemperatureMax;
+		mTemperatureMin = other.mTemperatureMin;
+		mHumidityValue = other.mHumidityValue;
+		mPressureValue = other.mPressureValue;
+		mWindSpeedValue = other.mWindSpeedValue;
+		mWindDirectionValue = other.mWindDirectionValue;
+		mCloudValue = other.mCloudValue;
+		mWeatherNumber = other.mWeatherNumber;
+		mCityName = other.mCityName;
+		mCountry = other.mCountry;
+		mSunRise = other.mSunRise;
+		mSunSet = other.mSunSet;
+		mTemperatureUnit = other.mTemperatureUnit;
+		mHumidityUnit = other.mHumidityUnit;
+		mPressureUnit = other.mPressureUnit;
+		mWindSpeedName = other.mWindSpeedName;
+		mWindDirectionCode = other.mWindDirectionCode;
+		mWindDirectionName = other.mWindDirectionName;
+		mCloudName = other.mCloudName;
+		mPrecipitationMode = other.mPrecipitationMode;
+		mWeatherValue = other.mWeatherValue;
+		mWeatherIcon = other.mWeatherIcon;
+		mLastUpdate = other.mLastUpdate;
+	}
+
+	/**
+	 * Check if the numeric values {@code flags} are set.
+	 *
+	 * @param flags a combination of HAS_* flags
+	 * @return true if all the values are set, false otherwise.
+	 */
+	public boolean has(int flags) {
+		return (mPresence & flags) == flags;
+	}
+
+	/**
+	 * @return the presence bitmask of the numeric values, a combination of HAS_* flags
+	 */
+	public int getPresence() {
+		return mPresence;
+	}
+
+	/**
+	 * Convert this instance in a new {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult},
+	 * the missing numeric values are null.
+	 *
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 */
+	public OpenWeatherMapParserResult toParserResult() {
+		final OpenWeatherMapParserResult result = new OpenWeatherMapParserResult();
+		if (has(HAS_CITY_ID)) result.setCityId(mCityId);
+		if (has(HAS_LONGITUDE)) result.setLongitude(mLongitude);
+		if (has(HAS_LATITUDE)) result.setLatitude(mLatitude);
+		if (has(HAS_TEMPERATURE_VALUE)) result.setTemperatureValue(mTemperatureValue);
+		if (has(HAS_TEMPERATURE_MAX)) result.setTemperatureMax(mTemperatureMax);
+		if (has(HAS_TEMPERATURE_MIN)) result.setTemperatureMin(mTemperatureMin);
+		if (has(HAS_HUMIDITY_VALUE)) result.setHumidityValue(mHumidityValue);
+		if (has(HAS_PRESSURE_VALUE)) result.setPressureValue(mPressureValue);
+		if (has(HAS_WIND_SPEED_VALUE)) result.setWindSpeedValue(mWindSpeedValue);
+		if (has(HAS_WIND_DIRECTION_VALUE)) result.setWindDirectionValue(mWindDirectionValue);
+		if (has(HAS_CLOUD_VALUE)) result.setCloudValue(mCloudValue);
+		if (has(HAS_WEATHER_NUMBER)) result.setWeatherNumber(mWeatherNumber);
+		result.setCityName(mCityName);
+		result.setCountry(mCountry);
+		result.setSunRise(mSunRise);
+		result.setSunSet(mSunSet);
+		result.setTemperatureUnit(mTemperatureUnit);
+		result.setHumidityUnit(mHumidityUnit);
+		result.setPressureUnit(mPressureUnit);
+		result.setWindSpeedName(mWindSpeedName);
+		result.setWindDirectionCode(mWindDirectionCode);
+		result.setWindDirectionName(mWindDirectionName);
+		result.setCloudName(mCloudName);
+		result.setPrecipitationMode(mPrecipitationMode);
+		result.setWeatherValue(mWeatherValue);
+		result.setWeatherIcon(mWeatherIcon);
+		result.setLastUpdate(mLastUpdate);
+		return result;
+	}
+
+	public int getCityId() {
+		return mCityId;
+	}
+
+	public void setCityId(int cityId) {
+		mCityId = cityId;
+		mPresence |= HAS_CITY_ID;
+	}
+
+	public float getLongitude() {
+		return mLongitude;
+	}
+
+	public void setLongitude(float longitude) {
+		mLongitude = longitude;
+		mPresence |= HAS_LONGITUDE;
+	}
+
+	public float getLatitude() {
+		return mLatitude;
+	}
+
+	public void setLatitude(float latitude) {
+		mLatitude = latitude;
+		mPresence |= HAS_LATITUDE;
+	}
+
+	public float getTemperatureValue() {
+		return mTemperatureValue;
+	}
+
+	public void setTemperatureValue(float temperatureValue) {
+		mTemperatureValue = temperatureValue;
+		mPresence |= HAS_TEMPERATURE_VALUE;
+	}
+
+	public float getTemperatureMax() {
+		return mTemperatureMax;
+	}
+
+	public void setTemperatureMax(float temperatureMax) {
+		mTemperatureMax = temperatureMax;
+		mPresence |= HAS_TEMPERATURE_MAX;
+	}
+
+	public float getTemperatureMin() {
+		return mTemperatureMin;
+	}
+
+	public void setTemperatureMin(float temperatureMin) {
+		mTemperatureMin = temperatureMin;
+		mPresence |= HAS_TEMPERATURE_MIN;
+	}
+
+	public float getHumidityValue() {
+		return mHumidityValue;
+	}
+
+	public void setHumidityValue(float humidityValue) {
+		mHumidityValue = humidityValue;
+		mPresence |= HAS_HUMIDITY_VALUE;
+	}
+
+	public float getPressureValue() {
+		return mPressureValue;
+	}
+
+	public void setPressureValue(float pressureValue) {
+		mPressureValue = pressureValue;
+		mPresence |= HAS_PRESSURE_VALUE;
+	}
+
+	public float getWindSpeedValue() {
+		return mWindSpeedValue;
+	}
+
+	public void setWindSpeedValue(float windSpeedValue) {
+		mWindSpeedValue = windSpeedValue;
+		mPresence |= HAS_WIND_SPEED_VALUE;
+	}
+
+	public float getWindDirectionValue() {
+		return mWindDirectionValue;
+	}
+
+	public void setWindDirectionValue(float windDirectionValue) {
+		mWindDirectionValue = windDirectionValue;
+		mPresence |= HAS_WIND_DIRECTION_VALUE;
+	}
+
+	public float getCloudValue() {
+		return mCloudValue;
+	}
+
+	public void setCloudValue(float cloudValue) {
+		mCloudValue = cloudValue;
+		mPresence |= HAS_CLOUD_VALUE;
+	}
+
+	public int getWeatherNumber() {
+		return mWeatherNumber;
+	}
+
+	public void setWeatherNumber(int weatherNumber) {
+		mWeatherNumber = weatherNumber;
+		mPresence |= HAS_WEATHER_NUMBER;
+	}
+
+	public String getCityName() {
+		return mCityName;
+	}
+
+	public void setCityName(String cityName) {
+		mCityName = cityName;
+	}
+
+	public String getCountry() {
+		return mCountry;
+	}
+
+	public void setCountry(String country) {
+		mCountry = country;
+	}
+
+	public String getSunRise() {
+		return mSunRise;
+	}
+
+	public void setSunRise(String sunRise) {
+		mSunRise = sunRise;
+	}
+
+	public String getSunSet() {
+		return mSunSet;
+	}
+
+	public void setSunSet(String sunSet) {
+		mSunSet = sunSet;
+	}
+
+	public String getTemperatureUnit() {
+		return mTemperatureUnit;
+	}
+
+	public void setTemperatureUnit(String temperatureUnit) {
+		mTemperatureUnit = temperatureUnit;
+	}
+
+	public String getHumidityUnit() {
+		return mHumidityUnit;
+	}
+
+	public void setHumidityUnit(String humidityUnit) {
+		mHumidityUnit = humidityUnit;
+	}
+
+	public String getPressureUnit() {
+		return mPressureUnit;
+	}
+
+	public void setPressureUnit(String pressureUnit) {
+		mPressureUnit = pressureUnit;
+	}
+
+	public String getWindSpeedName() {
+		return mWindSpeedName;
+	}
+
+	public void setWindSpeedName(String windSpeedName) {
+		mWindSpeedName = windSpeedName;
+	}
+
+	public String getWindDirectionCode() {
+		return mWindDirectionCode;
+	}
+
+	public void setWindDirectionCode(String windDirectionCode) {
+		mWindDirectionCode = windDirectionCode;
+	}
+
+	public String getWindDirectionName() {
+		return mWindDirectionName;
+	}
+
+	public void setWindDirectionName(String windDirectionName) {
+		mWindDirectionName = windDirectionName;
+	}
+
+	public String getCloudName() {
+		return mCloudName;
+	}
+
+	public void setCloudName(String cloudName) {
+		mCloudName = cloudName;
+	}
+
+	public String getPrecipitationMode() {
+		return mPrecipitationMode;
+	}
+
+	public void setPrecipitationMode(String precipitationMode) {
+		mPrecipitationMode = precipitationMode;
+	}
+
+	public String getWeatherValue() {
+		return mWeatherValue;
+	}
+
+	public void setWeatherValue(String weatherValue) {
+		mWeatherValue = weatherValue;
+	}
+
+	public String getWeatherIcon() {
+		return mWeatherIcon;
+	}
+
+	public void setWeatherIcon(String weatherIcon) {
+		mWeatherIcon = weatherIcon;
+	}
+
+	public String getLastUpdate() {
+		return mLastUpdate;
+	}
+
+	public void setLastUpdate(String lastUpdate) {
+		mLastUpdate = lastUpdate;
+	}
+}
@@ -0,0 +1,154 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+/**
+ * A decoder of the decimal numbers found in the OpenWeatherMap fluxes.
+ * <p/>
+ * The numbers are decoded straight from a {@link java.lang.CharSequence} into primitives,
+ * without the intermediate objects created by {@link Float#parseFloat(String)}.
+ * Short decimals like "21.47" or "1005.09" are exactly representable as a float mantissa and a power of ten,
+ * a single float division or multiplication then gives the correctly rounded value.
+ * Any other input falls back to {@link Float#parseFloat(String)}, so that the result is always
+ * the same as the one of the standard parser.
+ */
+public final class DecimalDecoder {
+
+	//Max mantissa exactly representable by a float: 2^24
+	private static final long MAX_EXACT_MANTISSA = 1L << 24;
+	//Powers of ten exactly representable by a float
+	private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+	//Max number of digits kept in the mantissa before giving up the fast path
+	private static final int MAX_MANTISSA_DIGITS = 18;
+
+	private DecimalDecoder() {
+	}
+
+	/**
+	 * Decode a float.
+	 *
+	 * @param chars the {@link java.lang.CharSequence} to decode
+	 * @return the float value, the same as {@link Float#parseFloat(String)}
+	 * @throws NumberFormatException if {@code chars} is not a valid float
+	 */
+	public static float parseFloat(CharSequence chars) {
+		final int length = chars.length();
+		int i = 0;
+		boolean negative = false;
+		if (length > 0 && (chars.charAt(0) == '-' || chars.charAt(0) == '+')) {
+			negative = chars.charAt(0) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int mantissaDigits = 0;
+		int exponent = 0;
+		boolean hasDigit = false;
+		boolean hasPoint = false;
+		for (; i < length; i++) {
+			final char c = chars.charAt(i);
+			if (c >= '0' && c <= '9') {
+				hasDigit = true;
+				if (mantissa != 0 || c != '0') {
+					if (++mantissaDigits > MAX_MANTISSA_DIGITS) {
+						return Float.parseFloat(chars.toString());
+					}
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				if (hasPoint) exponent--;
+			} else if (c == '.' && !hasPoint) {
+				hasPoint = true;
+			} else {
+				break;
+			}
+		}
+
+		if (i < length) {
+			final char c = chars.charAt(i);
+			if (!hasDigit || (c != 'e' && c != 'E')) {
+				//an unusual or invalid number, let the standard parser handle it
+				return Float.parseFloat(chars.toString());
+			}
+			i++;
+			boolean negativeExponent = false;
+			if (i < length && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+				negativeExponent = chars.charAt(i) == '-';
+				i++;
+			}
+			if (i == length) {
+				return Float.parseFloat(chars.toString());
+			}
+			int explicitExponent = 0;
+			for (; i < length; i++) {
+				final char e = chars.charAt(i);
+				if (e < '0' || e > '9' || explicitExponent > 1000) {
+					return Float.parseFloat(chars.toString());
+				}
+				explicitExponent = explicitExponent * 10 + (e - '0');
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		if (!hasDigit) {
+			return Float.parseFloat(chars.toString());
+		}
+
+		float value;
+		if (mantissa == 0) {
+			value = 0f;
+		} else if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -10 && exponent <= 10) {
+			value = (float) mantissa;
+			if (exponent < 0) {
+				value /= POWERS_OF_TEN[-exponent];
+			} else {
+				value *= POWERS_OF_TEN[exponent];
+			}
+		} else {
+			return Float.parseFloat(chars.toString());
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Decode an int.
+	 *
+	 * @param chars the {@link java.lang.CharSequence} to decode
+	 * @return the int value, the same as {@link Integer#parseInt(String)}
+	 * @throws NumberFormatException if {@code chars} is not a valid int
+	 */
+	public static int parseInt(CharSequence chars) {
+		final long value = parseLong(chars);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Out of range: " + chars);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Decode a long.
+	 *
+	 * @param chars the {@link java.lang.CharSequence} to decode
+	 * @return the long value, the same as {@link Long#parseLong(String)}
+	 * @throws NumberFormatException if {@code chars} is not a valid long
+	 */
+	public static long parseLong(CharSequence chars) {
+		final int length = chars.length();
+		int i = 0;
+		boolean negative = false;
+		if (length > 0 && (chars.charAt(0) == '-' || chars.charAt(0) == '+')) {
+			negative = chars.charAt(0) == '-';
+			i++;
+		}
+		if (i == length || length - i > MAX_MANTISSA_DIGITS) {
+			//empty or possibly out of range, let the standard parser decide
+			return Long.parseLong(chars.toString());
+		}
+		long value = 0;
+		for (; i < length; i++) {
+			final char c = chars.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new NumberFormatException("Invalid long: " + chars);
+			}
+			value = value * 10 + (c - '0');
+		}
+		return negative ? -value : value;
+	}
+}
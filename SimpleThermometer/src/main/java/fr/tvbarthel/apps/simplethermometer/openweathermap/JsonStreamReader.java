@@ -0,0 +1,333 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A minimal pull reader of a JSON flux.
+ * <p/>
+ * The values are read one after the other from a small buffer, nothing is built in memory
+ * but the names and the strings that are explicitly read.
+ * The numbers are decoded by the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.DecimalDecoder}
+ * from a reused buffer, without creating any String.
+ * The separators between the members of an object or an array are consumed by {@link #hasNext()},
+ * which must be called before reading each member.
+ */
+class JsonStreamReader {
+
+	//Types of the next value, see peek()
+	public static final int TYPE_OBJECT = 0;
+	public static final int TYPE_ARRAY = 1;
+	public static final int TYPE_STRING = 2;
+	public static final int TYPE_NUMBER = 3;
+	public static final int TYPE_LITERAL = 4;
+
+	private static final int BUFFER_SIZE = 1024;
+
+	private final Reader mReader;
+	private final char[] mBuffer;
+	private int mPosition;
+	private int mLimit;
+	//Reused to build the names and the strings
+	private final StringBuilder mStringBuilder;
+
+	JsonStreamReader(Reader reader) {
+		mReader = reader;
+		mBuffer = new char[BUFFER_SIZE];
+		mPosition = 0;
+		mLimit = 0;
+		mStringBuilder = new StringBuilder();
+	}
+
+	public void beginObject() throws IOException, WeatherParserException {
+		consume('{');
+	}
+
+	public void endObject() throws IOException, WeatherParserException {
+		consume('}');
+	}
+
+	public void beginArray() throws IOException, WeatherParserException {
+		consume('[');
+	}
+
+	public void endArray() throws IOException, WeatherParserException {
+		consume(']');
+	}
+
+	/**
+	 * Check if the current object or array has another member, and skip the separator before it.
+	 *
+	 * @return true if there is another member, false if the end of the object or array is reached.
+	 * @throws IOException
+	 * @throws WeatherParserException
+	 */
+	public boolean hasNext() throws IOException, WeatherParserException {
+		char c = peekChar();
+		if (c == ',') {
+			mPosition++;
+			c = peekChar();
+		}
+		return c != '}' && c != ']';
+	}
+
+	/**
+	 * @return the type of the next value, one of the TYPE_* constants.
+	 * @throws IOException
+	 * @throws WeatherParserException
+	 */
+	public int peek() throws IOException, WeatherParserException {
+		final char c = peekChar();
+		switch (c) {
+			case '{':
+				return TYPE_OBJECT;
+			case '[':
+				return TYPE_ARRAY;
+			case '"':
+				return TYPE_STRING;
+			case 't':
+			case 'f':
+			case 'n':
+				return TYPE_LITERAL;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					return TYPE_NUMBER;
+				}
+				throw syntaxError("unexpected character '" + c + "'");
+		}
+	}
+
+	/**
+	 * Read the name of the next member of an object and the separator after it.
+	 *
+	 * @return the name
+	 * @throws IOException
+	 * @throws WeatherParserException
+	 */
+	public String nextName() throws IOException, WeatherParserException {
+		final String name = nextString();
+		consume(':');
+		return name;
+	}
+
+	public String nextString() throws IOException, WeatherParserException {
+		consume('"');
+		mStringBuilder.setLength(0);
+		while (true) {
+			final char c = readChar();
+			if (c == '"') {
+				return mStringBuilder.toString();
+			} else if (c == '\\') {
+				mStringBuilder.append(readEscapedChar());
+			} else {
+				mStringBuilder.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Read a number or a string containing a number.
+	 *
+	 * @return the float value
+	 * @throws IOException
+	 * @throws WeatherParserException
+	 */
+	public float nextFloat() throws IOException, WeatherParserException {
+		final CharSequence number = readNumber();
+		try {
+			return DecimalDecoder.parseFloat(number);
+		} catch (NumberFormatException e) {
+			throw syntaxError("invalid number " + number);
+		}
+	}
+
+	/**
+	 * Read a number or a string containing a number.
+	 *
+	 * @return the int value, the decimals are truncated
+	 * @throws IOException
+	 * @throws WeatherParserException if the number is not a valid int
+	 */
+	public int nextInt() throws IOException, WeatherParserException {
+		final long value = nextLong();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw syntaxError("int out of range " + value);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Read a number or a string containing a number.
+	 *
+	 * @return the long value, the decimals are truncated
+	 * @throws IOException
+	 * @throws WeatherParserException
+	 */
+	public long nextLong() throws IOException, WeatherParserException {
+		final CharSequence number = readNumber();
+		try {
+			return DecimalDecoder.parseLong(number);
+		} catch (NumberFormatException e) {
+			try {
+				return (long) Double.parseDouble(number.toString());
+			} catch (NumberFormatException e1) {
+				throw syntaxError("invalid number " + number);
+			}
+		}
+	}
+
+	/**
+	 * Skip the next value, whatever its type.
+	 *
+	 * @throws IOException
+	 * @throws WeatherParserException
+	 */
+	public void skipValue() throws IOException, WeatherParserException {
+		switch (peek()) {
+			case TYPE_OBJECT:
+				beginObject();
+				while (hasNext()) {
+					nextName();
+					skipValue();
+				}
+				endObject();
+				break;
+			case TYPE_ARRAY:
+				beginArray();
+				while (hasNext()) {
+					skipValue();
+				}
+				endArray();
+				break;
+			case TYPE_STRING:
+				skipString();
+				break;
+			default:
+				//a number or a literal: true, false, null
+				while (isLiteralChar(peekRawChar())) {
+					mPosition++;
+				}
+				break;
+		}
+	}
+
+	private void skipString() throws IOException, WeatherParserException {
+		consume('"');
+		while (true) {
+			final char c = readChar();
+			if (c == '"') {
+				return;
+			} else if (c == '\\') {
+				readEscapedChar();
+			}
+		}
+	}
+
+	/**
+	 * Read a number, or the content of a string containing a number, in the reused buffer.
+	 *
+	 * @return the reused buffer, only valid until the next read
+	 */
+	private CharSequence readNumber() throws IOException, WeatherParserException {
+		final boolean isQuoted = peek() == TYPE_STRING;
+		if (isQuoted) {
+			mPosition++;
+		}
+		mStringBuilder.setLength(0);
+		while (isLiteralChar(peekRawChar())) {
+			mStringBuilder.append(mBuffer[mPosition++]);
+		}
+		if (isQuoted) {
+			consume('"');
+		}
+		return mStringBuilder;
+	}
+
+	private char readEscapedChar() throws IOException, WeatherParserException {
+		final char c = readChar();
+		switch (c) {
+			case 'b':
+				return '\b';
+			case 'f':
+				return '\f';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			case 'u':
+				int value = 0;
+				for (int i = 0; i < 4; i++) {
+					final int digit = Character.digit(readChar(), 16);
+					if (digit < 0) {
+						throw syntaxError("invalid unicode escape");
+					}
+					value = (value << 4) | digit;
+				}
+				return (char) value;
+			default:
+				//'"', '\\' and '/'
+				return c;
+		}
+	}
+
+	private boolean isLiteralChar(int c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E';
+	}
+
+	/**
+	 * Skip the whitespaces and consume {@code expected}
+	 */
+	private void consume(char expected) throws IOException, WeatherParserException {
+		final char c = peekChar();
+		if (c != expected) {
+			throw syntaxError("expected '" + expected + "' but was '" + c + "'");
+		}
+		mPosition++;
+	}
+
+	/**
+	 * Skip the whitespaces and return the next char without consuming it
+	 */
+	private char peekChar() throws IOException, WeatherParserException {
+		while (true) {
+			final int c = peekRawChar();
+			if (c == -1) {
+				throw syntaxError("unexpected end of flux");
+			}
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+				return (char) c;
+			}
+			mPosition++;
+		}
+	}
+
+	/**
+	 * Return the next char without consuming it, -1 at the end of the flux
+	 */
+	private int peekRawChar() throws IOException {
+		if (mPosition == mLimit && !fill()) {
+			return -1;
+		}
+		return mBuffer[mPosition];
+	}
+
+	private char readChar() throws IOException, WeatherParserException {
+		if (mPosition == mLimit && !fill()) {
+			throw syntaxError("unexpected end of flux");
+		}
+		return mBuffer[mPosition++];
+	}
+
+	private boolean fill() throws IOException {
+		final int count = mReader.read(mBuffer, 0, mBuffer.length);
+		mPosition = 0;
+		mLimit = Math.max(count, 0);
+		return count > 0;
+	}
+
+	private WeatherParserException syntaxError(String message) {
+		return new WeatherParserException("Malformed JSON: " + message);
+	}
+}
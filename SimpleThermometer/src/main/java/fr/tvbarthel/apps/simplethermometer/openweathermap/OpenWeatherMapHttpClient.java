@@ -0,0 +1,257 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+import android.os.Build;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A process wide http transport used to request the OpenWeatherMap Api.
+ * <p/>
+ * All the requests share the keep-alive connection pool of {@link java.net.HttpURLConnection},
+ * ask for a gzip compressed response and are bounded by a connect and a read timeout.
+ * The returned streams are decompressed on the fly and must be closed once read
+ * so that the underlying connection can be given back to the pool.
+ * <p/>
+ * The ETag and Last-Modified validators of each response are remembered per url
+ * and sent back on the next request, so that an unchanged resource costs a 304 only.
+ * <p/>
+ * The requests can be redirected to another endpoint, like a local stand-in of the Api,
+ * with {@link #setEndpoint(String)}.
+ */
+public class OpenWeatherMapHttpClient {
+
+	//connect timeout (in Millis)
+	private static final int CONNECT_TIMEOUT_IN_MILLIS = 10000;
+	//read timeout (in Millis)
+	private static final int READ_TIMEOUT_IN_MILLIS = 15000;
+	//max number of idle connections kept alive per host
+	private static final String MAX_CONNECTIONS = "5";
+	//size of the buffer used to read the responses
+	private static final int BUFFER_SIZE_IN_BYTES = 8192;
+
+	//max number of bytes read to reach the end of a partially parsed body
+	//a weather is about 1KB, a longer tail is cheaper to drop with its connection
+	private static final int MAX_DRAINED_BYTES = 16384;
+
+	//max number of urls for which the validators are remembered
+	private static final int MAX_VALIDATORS = 16;
+
+	private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String HEADER_ETAG = "ETag";
+	private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+	private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+	private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+	private static final String ENCODING_GZIP = "gzip";
+
+	//scheme and authority of the OpenWeatherMap Api, as used in the url resources
+	public static final String DEFAULT_ENDPOINT = "http://api.openweathermap.org";
+
+	private static OpenWeatherMapHttpClient sInstance;
+
+	//The scheme and authority to which the requests are sent
+	private String mEndpoint = DEFAULT_ENDPOINT;
+
+	//The validators of the last response of each url, the least recently used url is dropped first
+	private final Map<String, Validators> mValidators = new LinkedHashMap<String, Validators>(MAX_VALIDATORS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Validators> eldest) {
+			return size() > MAX_VALIDATORS;
+		}
+	};
+
+	/**
+	 * Return the shared instance of the http client.
+	 *
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient}
+	 */
+	public static synchronized OpenWeatherMapHttpClient getInstance() {
+		if (sInstance == null) {
+			sInstance = new OpenWeatherMapHttpClient();
+		}
+		return sInstance;
+	}
+
+	private OpenWeatherMapHttpClient() {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.FROYO) {
+			//Prior to Froyo, reusing a connection could poison the connection pool
+			//See http://android-developers.blogspot.com/2011/09/androids-http-clients.html
+			System.setProperty("http.keepAlive", "false");
+		} else {
+			System.setProperty("http.keepAlive", "true");
+			System.setProperty("http.maxConnections", MAX_CONNECTIONS);
+		}
+	}
+
+	/**
+	 * Open a gzip aware {@link java.io.InputStream} on {@code url}.
+	 * The caller is responsible for closing the stream.
+	 * <p/>
+	 * If the validators of a previous response on {@code url} are known, the request is conditional
+	 * and null is returned when the server answers that the resource has not been modified.
+	 *
+	 * @param url the url to request
+	 * @return a decompressed {@link java.io.InputStream} on the response body,
+	 * or null if the resource has not been modified since the last request.
+	 * @throws IOException
+	 */
+	public InputStream get(String url) throws IOException {
+		final URLConnection urlConnection = new URL(resolve(url)).openConnection();
+		urlConnection.setConnectTimeout(CONNECT_TIMEOUT_IN_MILLIS);
+		urlConnection.setReadTimeout(READ_TIMEOUT_IN_MILLIS);
+		urlConnection.setUseCaches(true);
+		urlConnection.setRequestProperty(HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+
+		if (!(urlConnection instanceof HttpURLConnection)) {
+			return openResponseStream(urlConnection);
+		}
+
+		final HttpURLConnection httpURLConnection = (HttpURLConnection) urlConnection;
+		httpURLConnection.setInstanceFollowRedirects(true);
+
+		//Send the validators of the last response
+		final Validators validators = getValidators(url);
+		if (validators != null) {
+			if (validators.mETag != null) {
+				httpURLConnection.setRequestProperty(HEADER_IF_NONE_MATCH, validators.mETag);
+			}
+			if (validators.mLastModified != null) {
+				httpURLConnection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, validators.mLastModified);
+			}
+		}
+
+		if (httpURLConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			//The resource is still fresh, release the connection
+			closeQuietly(httpURLConnection);
+			return null;
+		}
+
+		//Remember the validators of this response for the next request
+		final String eTag = httpURLConnection.getHeaderField(HEADER_ETAG);
+		final String lastModified = httpURLConnection.getHeaderField(HEADER_LAST_MODIFIED);
+		if (eTag != null || lastModified != null) {
+			putValidators(url, new Validators(eTag, lastModified));
+		} else {
+			forgetValidators(url);
+		}
+
+		return openResponseStream(httpURLConnection);
+	}
+
+	/**
+	 * Read what is left of a response body, then close it.
+	 * <p/>
+	 * {@link java.net.HttpURLConnection} gives the connection back to the keep-alive pool only once
+	 * the body has been read to its end. A parser that stops as soon as the requested fields are read
+	 * would close a body which is not exhausted, and the connection would be dropped: the next request
+	 * would pay a new TCP handshake for the few hundred bytes saved.
+	 * At most {@link #MAX_DRAINED_BYTES} are drained, a longer tail is dropped with the connection.
+	 *
+	 * @param in a stream returned by {@link #get(String)}, or any other {@link java.io.InputStream}
+	 * @throws IOException if the stream can not be closed
+	 */
+	public static void release(InputStream in) throws IOException {
+		try {
+			final byte[] buffer = new byte[BUFFER_SIZE_IN_BYTES];
+			int drained = 0;
+			int read;
+			while (drained < MAX_DRAINED_BYTES && (read = in.read(buffer)) != -1) {
+				drained += read;
+			}
+		} catch (IOException e) {
+			//the connection can not be reused, closing the stream drops it
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Send the following requests to {@code endpoint} instead of the OpenWeatherMap Api,
+	 * for instance "http://10.0.2.2:8080" to reach a stand-in server running on the host of an emulator.
+	 * The validators remembered for the previous endpoint are forgotten.
+	 *
+	 * @param endpoint the scheme and authority of the server, null to go back to {@link #DEFAULT_ENDPOINT}
+	 */
+	public synchronized void setEndpoint(String endpoint) {
+		mEndpoint = endpoint == null ? DEFAULT_ENDPOINT : endpoint;
+		mValidators.clear();
+	}
+
+	/**
+	 * Forget the validators stored for {@code url}.
+	 * Should be called when a response could not be used,
+	 * so that the next request downloads the full resource.
+	 *
+	 * @param url the requested url
+	 */
+	public synchronized void forgetValidators(String url) {
+		mValidators.remove(url);
+	}
+
+	/**
+	 * Return {@code url} with the OpenWeatherMap Api endpoint replaced by the current endpoint
+	 */
+	private synchronized String resolve(String url) {
+		if (!mEndpoint.equals(DEFAULT_ENDPOINT) && url.startsWith(DEFAULT_ENDPOINT)) {
+			return mEndpoint + url.substring(DEFAULT_ENDPOINT.length());
+		}
+		return url;
+	}
+
+	private synchronized Validators getValidators(String url) {
+		return mValidators.get(url);
+	}
+
+	private synchronized void putValidators(String url, Validators validators) {
+		mValidators.put(url, validators);
+	}
+
+	/**
+	 * Drain and close the body of a bodyless response.
+	 *
+	 * @param httpURLConnection the {@link java.net.HttpURLConnection} to release
+	 */
+	private void closeQuietly(HttpURLConnection httpURLConnection) {
+		try {
+			httpURLConnection.getInputStream().close();
+		} catch (IOException e) {
+			//nothing to release
+		}
+	}
+
+	/**
+	 * Open the response body of {@code urlConnection}
+	 * and decompress it if the server used gzip.
+	 *
+	 * @param urlConnection a {@link java.net.URLConnection} ready to be read
+	 * @return a decompressed {@link java.io.InputStream} on the response body
+	 * @throws IOException
+	 */
+	private InputStream openResponseStream(URLConnection urlConnection) throws IOException {
+		final InputStream inputStream = new BufferedInputStream(urlConnection.getInputStream(), BUFFER_SIZE_IN_BYTES);
+		if (ENCODING_GZIP.equalsIgnoreCase(urlConnection.getContentEncoding())) {
+			return new GZIPInputStream(inputStream, BUFFER_SIZE_IN_BYTES);
+		}
+		return inputStream;
+	}
+
+	/**
+	 * The cache validators of a response
+	 */
+	private static final class Validators {
+		private final String mETag;
+		private final String mLastModified;
+
+		private Validators(String eTag, String lastModified) {
+			mETag = eTag;
+			mLastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,391 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * A streaming parser used to retrieve data of
+ * a json flux from the OpenWeatherMap Api.
+ * <p/>
+ * It fills the same {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+ * as the xml {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser}.
+ */
+public class OpenWeatherMapJsonParser implements WeatherParser {
+
+/*
+ * A typical json response from http://api.openweathermap.org/data/2.5/weather?lat=35&lon=139&mode=json&units=metric
+ *
+ * {"coord":{"lon":139,"lat":35},
+ *  "sys":{"country":"JP","sunrise":1378931093,"sunset":1378976126},
+ *  "weather":[{"id":800,"main":"Clear","description":"sky is clear","icon":"02n"}],
+ *  "base":"gdps stations",
+ *  "main":{"temp":21.47,"humidity":100,"pressure":1005.09,"temp_min":21.47,"temp_max":21.47},
+ *  "wind":{"speed":1.96,"deg":42.0003},
+ *  "clouds":{"all":8},
+ *  "dt":1379007139,
+ *  "id":1851632,
+ *  "name":"Shuzenji",
+ *  "cod":200}
+ */
+
+	//Names used in the openWeatherMap JSON
+	public static final String NAME_CITY_ID = "id";
+	public static final String NAME_CITY_NAME = "name";
+	public static final String NAME_COORDINATE = "coord";
+	public static final String NAME_LONGITUDE = "lon";
+	public static final String NAME_LATITUDE = "lat";
+	public static final String NAME_SYS = "sys";
+	public static final String NAME_COUNTRY = "country";
+	public static final String NAME_SUN_RISE = "sunrise";
+	public static final String NAME_SUN_SET = "sunset";
+	public static final String NAME_MAIN = "main";
+	public static final String NAME_TEMPERATURE_VALUE = "temp";
+	public static final String NAME_TEMPERATURE_MIN = "temp_min";
+	public static final String NAME_TEMPERATURE_MAX = "temp_max";
+	public static final String NAME_HUMIDITY = "humidity";
+	public static final String NAME_PRESSURE = "pressure";
+	public static final String NAME_WIND = "wind";
+	public static final String NAME_WIND_SPEED = "speed";
+	public static final String NAME_WIND_DIRECTION = "deg";
+	public static final String NAME_CLOUD = "clouds";
+	public static final String NAME_CLOUD_VALUE = "all";
+	public static final String NAME_RAIN = "rain";
+	public static final String NAME_SNOW = "snow";
+	public static final String NAME_WEATHER = "weather";
+	public static final String NAME_WEATHER_NUMBER = "id";
+	public static final String NAME_WEATHER_VALUE = "description";
+	public static final String NAME_WEATHER_ICON = "icon";
+	public static final String NAME_LAST_UPDATE = "dt";
+	public static final String NAME_CODE = "cod";
+
+	//Values that are implicit in the json flux when requested with units=metric
+	private static final String UNIT_TEMPERATURE = "celsius";
+	private static final String UNIT_HUMIDITY = "%";
+	private static final String UNIT_PRESSURE = "hPa";
+	private static final String PRECIPITATION_MODE_NO = "no";
+	private static final int CODE_OK = 200;
+	//Format of the dates in the xml flux
+	private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+	//Members of the root object, the fields are spread on several members
+	private static final int MEMBER_CITY_ID = 1;
+	private static final int MEMBER_CITY_NAME = 1 << 1;
+	private static final int MEMBER_COORDINATE = 1 << 2;
+	private static final int MEMBER_SYS = 1 << 3;
+	private static final int MEMBER_MAIN = 1 << 4;
+	private static final int MEMBER_WIND = 1 << 5;
+	private static final int MEMBER_CLOUD = 1 << 6;
+	private static final int MEMBER_PRECIPITATION = 1 << 7;
+	private static final int MEMBER_WEATHER = 1 << 8;
+	private static final int MEMBER_LAST_UPDATE = 1 << 9;
+
+	//Dispatch table of the names of the members of the root object
+	private static final HashMap<String, Integer> sMembers = new HashMap<String, Integer>();
+
+	static {
+		sMembers.put(NAME_CITY_ID, MEMBER_CITY_ID);
+		sMembers.put(NAME_CITY_NAME, MEMBER_CITY_NAME);
+		sMembers.put(NAME_COORDINATE, MEMBER_COORDINATE);
+		sMembers.put(NAME_SYS, MEMBER_SYS);
+		sMembers.put(NAME_MAIN, MEMBER_MAIN);
+		sMembers.put(NAME_WIND, MEMBER_WIND);
+		sMembers.put(NAME_CLOUD, MEMBER_CLOUD);
+		sMembers.put(NAME_RAIN, MEMBER_PRECIPITATION);
+		sMembers.put(NAME_SNOW, MEMBER_PRECIPITATION);
+		sMembers.put(NAME_WEATHER, MEMBER_WEATHER);
+		sMembers.put(NAME_LAST_UPDATE, MEMBER_LAST_UPDATE);
+	}
+
+	private SimpleDateFormat mDateFormat;
+
+	/*
+		WeatherParser Override
+	 */
+
+	@Override
+	public OpenWeatherMapParserResult parse(InputStream in, int fields) throws WeatherParserException, IOException {
+		final CompactWeatherResult compactResult = CompactWeatherResult.obtain();
+		try {
+			parse(in, fields, compactResult);
+			return compactResult.toParserResult();
+		} finally {
+			compactResult.recycle();
+		}
+	}
+
+	@Override
+	public void parse(InputStream in, int fields, CompactWeatherResult result) throws WeatherParserException, IOException {
+		try {
+			final JsonStreamReader reader = new JsonStreamReader(new InputStreamReader(in, "UTF-8"));
+			readOpenWeatherMap(reader, fields, result);
+		} finally {
+			//keep the connection alive even if the parsing stopped early
+			OpenWeatherMapHttpClient.release(in);
+		}
+	}
+
+	/**
+	 * Read a {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
+	 * from {@code reader}
+	 *
+	 * @param reader {@link fr.tvbarthel.apps.simplethermometer.openweathermap.JsonStreamReader}
+	 * @param fields the requested fields, see {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser} FIELD_* flags
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
+	 * @throws WeatherParserException
+	 * @throws IOException
+	 */
+	void readOpenWeatherMap(JsonStreamReader reader, int fields, CompactWeatherResult result) throws WeatherParserException, IOException {
+		//the members holding a requested field that have not been read yet
+		int missingMembers = getMembers(fields);
+
+		reader.beginObject();
+		while (missingMembers != 0 && reader.hasNext()) {
+			final String name = reader.nextName();
+			final int member = getMember(name);
+			if (member == 0 && NAME_CODE.equals(name)) {
+				readCode(reader);
+			} else if ((missingMembers & member) == 0) {
+				//unknown or not requested
+				reader.skipValue();
+			} else {
+				readMember(reader, name, member, fields, result);
+				missingMembers &= ~member;
+			}
+		}
+
+		if ((missingMembers & MEMBER_PRECIPITATION) != 0) {
+			//neither rain nor snow
+			result.setPrecipitationMode(PRECIPITATION_MODE_NO);
+		}
+	}
+
+	/**
+	 * Read the value of the member {@code name} of the root object in {@code result}
+	 */
+	private void readMember(JsonStreamReader reader, String name, int member, int fields, CompactWeatherResult result)
+			throws WeatherParserException, IOException {
+		switch (member) {
+			case MEMBER_CITY_ID:
+				result.setCityId(reader.nextInt());
+				break;
+			case MEMBER_CITY_NAME:
+				result.setCityName(reader.nextString());
+				break;
+			case MEMBER_COORDINATE:
+				readCoordinate(reader, result);
+				break;
+			case MEMBER_SYS:
+				readSys(reader, result);
+				break;
+			case MEMBER_MAIN:
+				readMain(reader, fields, result);
+				break;
+			case MEMBER_WIND:
+				readWind(reader, result);
+				break;
+			case MEMBER_CLOUD:
+				readCloud(reader, result);
+				break;
+			case MEMBER_PRECIPITATION:
+				//the name of the member is the precipitation mode, its value is the volume
+				result.setPrecipitationMode(name);
+				reader.skipValue();
+				break;
+			case MEMBER_WEATHER:
+				readWeather(reader, result);
+				break;
+			case MEMBER_LAST_UPDATE:
+				result.setLastUpdate(formatDate(reader.nextLong()));
+				break;
+		}
+	}
+
+	/**
+	 * Read the coordinate information from {@code reader} and set them in {@code result}
+	 */
+	private void readCoordinate(JsonStreamReader reader, CompactWeatherResult result) throws WeatherParserException, IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if (name.equals(NAME_LONGITUDE)) {
+				result.setLongitude(reader.nextFloat());
+			} else if (name.equals(NAME_LATITUDE)) {
+				result.setLatitude(reader.nextFloat());
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/**
+	 * Read the country and sun information from {@code reader} and set them in {@code result}
+	 */
+	private void readSys(JsonStreamReader reader, CompactWeatherResult result) throws WeatherParserException, IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if (name.equals(NAME_COUNTRY)) {
+				result.setCountry(reader.nextString());
+			} else if (name.equals(NAME_SUN_RISE)) {
+				result.setSunRise(formatDate(reader.nextLong()));
+			} else if (name.equals(NAME_SUN_SET)) {
+				result.setSunSet(formatDate(reader.nextLong()));
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/**
+	 * Read the requested temperature, humidity and pressure information from {@code reader}
+	 * and set them in {@code result}
+	 */
+	private void readMain(JsonStreamReader reader, int fields, CompactWeatherResult result) throws WeatherParserException, IOException {
+		final boolean readTemperature = (fields & OpenWeatherMapParser.FIELD_TEMPERATURE) != 0;
+		final boolean readHumidity = (fields & OpenWeatherMapParser.FIELD_HUMIDITY) != 0;
+		final boolean readPressure = (fields & OpenWeatherMapParser.FIELD_PRESSURE) != 0;
+		if (readTemperature) result.setTemperatureUnit(UNIT_TEMPERATURE);
+		if (readHumidity) result.setHumidityUnit(UNIT_HUMIDITY);
+		if (readPressure) result.setPressureUnit(UNIT_PRESSURE);
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if (readTemperature && name.equals(NAME_TEMPERATURE_VALUE)) {
+				result.setTemperatureValue(reader.nextFloat());
+			} else if (readTemperature && name.equals(NAME_TEMPERATURE_MIN)) {
+				result.setTemperatureMin(reader.nextFloat());
+			} else if (readTemperature && name.equals(NAME_TEMPERATURE_MAX)) {
+				result.setTemperatureMax(reader.nextFloat());
+			} else if (readHumidity && name.equals(NAME_HUMIDITY)) {
+				result.setHumidityValue(reader.nextFloat());
+			} else if (readPressure && name.equals(NAME_PRESSURE)) {
+				result.setPressureValue(reader.nextFloat());
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/**
+	 * Read the wind information from {@code reader} and set them in {@code result}
+	 */
+	private void readWind(JsonStreamReader reader, CompactWeatherResult result) throws WeatherParserException, IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if (name.equals(NAME_WIND_SPEED)) {
+				result.setWindSpeedValue(reader.nextFloat());
+			} else if (name.equals(NAME_WIND_DIRECTION)) {
+				result.setWindDirectionValue(reader.nextFloat());
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/**
+	 * Read the cloud information from {@code reader} and set them in {@code result}
+	 */
+	private void readCloud(JsonStreamReader reader, CompactWeatherResult result) throws WeatherParserException, IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if (name.equals(NAME_CLOUD_VALUE)) {
+				result.setCloudValue(reader.nextFloat());
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/**
+	 * Read the first weather condition from {@code reader} and set it in {@code result}
+	 */
+	private void readWeather(JsonStreamReader reader, CompactWeatherResult result) throws WeatherParserException, IOException {
+		boolean isFirst = true;
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (!isFirst) {
+				reader.skipValue();
+				continue;
+			}
+			isFirst = false;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				final String name = reader.nextName();
+				if (name.equals(NAME_WEATHER_NUMBER)) {
+					result.setWeatherNumber(reader.nextInt());
+				} else if (name.equals(NAME_WEATHER_VALUE)) {
+					result.setWeatherValue(reader.nextString());
+				} else if (name.equals(NAME_WEATHER_ICON)) {
+					result.setWeatherIcon(reader.nextString());
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * Read the response code, the api returns an error object instead of the weather
+	 */
+	private void readCode(JsonStreamReader reader) throws WeatherParserException, IOException {
+		final long code = reader.nextLong();
+		if (code != CODE_OK) {
+			throw new WeatherParserException("OpenWeatherMap error " + code);
+		}
+	}
+
+	/**
+	 * Return the members of the root object that hold the requested {@code fields}
+	 */
+	private int getMembers(int fields) {
+		int members = 0;
+		if ((fields & OpenWeatherMapParser.FIELD_CITY) != 0) {
+			members |= MEMBER_CITY_ID | MEMBER_CITY_NAME | MEMBER_COORDINATE | MEMBER_SYS;
+		}
+		if ((fields & (OpenWeatherMapParser.FIELD_TEMPERATURE | OpenWeatherMapParser.FIELD_HUMIDITY
+				| OpenWeatherMapParser.FIELD_PRESSURE)) != 0) {
+			members |= MEMBER_MAIN;
+		}
+		if ((fields & OpenWeatherMapParser.FIELD_WIND) != 0) members |= MEMBER_WIND;
+		if ((fields & OpenWeatherMapParser.FIELD_CLOUD) != 0) members |= MEMBER_CLOUD;
+		if ((fields & OpenWeatherMapParser.FIELD_PRECIPITATION) != 0) members |= MEMBER_PRECIPITATION;
+		if ((fields & OpenWeatherMapParser.FIELD_WEATHER) != 0) members |= MEMBER_WEATHER;
+		if ((fields & OpenWeatherMapParser.FIELD_LAST_UPDATE) != 0) members |= MEMBER_LAST_UPDATE;
+		return members;
+	}
+
+	/**
+	 * Return the MEMBER_* flag of the member of the root object named {@code name}, 0 if unknown
+	 */
+	private int getMember(String name) {
+		final Integer member = sMembers.get(name);
+		return member == null ? 0 : member;
+	}
+
+	/**
+	 * Format a unix time (in Seconds) like the dates of the xml flux
+	 */
+	private String formatDate(long unixTimeInSeconds) {
+		if (mDateFormat == null) {
+			mDateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+			mDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		}
+		return mDateFormat.format(new Date(unixTimeInSeconds * 1000));
+	}
+}
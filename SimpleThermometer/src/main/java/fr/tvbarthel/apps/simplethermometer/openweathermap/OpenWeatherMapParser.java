@@ -13,7 +13,7 @@ import java.io.InputStream;
  * A simple parser used to retrieve data of
  * an xml flux from the OpenWeatherMap Api.
  */
-public class OpenWeatherMapParser {
+public class OpenWeatherMapParser implements WeatherParser {
 
 /*
  * A typical xml response from http://api.openweathermap.org/data/2.5/weather?lat=35&lon=139&mode=xml&units=metric
@@ -81,6 +81,50 @@ public class OpenWeatherMapParser {
 	public static final String NAME_LAST_UPDATE = "lastupdate";
 	public static final String ATTIBUTE_LAST_UPDATE_VALUE = "value";
 
+	//Fields that can be requested, one per child of the root
+	public static final int FIELD_CITY = 1;
+	public static final int FIELD_TEMPERATURE = 1 << 1;
+	public static final int FIELD_HUMIDITY = 1 << 2;
+	public static final int FIELD_PRESSURE = 1 << 3;
+	public static final int FIELD_WIND = 1 << 4;
+	public static final int FIELD_CLOUD = 1 << 5;
+	public static final int FIELD_PRECIPITATION = 1 << 6;
+	public static final int FIELD_WEATHER = 1 << 7;
+	public static final int FIELD_LAST_UPDATE = 1 << 8;
+	public static final int FIELD_ALL = (1 << 9) - 1;
+
+	//Tags read below the root, outside of the FIELD_* range
+	private static final int TAG_COORDINATE = 1 << 16;
+	private static final int TAG_COUNTRY = 1 << 17;
+	private static final int TAG_SUN = 1 << 18;
+	private static final int TAG_WIND_SPEED = 1 << 19;
+	private static final int TAG_WIND_DIRECTION = 1 << 20;
+
+	//Size of the dispatch table, a power of two
+	private static final int TAG_TABLE_SIZE = 64;
+
+	//Dispatch table of the tag names: FIELD_* flag for the children of the root, TAG_* otherwise.
+	//A perfect hash of the known names, see getTagIndex(String), so a single equals confirms a name
+	private static final String[] sTagNames = new String[TAG_TABLE_SIZE];
+	private static final int[] sTags = new int[TAG_TABLE_SIZE];
+
+	static {
+		putTag(NAME_CITY, FIELD_CITY);
+		putTag(NAME_TEMPERATURE, FIELD_TEMPERATURE);
+		putTag(NAME_HUMDITY, FIELD_HUMIDITY);
+		putTag(NAME_PRESSURE, FIELD_PRESSURE);
+		putTag(NAME_WIND, FIELD_WIND);
+		putTag(NAME_CLOUD, FIELD_CLOUD);
+		putTag(NAME_PRECIPITATION, FIELD_PRECIPITATION);
+		putTag(NAME_WEATHER, FIELD_WEATHER);
+		putTag(NAME_LAST_UPDATE, FIELD_LAST_UPDATE);
+		putTag(NAME_COORDINATE, TAG_COORDINATE);
+		putTag(NAME_COUNTRY, TAG_COUNTRY);
+		putTag(NAME_SUN, TAG_SUN);
+		putTag(NAME_WIND_SPEED, TAG_WIND_SPEED);
+		putTag(NAME_WIND_DIRECTION, TAG_WIND_DIRECTION);
+	}
+
 	private static final String NAME_SPACE = null;
 
 	/**
@@ -88,73 +132,179 @@ public class OpenWeatherMapParser {
 	 *
 	 * @param in {@link java.io.InputStream}
 	 * @return {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
-	 * @throws XmlPullParserException
+	 * @throws WeatherParserException
 	 * @throws IOException
 	 */
-	public OpenWeatherMapParserResult parse(InputStream in) throws XmlPullParserException, IOException {
+	public OpenWeatherMapParserResult parse(InputStream in) throws WeatherParserException, IOException {
+		return parse(in, FIELD_ALL);
+	}
+
+	/**
+	 * Parse only the requested {@code fields} of {@code in} in a
+	 * {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}.
+	 * <p/>
+	 * The other fields are skipped and the parsing stops as soon as all the requested fields are read,
+	 * the rest of the stream is drained without being parsed, see
+	 * {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient#release(java.io.InputStream)}.
+	 *
+	 * @param in     {@link java.io.InputStream}
+	 * @param fields the requested fields, a combination of the FIELD_* flags
+	 * @return {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @throws WeatherParserException wraps the {@link org.xmlpull.v1.XmlPullParserException}
+	 * @throws IOException
+	 */
+	@Override
+	public OpenWeatherMapParserResult parse(InputStream in, int fields) throws WeatherParserException, IOException {
+		final CompactWeatherResult compactResult = CompactWeatherResult.obtain();
 		try {
-			XmlPullParser parser = Xml.newPullParser();
+			parse(in, fields, compactResult);
+			return compactResult.toParserResult();
+		} finally {
+			compactResult.recycle();
+		}
+	}
+
+	/**
+	 * Parse only the requested {@code fields} of {@code in} in {@code result}.
+	 * <p/>
+	 * The other fields are skipped and the parsing stops as soon as all the requested fields are read,
+	 * the rest of the stream is drained without being parsed, see
+	 * {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient#release(java.io.InputStream)}.
+	 *
+	 * @param in     {@link java.io.InputStream}
+	 * @param fields the requested fields, a combination of the FIELD_* flags
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
+	 * @throws WeatherParserException wraps the {@link org.xmlpull.v1.XmlPullParserException}
+	 * @throws IOException
+	 */
+	@Override
+	public void parse(InputStream in, int fields, CompactWeatherResult result) throws WeatherParserException, IOException {
+		try {
+			XmlPullParser parser = newPullParser();
 			parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
 			parser.setInput(in, null);
 			parser.nextTag();
-			return readOpenWeatherMap(parser);
+			readOpenWeatherMap(parser, fields, result);
+		} catch (XmlPullParserException e) {
+			throw new WeatherParserException(e);
 		} finally {
-			in.close();
+			//keep the connection alive even if the parsing stopped early
+			OpenWeatherMapHttpClient.release(in);
 		}
 	}
 
 	/**
-	 * Read an {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * Create the {@link org.xmlpull.v1.XmlPullParser} used to read the xml flux.
+	 * Can be overridden to parse with another XmlPull implementation, outside of Android.
+	 *
+	 * @return a new {@link org.xmlpull.v1.XmlPullParser}
+	 */
+	protected XmlPullParser newPullParser() {
+		return Xml.newPullParser();
+	}
+
+	/**
+	 * Read a {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * from {@code parser}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @return {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param fields the requested fields, a combination of the FIELD_* flags
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private OpenWeatherMapParserResult readOpenWeatherMap(XmlPullParser parser) throws XmlPullParserException, IOException {
-		OpenWeatherMapParserResult result = new OpenWeatherMapParserResult();
+	private void readOpenWeatherMap(XmlPullParser parser, int fields, CompactWeatherResult result) throws XmlPullParserException, IOException {
+		//the requested fields that have not been read yet
+		int missingFields = fields & FIELD_ALL;
 
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_ROOT);
-		while (parser.next() != XmlPullParser.END_TAG) {
+		while (missingFields != 0 && parser.next() != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG) {
 				continue;
 			}
-			final String name = parser.getName();
-			if (name.equals(NAME_CITY)) {
-				readCity(parser, result);
-			} else if (name.equals(NAME_TEMPERATURE)) {
-				readTemperature(parser, result);
-			} else if (name.equals(NAME_HUMDITY)) {
-				readHumidity(parser, result);
-			} else if (name.equals(NAME_PRESSURE)) {
-				readPressure(parser, result);
-			} else if (name.equals(NAME_WIND)) {
-				readWind(parser, result);
-			} else if (name.equals(NAME_CLOUD)) {
-				readCloud(parser, result);
-			} else if (name.equals(NAME_PRECIPITATION)) {
-				readPrecipitation(parser, result);
-			} else if (name.equals(NAME_WEATHER)) {
-				readWeather(parser, result);
-			} else if (name.equals(NAME_LAST_UPDATE)) {
-				readLastUpdate(parser, result);
-			} else {
+			final int field = getTag(parser.getName());
+			if ((missingFields & field) == 0) {
+				//unknown, not requested or not a child of the root
 				skip(parser);
+				continue;
+			}
+			switch (field) {
+				case FIELD_CITY:
+					readCity(parser, result);
+					break;
+				case FIELD_TEMPERATURE:
+					readTemperature(parser, result);
+					break;
+				case FIELD_HUMIDITY:
+					readHumidity(parser, result);
+					break;
+				case FIELD_PRESSURE:
+					readPressure(parser, result);
+					break;
+				case FIELD_WIND:
+					readWind(parser, result);
+					break;
+				case FIELD_CLOUD:
+					readCloud(parser, result);
+					break;
+				case FIELD_PRECIPITATION:
+					readPrecipitation(parser, result);
+					break;
+				case FIELD_WEATHER:
+					readWeather(parser, result);
+					break;
+				case FIELD_LAST_UPDATE:
+					readLastUpdate(parser, result);
+					break;
 			}
+			missingFields &= ~field;
 		}
-		return result;
+	}
+
+	/**
+	 * Return the tag named {@code name} with a single lookup in the dispatch table
+	 *
+	 * @param name the name of a tag
+	 * @return the FIELD_* flag of a child of the root, the TAG_* flag of a known descendant, 0 if the tag is unknown
+	 */
+	private static int getTag(String name) {
+		final int index = getTagIndex(name);
+		return name.equals(sTagNames[index]) ? sTags[index] : 0;
+	}
+
+	/**
+	 * Return the slot of {@code name} in the dispatch table.
+	 * Only the length and the first char are hashed, they are enough to tell the known names apart
+	 * and, unlike {@link String#hashCode()}, do not read the whole name the parser has just created.
+	 */
+	private static int getTagIndex(String name) {
+		if (name.length() == 0) {
+			return 0;
+		}
+		return (name.length() * 3 + name.charAt(0)) & (TAG_TABLE_SIZE - 1);
+	}
+
+	/**
+	 * Add a known tag to the dispatch table
+	 */
+	private static void putTag(String name, int tag) {
+		final int index = getTagIndex(name);
+		if (sTagNames[index] != null) {
+			throw new IllegalStateException("The tags " + name + " and " + sTagNames[index] + " share a slot");
+		}
+		sTagNames[index] = name;
+		sTags[index] = tag;
 	}
 
 	/**
 	 * Read the precipitation information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readPrecipitation(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readPrecipitation(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_PRECIPITATION);
 		result.setPrecipitationMode(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_PRECIPITATION_MODE));
 		parser.nextTag();
@@ -166,13 +316,13 @@ public class OpenWeatherMapParser {
 	 * Read the cloud information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readCloud(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readCloud(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_CLOUD);
-		result.setCloudValue(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_CLOUD_VALUE)));
+		result.setCloudValue(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_CLOUD_VALUE)));
 		result.setCloudName(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_CLOUD_NAME));
 		parser.nextTag();
 		parser.require(XmlPullParser.END_TAG, NAME_SPACE, NAME_CLOUD);
@@ -182,13 +332,13 @@ public class OpenWeatherMapParser {
 	 * Read the pressure information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readPressure(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readPressure(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_PRESSURE);
-		result.setPressureValue(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_PRESSURE_VALUE)));
+		result.setPressureValue(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_PRESSURE_VALUE)));
 		result.setPressureUnit(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_PRESSURE_UNIT));
 		parser.nextTag();
 		parser.require(XmlPullParser.END_TAG, NAME_SPACE, NAME_PRESSURE);
@@ -198,13 +348,13 @@ public class OpenWeatherMapParser {
 	 * Read the humidity information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readHumidity(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readHumidity(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_HUMDITY);
-		result.setHumidityValue(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_HUMIDITY_VALUE)));
+		result.setHumidityValue(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_HUMIDITY_VALUE)));
 		result.setHumidityUnit(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_HUMIDITY_UNIT));
 		parser.nextTag();
 		parser.require(XmlPullParser.END_TAG, NAME_SPACE, NAME_HUMDITY);
@@ -214,14 +364,14 @@ public class OpenWeatherMapParser {
 	 * Read the weather information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readWeather(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readWeather(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_WEATHER);
 		result.setWeatherValue(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WEATHER_VALUE));
-		result.setWeatherNumber(Integer.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WEATHER_NUMBER)));
+		result.setWeatherNumber(DecimalDecoder.parseInt(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WEATHER_NUMBER)));
 		result.setWeatherIcon(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WEATHER_ICON));
 		parser.nextTag();
 		parser.require(XmlPullParser.END_TAG, NAME_SPACE, NAME_WEATHER);
@@ -231,11 +381,11 @@ public class OpenWeatherMapParser {
 	 * Read the last update information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readLastUpdate(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readLastUpdate(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_LAST_UPDATE);
 		result.setLastUpdate(parser.getAttributeValue(NAME_SPACE, ATTIBUTE_LAST_UPDATE_VALUE));
 		parser.nextTag();
@@ -246,15 +396,15 @@ public class OpenWeatherMapParser {
 	 * Read the temperature information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readTemperature(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readTemperature(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_TEMPERATURE);
-		result.setTemperatureValue(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_TEMPERATURE_VALUE)));
-		result.setTemperatureMax(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_TEMPERATURE_MAX)));
-		result.setTemperatureMin(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_TEMPERATURE_MIN)));
+		result.setTemperatureValue(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_TEMPERATURE_VALUE)));
+		result.setTemperatureMax(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_TEMPERATURE_MAX)));
+		result.setTemperatureMin(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_TEMPERATURE_MIN)));
 		result.setTemperatureUnit(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_TEMPERATURE_UNIT));
 		parser.nextTag();
 		parser.require(XmlPullParser.END_TAG, NAME_SPACE, NAME_TEMPERATURE);
@@ -264,28 +414,31 @@ public class OpenWeatherMapParser {
 	 * Read the wind information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readWind(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readWind(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_WIND);
 		while (parser.next() != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG) {
 				continue;
 			}
-			final String name = parser.getName();
-			if (name.equals(NAME_WIND_SPEED)) {
-				result.setWindSpeedValue(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_SPEED_VALUE)));
-				result.setWindSpeedName(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_SPEED_NAME));
-				parser.nextTag();
-			} else if (name.equals(NAME_WIND_DIRECTION)) {
-				result.setWindDirectionValue(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_DIRECTION_VALUE)));
-				result.setWindDirectionCode(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_DIRECTION_CODE));
-				result.setWindDirectionName(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_DIRECTION_NAME));
-				parser.nextTag();
-			} else {
-				skip(parser);
+			switch (getTag(parser.getName())) {
+				case TAG_WIND_SPEED:
+					result.setWindSpeedValue(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_SPEED_VALUE)));
+					result.setWindSpeedName(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_SPEED_NAME));
+					parser.nextTag();
+					break;
+				case TAG_WIND_DIRECTION:
+					result.setWindDirectionValue(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_DIRECTION_VALUE)));
+					result.setWindDirectionCode(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_DIRECTION_CODE));
+					result.setWindDirectionName(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_WIND_DIRECTION_NAME));
+					parser.nextTag();
+					break;
+				default:
+					skip(parser);
+					break;
 			}
 		}
 
@@ -295,33 +448,36 @@ public class OpenWeatherMapParser {
 	 * Read the city information from {@code parser} and set them in {@code result}
 	 *
 	 * @param parser {@link org.xmlpull.v1.XmlPullParser}
-	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @param result {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
 	 * @throws XmlPullParserException
 	 * @throws IOException
 	 */
-	private void readCity(XmlPullParser parser, OpenWeatherMapParserResult result) throws XmlPullParserException, IOException {
+	private void readCity(XmlPullParser parser, CompactWeatherResult result) throws XmlPullParserException, IOException {
 		parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_CITY);
-		result.setCityId(Integer.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_CITY_ID)));
+		result.setCityId(DecimalDecoder.parseInt(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_CITY_ID)));
 		result.setCityName(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_CITY_NAME));
 		while (parser.next() != XmlPullParser.END_TAG) {
 			if (parser.getEventType() != XmlPullParser.START_TAG) {
 				continue;
 			}
-			final String name = parser.getName();
-			if (name.equals(NAME_COORDINATE)) {
-				result.setLongitude(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_LONGITUDE)));
-				result.setLatitude(Float.valueOf(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_LATITUDE)));
-				parser.nextTag();
-			} else if (name.equals(NAME_COUNTRY)) {
-				parser.require(XmlPullParser.START_TAG, NAME_SPACE, NAME_COUNTRY);
-				result.setCountry(readText(parser));
-				parser.require(XmlPullParser.END_TAG, NAME_SPACE, NAME_COUNTRY);
-			} else if (name.equals(NAME_SUN)) {
-				result.setSunRise(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_SUN_RISE));
-				result.setSunSet(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_SUN_SET));
-				parser.nextTag();
-			} else {
-				skip(parser);
+			switch (getTag(parser.getName())) {
+				case TAG_COORDINATE:
+					result.setLongitude(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_LONGITUDE)));
+					result.setLatitude(DecimalDecoder.parseFloat(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_LATITUDE)));
+					parser.nextTag();
+					break;
+				case TAG_COUNTRY:
+					result.setCountry(readText(parser));
+					parser.require(XmlPullParser.END_TAG, NAME_SPACE, NAME_COUNTRY);
+					break;
+				case TAG_SUN:
+					result.setSunRise(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_SUN_RISE));
+					result.setSunSet(parser.getAttributeValue(NAME_SPACE, ATTRIBUTE_SUN_SET));
+					parser.nextTag();
+					break;
+				default:
+					skip(parser);
+					break;
 			}
 		}
 	}
@@ -2,31 +2,45 @@ package fr.tvbarthel.apps.simplethermometer.openweathermap;
 
 import android.os.AsyncTask;
 
-import org.xmlpull.v1.XmlPullParserException;
-
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
-import java.net.URL;
-import java.net.URLConnection;
 
 import fr.tvbarthel.apps.simplethermometer.R;
 
 /**
- * An AsyncTask used to run the parsing of an XML flux from the OpenWeatherMap api.
+ * An AsyncTask used to run the parsing of an XML or JSON flux from the OpenWeatherMap api.
+ * <p/>
+ * The flux is parsed in a pooled {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
+ * which is recycled once the listener has been notified.
  */
-public class OpenWeatherMapParserAsyncTask extends AsyncTask<String, Integer, OpenWeatherMapParserResult> {
+public class OpenWeatherMapParserAsyncTask extends AsyncTask<String, Integer, CompactWeatherResult> {
 
 	//If there is an Exception, contains a displayable explanation.
 	protected int mErrorMessage;
 	//the listener that is notified
 	protected Listener mListener;
+	//the http transport used to request the api
+	protected OpenWeatherMapHttpClient mHttpClient;
+	//the fields to parse, see OpenWeatherMapParser FIELD_* flags
+	protected int mFields;
+	//the format of the requested flux
+	protected WeatherFormat mWeatherFormat;
+	//true if the server answered that the weather has not changed since the last request
+	protected boolean mNotModified;
+
+	public OpenWeatherMapParserAsyncTask(Listener listener, OpenWeatherMapHttpClient httpClient) {
+		this(listener, httpClient, WeatherFormat.XML, OpenWeatherMapParser.FIELD_ALL);
+	}
 
-	public OpenWeatherMapParserAsyncTask(Listener listener) {
+	public OpenWeatherMapParserAsyncTask(Listener listener, OpenWeatherMapHttpClient httpClient,
+										 WeatherFormat weatherFormat, int fields) {
 		super();
 		mListener = listener;
+		mHttpClient = httpClient;
+		mWeatherFormat = weatherFormat;
+		mFields = fields;
 	}
 
 	/*
@@ -34,34 +48,44 @@ public class OpenWeatherMapParserAsyncTask extends AsyncTask<String, Integer, Op
 	 */
 
 	@Override
-	protected OpenWeatherMapParserResult doInBackground(String... params) {
-		OpenWeatherMapParserResult result = null;
+	protected CompactWeatherResult doInBackground(String... params) {
+		CompactWeatherResult result = null;
 		publishProgress(0);
 		try {
-			//Get the target url
-			final URL url = new URL(params[0]);
-			publishProgress(10);
-
-			//Get a URLConnection
-			final URLConnection urlConnection = url.openConnection();
-			publishProgress(20);
-			urlConnection.setConnectTimeout(10000);
-			publishProgress(50);
-			urlConnection.setUseCaches(true);
-
 			//Check is the task has been cancelled
 			if(isCancelled()) return result;
 
-			//Get an InputStream
-			final InputStream inputStream = new BufferedInputStream(urlConnection.getInputStream());
+			//Get an InputStream through the shared http transport
+			publishProgress(10);
+			final InputStream inputStream = mHttpClient.get(params[0]);
 			publishProgress(80);
 
+			if (inputStream == null) {
+				//The last parsed result is still fresh, no need to parse anything
+				mNotModified = true;
+				publishProgress(90);
+				return result;
+			}
+
 			//Check is the task has been cancelled
-			if(isCancelled()) return result;
+			if (isCancelled()) {
+				//release the connection
+				inputStream.close();
+				return result;
+			}
 
 			//Parse the InputStream
-			final OpenWeatherMapParser parser = new OpenWeatherMapParser();
-			result = parser.parse(inputStream);
+			final WeatherParser parser = mWeatherFormat.newParser();
+			final CompactWeatherResult compactResult = CompactWeatherResult.obtain();
+			try {
+				parser.parse(inputStream, mFields, compactResult);
+				result = compactResult;
+			} finally {
+				if (result == null) {
+					//the parsing failed, the result won't be dispatched
+					compactResult.recycle();
+				}
+			}
 			publishProgress(90);
 
 		} catch (SocketTimeoutException e) {
@@ -70,8 +94,13 @@ public class OpenWeatherMapParserAsyncTask extends AsyncTask<String, Integer, Op
 			mErrorMessage = R.string.error_message_malformed_url;
 		} catch (IOException e) {
 			mErrorMessage = R.string.error_message_io_exception;
-		} catch (XmlPullParserException e) {
-			mErrorMessage = R.string.error_message_xml_pull_parser_exception;
+		} catch (WeatherParserException e) {
+			mErrorMessage = R.string.error_message_parser_exception;
+		}
+
+		if (result == null && !mNotModified) {
+			//This response has not been used, its validators should not be sent again
+			mHttpClient.forgetValidators(params[0]);
 		}
 		return result;
 	}
@@ -84,21 +113,31 @@ public class OpenWeatherMapParserAsyncTask extends AsyncTask<String, Integer, Op
 	}
 
 	@Override
-	protected void onPostExecute(OpenWeatherMapParserResult result) {
+	protected void onPostExecute(CompactWeatherResult result) {
 		super.onPostExecute(result);
-		if (result == null) {
+		if (mNotModified) {
+			//Notify the listener that the last result is still fresh
+			mListener.onWeatherNotModified();
+		} else if (result == null) {
 			//An exception has occurred
 			//Notify the listener with the explanation
 			mListener.onWeatherLoadingFail(mErrorMessage);
 		} else {
 			//Notify the listener with the parsed result
-			mListener.onWeatherLoadingSuccess(result);
+			//and give it back to the pool, the listener must not keep it
+			try {
+				mListener.onWeatherLoadingSuccess(result);
+			} finally {
+				result.recycle();
+			}
 		}
 	}
 
 	@Override
 	protected void onCancelled() {
 		super.onCancelled();
+		//A result parsed before the cancellation is not given back to the pool,
+		//onCancelled(Result) is not available before API 11
 		//Notify the listener that the task has been cancelled
 		mListener.onWeatherLoadingCancelled();
 	}
@@ -107,8 +146,12 @@ public class OpenWeatherMapParserAsyncTask extends AsyncTask<String, Integer, Op
 	 * A public interface used to notify weather loading states
 	 */
 	public interface Listener {
-		//Notify parsing success
-		public void onWeatherLoadingSuccess(OpenWeatherMapParserResult result);
+		//Notify parsing success, result is recycled once this call returns
+		//and must be copied to be kept, see CompactWeatherResult#set(CompactWeatherResult)
+		public void onWeatherLoadingSuccess(CompactWeatherResult result);
+
+		//Notify that the weather has not changed since the last success
+		public void onWeatherNotModified();
 
 		//Notify parsing failure
 		public void onWeatherLoadingFail(int stringResourceId);
@@ -0,0 +1,205 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A process wide registry of the in-flight OpenWeatherMap requests.
+ * <p/>
+ * A request for an url that is already being loaded does not start a new
+ * {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserAsyncTask},
+ * the listener is attached to the running one and is notified with the same result.
+ * This result is recycled once all the listeners have been notified.
+ * <p/>
+ * The {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapRequestRegistry.ResultRecorder}
+ * given by the request that started the AsyncTask records the result once, before the listeners are notified,
+ * however many listeners joined it and even if this first listener has been detached.
+ * <p/>
+ * Two requests are identical if they ask for the same fields of the same url in the same format.
+ * <p/>
+ * Like the {@link android.os.AsyncTask} callbacks, this registry must only be used from the main thread.
+ */
+public class OpenWeatherMapRequestRegistry {
+
+	private static OpenWeatherMapRequestRegistry sInstance;
+
+	//The in-flight requests by format, fields and url
+	private final Map<String, InFlightRequest> mInFlightRequests;
+	//Number of requests that started an AsyncTask
+	private int mStartedRequestCount;
+	//Number of requests attached to an in-flight AsyncTask
+	private int mDeduplicatedRequestCount;
+
+	/**
+	 * Return the shared instance of the registry.
+	 *
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapRequestRegistry}
+	 */
+	public static synchronized OpenWeatherMapRequestRegistry getInstance() {
+		if (sInstance == null) {
+			sInstance = new OpenWeatherMapRequestRegistry();
+		}
+		return sInstance;
+	}
+
+	private OpenWeatherMapRequestRegistry() {
+		mInFlightRequests = new HashMap<String, InFlightRequest>();
+		mStartedRequestCount = 0;
+		mDeduplicatedRequestCount = 0;
+	}
+
+	/**
+	 * Load the {@code fields} of {@code url} and notify {@code listener}.
+	 * If they are already being loaded, {@code listener} joins the in-flight request.
+	 *
+	 * @param url           the url to load
+	 * @param weatherFormat the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat} of the flux
+	 * @param fields        the fields to parse, see {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser} FIELD_* flags
+	 * @param recorder      the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapRequestRegistry.ResultRecorder}
+	 *                      of the result, only used if a new AsyncTask is started, may be null
+	 * @param listener      the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserAsyncTask.Listener} to notify
+	 * @return true if a new AsyncTask has been started, false if {@code listener} joined an in-flight request
+	 */
+	public boolean request(String url, WeatherFormat weatherFormat, int fields, ResultRecorder recorder,
+						   OpenWeatherMapParserAsyncTask.Listener listener) {
+		final String key = getKey(url, weatherFormat, fields);
+		InFlightRequest inFlightRequest = mInFlightRequests.get(key);
+		if (inFlightRequest != null) {
+			//join the in-flight request
+			mDeduplicatedRequestCount++;
+			inFlightRequest.mListeners.add(listener);
+			return false;
+		} else {
+			//start a new request
+			mStartedRequestCount++;
+			inFlightRequest = new InFlightRequest(key, weatherFormat, fields, recorder);
+			inFlightRequest.mListeners.add(listener);
+			mInFlightRequests.put(key, inFlightRequest);
+			inFlightRequest.mAsyncTask.execute(url);
+			return true;
+		}
+	}
+
+	/**
+	 * Detach {@code listener} from the request of the {@code fields} of {@code url}.
+	 * {@code listener} is notified of the cancellation, the underlying AsyncTask
+	 * is only cancelled if no other listener is waiting for it.
+	 *
+	 * @param url           the requested url
+	 * @param weatherFormat the requested format
+	 * @param fields        the requested fields
+	 * @param listener      the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserAsyncTask.Listener} to detach
+	 */
+	public void cancel(String url, WeatherFormat weatherFormat, int fields, OpenWeatherMapParserAsyncTask.Listener listener) {
+		final String key = getKey(url, weatherFormat, fields);
+		final InFlightRequest inFlightRequest = mInFlightRequests.get(key);
+		if (inFlightRequest == null || !inFlightRequest.mListeners.remove(listener)) {
+			return;
+		}
+
+		if (inFlightRequest.mListeners.isEmpty()) {
+			//nobody is waiting for this request anymore
+			mInFlightRequests.remove(key);
+			inFlightRequest.mAsyncTask.cancel(true);
+		}
+		listener.onWeatherLoadingCancelled();
+	}
+
+	/**
+	 * @return the number of requests that started a new AsyncTask
+	 */
+	public int getStartedRequestCount() {
+		return mStartedRequestCount;
+	}
+
+	/**
+	 * @return the number of requests that joined an in-flight AsyncTask instead of starting a new one
+	 */
+	public int getDeduplicatedRequestCount() {
+		return mDeduplicatedRequestCount;
+	}
+
+	private static String getKey(String url, WeatherFormat weatherFormat, int fields) {
+		return weatherFormat.getMode() + " " + fields + " " + url;
+	}
+
+	/**
+	 * A public interface used to record the result of a request once, whatever the number of its listeners
+	 */
+	public interface ResultRecorder {
+		//Record the parsed result, called before the listeners are notified
+		//result is recycled afterwards and must be copied to be kept
+		public void onWeatherLoaded(CompactWeatherResult result);
+	}
+
+	/**
+	 * An in-flight request that dispatches the states of its AsyncTask to all its listeners
+	 */
+	private final class InFlightRequest implements OpenWeatherMapParserAsyncTask.Listener {
+		private final String mKey;
+		private final OpenWeatherMapParserAsyncTask mAsyncTask;
+		private final List<OpenWeatherMapParserAsyncTask.Listener> mListeners;
+		//records the result once, null if the result is not recorded
+		private final ResultRecorder mRecorder;
+
+		private InFlightRequest(String key, WeatherFormat weatherFormat, int fields, ResultRecorder recorder) {
+			mKey = key;
+			mRecorder = recorder;
+			mAsyncTask = new OpenWeatherMapParserAsyncTask(this, OpenWeatherMapHttpClient.getInstance(),
+					weatherFormat, fields);
+			mListeners = new ArrayList<OpenWeatherMapParserAsyncTask.Listener>();
+		}
+
+		/**
+		 * Unregister this request and return the listeners to notify of its final state.
+		 *
+		 * @return the listeners that were waiting for this request
+		 */
+		private List<OpenWeatherMapParserAsyncTask.Listener> complete() {
+			if (mInFlightRequests.get(mKey) == this) {
+				mInFlightRequests.remove(mKey);
+			}
+			return new ArrayList<OpenWeatherMapParserAsyncTask.Listener>(mListeners);
+		}
+
+		@Override
+		public void onWeatherLoadingSuccess(CompactWeatherResult result) {
+			if (mRecorder != null) {
+				mRecorder.onWeatherLoaded(result);
+			}
+			for (OpenWeatherMapParserAsyncTask.Listener listener : complete()) {
+				listener.onWeatherLoadingSuccess(result);
+			}
+		}
+
+		@Override
+		public void onWeatherNotModified() {
+			for (OpenWeatherMapParserAsyncTask.Listener listener : complete()) {
+				listener.onWeatherNotModified();
+			}
+		}
+
+		@Override
+		public void onWeatherLoadingFail(int stringResourceId) {
+			for (OpenWeatherMapParserAsyncTask.Listener listener : complete()) {
+				listener.onWeatherLoadingFail(stringResourceId);
+			}
+		}
+
+		@Override
+		public void onWeatherLoadingProgress(int progress) {
+			for (OpenWeatherMapParserAsyncTask.Listener listener : new ArrayList<OpenWeatherMapParserAsyncTask.Listener>(mListeners)) {
+				listener.onWeatherLoadingProgress(progress);
+			}
+		}
+
+		@Override
+		public void onWeatherLoadingCancelled() {
+			for (OpenWeatherMapParserAsyncTask.Listener listener : complete()) {
+				listener.onWeatherLoadingCancelled();
+			}
+		}
+	}
+}
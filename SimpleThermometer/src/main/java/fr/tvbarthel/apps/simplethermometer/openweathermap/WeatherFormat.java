@@ -0,0 +1,40 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+/**
+ * The formats in which the weather can be requested to the OpenWeatherMap Api.
+ */
+public enum WeatherFormat {
+
+	XML("xml") {
+		@Override
+		public WeatherParser newParser() {
+			return new OpenWeatherMapParser();
+		}
+	},
+
+	JSON("json") {
+		@Override
+		public WeatherParser newParser() {
+			return new OpenWeatherMapJsonParser();
+		}
+	};
+
+	//the value of the "mode" parameter of the api
+	private final String mMode;
+
+	private WeatherFormat(String mode) {
+		mMode = mode;
+	}
+
+	/**
+	 * @return the value of the "mode" parameter used to request this format
+	 */
+	public String getMode() {
+		return mMode;
+	}
+
+	/**
+	 * @return a new {@link fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParser} for this format
+	 */
+	public abstract WeatherParser newParser();
+}
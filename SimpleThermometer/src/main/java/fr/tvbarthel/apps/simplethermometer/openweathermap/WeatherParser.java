@@ -0,0 +1,37 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A parser of the weather returned by the OpenWeatherMap Api in a given format.
+ * <p/>
+ * See {@link fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat}
+ */
+public interface WeatherParser {
+
+	/**
+	 * Parse the requested {@code fields} of {@code in} in a
+	 * {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}.
+	 * The stream is closed once parsed.
+	 *
+	 * @param in     {@link java.io.InputStream}
+	 * @param fields the requested fields, see {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser} FIELD_* flags
+	 * @return {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+	 * @throws WeatherParserException
+	 * @throws IOException
+	 */
+	public OpenWeatherMapParserResult parse(InputStream in, int fields) throws WeatherParserException, IOException;
+
+	/**
+	 * Parse the requested {@code fields} of {@code in} in {@code result} without boxing the numeric values.
+	 * The stream is closed once parsed.
+	 *
+	 * @param in     {@link java.io.InputStream}
+	 * @param fields the requested fields, see {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser} FIELD_* flags
+	 * @param result an empty {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult} to fill
+	 * @throws WeatherParserException
+	 * @throws IOException
+	 */
+	public void parse(InputStream in, int fields, CompactWeatherResult result) throws WeatherParserException, IOException;
+}
@@ -0,0 +1,18 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+/**
+ * Thrown by a {@link fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParser}
+ * when the flux does not contain a valid weather.
+ */
+public class WeatherParserException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public WeatherParserException(String message) {
+		super(message);
+	}
+
+	public WeatherParserException(Throwable cause) {
+		super(cause);
+	}
+}
@@ -0,0 +1,186 @@
+package fr.tvbarthel.apps.simplethermometer.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import fr.tvbarthel.apps.simplethermometer.R;
+import fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult;
+
+/**
+ * An immutable snapshot of what is displayed by the application and the app widgets:
+ * the formatted temperature, the temperature unit, the colors and the weather icon.
+ * <p/>
+ * The snapshot is built once from the DefaultSharedPreferences and the last
+ * {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot}, and shared until one of the displayed
+ * preferences changes, so the preferences and the resources are not read again for each display.
+ */
+public final class DisplayState {
+
+	//The weather icons, one per group of OpenWeatherMap weather condition ids
+	public static final int WEATHER_ICON_UNKNOWN = 0;
+	public static final int WEATHER_ICON_FAIR = 1;
+	public static final int WEATHER_ICON_CHANGE = 2;
+	public static final int WEATHER_ICON_RAIN = 3;
+	public static final int WEATHER_ICON_STORM = 4;
+
+	//The alpha of the icon of the current weather and of the other icons
+	private static final int ALPHA_CURRENT_WEATHER = 255;
+	private static final int ALPHA_OTHER_WEATHER = 64;
+
+	//The current snapshot, null if it has to be built again
+	private static DisplayState sSnapshot;
+	//Invalidate the snapshot, kept here since the SharedPreferences only keep weak references to their listeners
+	private static SharedPreferences.OnSharedPreferenceChangeListener sInvalidationListener;
+
+	private final String mTemperature;
+	private final String mTemperatureUnit;
+	private final TemperatureUnit mUnit;
+	private final int mTextColor;
+	private final int mBackgroundColor;
+	private final int mIconColor;
+	private final int mWeatherIcon;
+
+	/**
+	 * Return the current snapshot, built from the DefaultSharedPreferences if a displayed preference has changed.
+	 *
+	 * @param context the {@link android.content.Context} used to retrieve the preferences and the resources
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.utils.DisplayState}
+	 */
+	public static synchronized DisplayState get(Context context) {
+		if (sSnapshot == null) {
+			final Context applicationContext = context.getApplicationContext();
+			final SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+			if (sInvalidationListener == null) {
+				//listen before reading, so that no change is missed
+				sInvalidationListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+					@Override
+					public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+						invalidate(key);
+					}
+				};
+				defaultSharedPreferences.registerOnSharedPreferenceChangeListener(sInvalidationListener);
+			}
+			sSnapshot = new DisplayState(applicationContext, defaultSharedPreferences);
+		}
+		return sSnapshot;
+	}
+
+	/**
+	 * Drop the current snapshot if the preference {@code key} is displayed.
+	 * The listeners of the preferences are called in no particular order, a listener that reads the snapshot
+	 * should call this method first.
+	 *
+	 * @param key the key of the changed preference
+	 */
+	public static synchronized void invalidate(String key) {
+		//the weather changes with the time of the update, even if the temperature is the same
+		if (PreferenceUtils.PREF_KEY_LAST_TEMPERATURE_IN_CELSIUS.equals(key)
+				|| PreferenceUtils.PREF_KEY_LAST_UPDATE_TIME.equals(key)
+				|| PreferenceUtils.PREF_KEY_TEMPERATURE_UNIT_STRING.equals(key)
+				|| PreferenceUtils.PREF_KEY_TEXT_COLOR.equals(key)
+				|| PreferenceUtils.PREF_KEY_BACKGROUND_COLOR.equals(key)
+				|| PreferenceUtils.PREF_KEY_ICON_COLOR.equals(key)) {
+			sSnapshot = null;
+		}
+	}
+
+	private DisplayState(Context context, SharedPreferences sharedPreferences) {
+		mTemperatureUnit = sharedPreferences.getString(PreferenceUtils.PREF_KEY_TEMPERATURE_UNIT_STRING,
+				context.getString(R.string.temperature_unit_celsius_symbol));
+		mUnit = TemperatureUnit.fromSymbol(context, mTemperatureUnit);
+		mTemperature = TemperatureFormatter.format(
+				sharedPreferences.getFloat(PreferenceUtils.PREF_KEY_LAST_TEMPERATURE_IN_CELSIUS, 20),
+				mUnit, mTemperatureUnit);
+		mTextColor = PreferenceUtils.getTextColor(context, sharedPreferences);
+		mBackgroundColor = PreferenceUtils.getBackgroundColor(context, sharedPreferences);
+		mIconColor = PreferenceUtils.getIconColor(context, sharedPreferences);
+		final WeatherSnapshot weatherSnapshot = WeatherSnapshot.getLast(context);
+		mWeatherIcon = weatherSnapshot == null
+				|| !weatherSnapshot.getResult().has(CompactWeatherResult.HAS_WEATHER_NUMBER) ? WEATHER_ICON_UNKNOWN
+				: getWeatherIcon(weatherSnapshot.getResult().getWeatherNumber());
+	}
+
+	/**
+	 * Return the icon of an OpenWeatherMap weather condition.
+	 * See http://openweathermap.org/weather-conditions
+	 *
+	 * @param weatherNumber the weather condition id
+	 * @return one of the WEATHER_ICON_* constants
+	 */
+	public static int getWeatherIcon(int weatherNumber) {
+		switch (weatherNumber / 100) {
+			case 2:
+				//thunderstorm
+				return WEATHER_ICON_STORM;
+			case 3:
+			case 5:
+			case 6:
+				//drizzle, rain and snow
+				return WEATHER_ICON_RAIN;
+			case 7:
+				//mist, fog, dust
+				return WEATHER_ICON_CHANGE;
+			case 8:
+				//clear sky or clouds
+				return weatherNumber == 800 ? WEATHER_ICON_FAIR : WEATHER_ICON_CHANGE;
+			case 9:
+				//extreme weather and wind
+				return WEATHER_ICON_STORM;
+			default:
+				return WEATHER_ICON_UNKNOWN;
+		}
+	}
+
+	/**
+	 * @return the temperature formatted with its unit symbol
+	 */
+	public String getTemperature() {
+		return mTemperature;
+	}
+
+	/**
+	 * @return the symbol of the temperature unit
+	 */
+	public String getTemperatureUnit() {
+		return mTemperatureUnit;
+	}
+
+	/**
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.utils.TemperatureUnit} of the display
+	 */
+	public TemperatureUnit getUnit() {
+		return mUnit;
+	}
+
+	public int getTextColor() {
+		return mTextColor;
+	}
+
+	public int getBackgroundColor() {
+		return mBackgroundColor;
+	}
+
+	public int getIconColor() {
+		return mIconColor;
+	}
+
+	/**
+	 * @return the icon of the last observed weather, one of the WEATHER_ICON_* constants
+	 */
+	public int getWeatherIcon() {
+		return mWeatherIcon;
+	}
+
+	/**
+	 * Return the alpha of the icon {@code weatherIcon}: opaque if it is the icon of the last observed weather
+	 * or if the weather is unknown, dimmed otherwise.
+	 *
+	 * @param weatherIcon one of the WEATHER_ICON_* constants
+	 * @return the alpha of the icon, from 0 to 255
+	 */
+	public int getWeatherIconAlpha(int weatherIcon) {
+		return mWeatherIcon == WEATHER_ICON_UNKNOWN || mWeatherIcon == weatherIcon ? ALPHA_CURRENT_WEATHER : ALPHA_OTHER_WEATHER;
+	}
+}
@@ -2,8 +2,7 @@ package fr.tvbarthel.apps.simplethermometer.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-
-import java.text.DecimalFormat;
+import android.os.Build;
 
 import fr.tvbarthel.apps.simplethermometer.R;
 
@@ -25,6 +24,8 @@ public class PreferenceUtils {
 	public static final String PREF_KEY_LAST_UPDATE_TIME = "PrefKeyLastUpdateTime";
 	//Used to store the temperature unit
 	public static final String PREF_KEY_TEMPERATURE_UNIT_STRING = "PrefKeyTemperatureUnitString";
+	//Used to store the location grid cell of the last retrieved temperature
+	public static final String PREF_KEY_LAST_LOCATION_CELL = "PrefKeyLastLocationCell";
 
 
 	/**
@@ -41,19 +42,28 @@ public class PreferenceUtils {
 				context.getString(R.string.temperature_unit_celsius_symbol));
 
 		//Retrieve the temperature
-		Float temperatureFlt = sharedPreferences.getFloat(PREF_KEY_LAST_TEMPERATURE_IN_CELSIUS, 20);
-
-		if (temperatureUnit.equals(context.getString(R.string.temperature_unit_fahrenheit_symbol))) {
-			//Convert from Celsius to Fahrenheit
-			temperatureFlt = temperatureFlt * 1.8f + 32f;
-		} else if (temperatureUnit.equals(context.getString(R.string.temperature_unit_kelvin_symbol))) {
-			//Convert from Celsius to Kelvin
-			temperatureFlt += 273.15f;
-		}
-		//Format the temperature with only one decimal
-		final String temperatureStr = new DecimalFormat("#.#").format(temperatureFlt);
+		final float temperatureInCelsius = sharedPreferences.getFloat(PREF_KEY_LAST_TEMPERATURE_IN_CELSIUS, 20);
+
+		return formatTemperature(temperatureInCelsius, temperatureUnit,
+				context.getString(R.string.temperature_unit_fahrenheit_symbol),
+				context.getString(R.string.temperature_unit_kelvin_symbol));
+	}
 
-		return temperatureStr + temperatureUnit;
+	/**
+	 * Return a human readable string that represents {@code temperatureInCelsius} in {@code temperatureUnit}.
+	 * <p/>
+	 * Nothing is read from the Android framework so that the formatting can be run on a plain JVM.
+	 *
+	 * @param temperatureInCelsius the temperature value in Celsius
+	 * @param temperatureUnit      the symbol of the unit in which the temperature is displayed
+	 * @param fahrenheitSymbol     the symbol of the Fahrenheit unit
+	 * @param kelvinSymbol         the symbol of the Kelvin unit
+	 * @return the temperature with one decimal at most, followed by {@code temperatureUnit}
+	 */
+	public static String formatTemperature(float temperatureInCelsius, String temperatureUnit,
+										   String fahrenheitSymbol, String kelvinSymbol) {
+		final TemperatureUnit unit = TemperatureUnit.fromSymbol(temperatureUnit, fahrenheitSymbol, kelvinSymbol);
+		return TemperatureFormatter.format(temperatureInCelsius, unit, temperatureUnit);
 	}
 
 	/**
@@ -99,11 +109,56 @@ public class PreferenceUtils {
 	 * @param temperatureInCelsius the temperature value in Celsius
 	 */
 	public static void storeTemperatureInCelsius(SharedPreferences sharedPreferences, float temperatureInCelsius) {
+		storeTemperatureInCelsius(sharedPreferences, temperatureInCelsius, System.currentTimeMillis(), null);
+	}
+
+	/**
+	 * Save {@code temperatureInCelsius} observed at {@code timeInMillis} in the location cell {@code cellKey}
+	 * in {@code sharedPreferences}
+	 *
+	 * @param sharedPreferences    the {@link android.content.SharedPreferences} where the temperature is stored
+	 * @param temperatureInCelsius the temperature value in Celsius
+	 * @param timeInMillis         the time of the observation (in Millis)
+	 * @param cellKey              the key of the location cell, see {@link fr.tvbarthel.apps.simplethermometer.cache.ObservationCache}
+	 */
+	public static void storeTemperatureInCelsius(SharedPreferences sharedPreferences, float temperatureInCelsius,
+												 long timeInMillis, String cellKey) {
 		final SharedPreferences.Editor editor = sharedPreferences.edit();
 		//save the temperature value
 		editor.putFloat(PreferenceUtils.PREF_KEY_LAST_TEMPERATURE_IN_CELSIUS, temperatureInCelsius);
 		//save the time of the update
+		editor.putLong(PreferenceUtils.PREF_KEY_LAST_UPDATE_TIME, timeInMillis);
+		//save the location cell of the temperature
+		editor.putString(PreferenceUtils.PREF_KEY_LAST_LOCATION_CELL, cellKey);
+		apply(editor);
+	}
+
+	/**
+	 * Save the current time as the time of the last update in {@code sharedPreferences}
+	 * without changing the stored temperature.
+	 *
+	 * @param sharedPreferences the {@link android.content.SharedPreferences} where the time is stored
+	 */
+	public static void storeLastUpdateTime(SharedPreferences sharedPreferences) {
+		final SharedPreferences.Editor editor = sharedPreferences.edit();
 		editor.putLong(PreferenceUtils.PREF_KEY_LAST_UPDATE_TIME, System.currentTimeMillis());
-		editor.commit();
+		apply(editor);
+	}
+
+	/**
+	 * Save the changes of {@code editor} without blocking the calling thread.
+	 * <p/>
+	 * Since Gingerbread, the in-memory values are updated right away and written to the disk in the background,
+	 * the successive writes are coalesced and the pending writes are waited for when the application goes
+	 * to the background. Before Gingerbread, the in-memory values are only updated by a blocking commit.
+	 *
+	 * @param editor the {@link android.content.SharedPreferences.Editor} holding the changes
+	 */
+	public static void apply(SharedPreferences.Editor editor) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+			editor.apply();
+		} else {
+			editor.commit();
+		}
 	}
 }
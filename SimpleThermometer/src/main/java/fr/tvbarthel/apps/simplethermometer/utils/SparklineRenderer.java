@@ -0,0 +1,91 @@
+package fr.tvbarthel.apps.simplethermometer.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import fr.tvbarthel.apps.simplethermometer.history.RecentReadings;
+
+/**
+ * Draw the trend of the recent temperatures as a sparkline:
+ * a line through the readings, scaled to fill the bitmap, and a dot on the last reading.
+ */
+public final class SparklineRenderer {
+
+	//number of snapshots taken before giving up if the readings keep being overwritten
+	private static final int MAX_ATTEMPTS = 3;
+
+	private SparklineRenderer() {
+	}
+
+	/**
+	 * Draw the readings of {@code recentReadings} in a new bitmap.
+	 *
+	 * @param recentReadings the {@link fr.tvbarthel.apps.simplethermometer.history.RecentReadings} to draw
+	 * @param width          the width of the bitmap (in Pixels)
+	 * @param height         the height of the bitmap (in Pixels)
+	 * @param strokeWidth    the width of the line (in Pixels)
+	 * @param color          the color of the line
+	 * @return the {@link android.graphics.Bitmap} of the sparkline, null if there are less than two readings.
+	 */
+	public static Bitmap render(RecentReadings recentReadings, int width, int height, float strokeWidth, int color) {
+		final Path path = new Path();
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			final RecentReadings.Snapshot snapshot = recentReadings.getSnapshot();
+			final int count = snapshot.getCount();
+			if (count < 2 || width <= 2 * strokeWidth || height <= 2 * strokeWidth) {
+				return null;
+			}
+
+			//the bounds of the readings
+			final long firstTime = snapshot.getTimeAt(0);
+			final long lastTime = snapshot.getTimeAt(count - 1);
+			float minTemperature = Float.MAX_VALUE;
+			float maxTemperature = -Float.MAX_VALUE;
+			for (int i = 0; i < count; i++) {
+				final float temperature = snapshot.getTemperatureAt(i);
+				minTemperature = Math.min(minTemperature, temperature);
+				maxTemperature = Math.max(maxTemperature, temperature);
+			}
+
+			//the readings are placed by time, a flat trend is drawn in the middle
+			final float left = strokeWidth;
+			final float top = strokeWidth;
+			final float drawingWidth = width - 2 * strokeWidth;
+			final float drawingHeight = height - 2 * strokeWidth;
+			final float timeScale = lastTime > firstTime ? drawingWidth / (lastTime - firstTime) : 0;
+			final float temperatureRange = maxTemperature - minTemperature;
+			path.reset();
+			float x = 0;
+			float y = 0;
+			for (int i = 0; i < count; i++) {
+				x = left + (snapshot.getTimeAt(i) - firstTime) * timeScale;
+				y = temperatureRange > 0
+						? top + (maxTemperature - snapshot.getTemperatureAt(i)) / temperatureRange * drawingHeight
+						: top + drawingHeight / 2;
+				if (i == 0) {
+					path.moveTo(x, y);
+				} else {
+					path.lineTo(x, y);
+				}
+			}
+
+			if (snapshot.isIntact()) {
+				final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+				final Canvas canvas = new Canvas(bitmap);
+				final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+				paint.setColor(color);
+				paint.setStyle(Paint.Style.STROKE);
+				paint.setStrokeWidth(strokeWidth);
+				paint.setStrokeJoin(Paint.Join.ROUND);
+				paint.setStrokeCap(Paint.Cap.ROUND);
+				canvas.drawPath(path, paint);
+				paint.setStyle(Paint.Style.FILL);
+				canvas.drawCircle(x, y, strokeWidth, paint);
+				return bitmap;
+			}
+		}
+		return null;
+	}
+}
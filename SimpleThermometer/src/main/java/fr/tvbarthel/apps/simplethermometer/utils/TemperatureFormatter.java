@@ -0,0 +1,183 @@
+package fr.tvbarthel.apps.simplethermometer.utils;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Format the temperatures with one decimal at most, as a {@link java.text.DecimalFormat} "#.#" would.
+ * <p/>
+ * The digits are written straight into a char array or a {@link java.lang.StringBuilder}:
+ * nothing is allocated per temperature and the symbols of the default locale are only read when it changes.
+ * The value is rounded half to even on its exact binary value, like {@link java.text.DecimalFormat}.
+ * The values that are not finite, or too large to be held by a long once scaled, are given to a
+ * {@link java.text.DecimalFormat}.
+ */
+public final class TemperatureFormatter {
+
+	//max number of chars written for a finite temperature: sign (4), 17 digits, separator and decimal
+	public static final int MAX_LENGTH = 24;
+	//max length of the sign, some locales add a direction mark before the minus sign
+	private static final int MAX_SIGN_LENGTH = 4;
+
+	//the scaled values above this bound are given to a DecimalFormat
+	private static final double MAX_SCALED_VALUE = 1e17;
+	private static final String PATTERN = "#.#";
+
+	//The symbols of the last used locale
+	private static volatile Symbols sSymbols;
+
+	private TemperatureFormatter() {
+	}
+
+	/**
+	 * Return a human readable string that represents {@code temperatureInCelsius} in {@code unit}.
+	 *
+	 * @param temperatureInCelsius the temperature value in Celsius
+	 * @param unit                 the {@link fr.tvbarthel.apps.simplethermometer.utils.TemperatureUnit} of the display
+	 * @param unitSymbol           the symbol appended to the value
+	 * @return the formatted temperature
+	 */
+	public static String format(float temperatureInCelsius, TemperatureUnit unit, String unitSymbol) {
+		final float temperature = unit.fromCelsius(temperatureInCelsius);
+		final char[] buffer = new char[MAX_LENGTH + unitSymbol.length()];
+		final int length = format(temperature, buffer, 0);
+		if (length < 0) {
+			return formatWithDecimalFormat(temperature) + unitSymbol;
+		}
+		unitSymbol.getChars(0, unitSymbol.length(), buffer, length);
+		return new String(buffer, 0, length + unitSymbol.length());
+	}
+
+	/**
+	 * Append {@code value}, formatted with one decimal at most, to {@code stringBuilder}.
+	 *
+	 * @param stringBuilder the {@link java.lang.StringBuilder} receiving the chars
+	 * @param value         the value to format
+	 * @param buffer        a scratch array of at least {@link #MAX_LENGTH} chars
+	 * @return {@code stringBuilder}
+	 */
+	public static StringBuilder append(StringBuilder stringBuilder, float value, char[] buffer) {
+		final int length = format(value, buffer, 0);
+		if (length < 0) {
+			return stringBuilder.append(formatWithDecimalFormat(value));
+		}
+		return stringBuilder.append(buffer, 0, length);
+	}
+
+	/**
+	 * Format the first {@code count} temperatures of {@code temperaturesInCelsius} in {@code unit},
+	 * one after the other in {@code buffer}. The label {@code i} is made of the chars from
+	 * {@code ends[i - 1]} (or 0) to {@code ends[i]}, ready for
+	 * {@link android.graphics.Canvas#drawText(char[], int, int, float, float, android.graphics.Paint)}.
+	 * Nothing is allocated.
+	 *
+	 * @param temperaturesInCelsius the temperature values in Celsius
+	 * @param count                 the number of temperatures to format
+	 * @param unit                  the {@link fr.tvbarthel.apps.simplethermometer.utils.TemperatureUnit} of the display
+	 * @param buffer                the chars of the labels, at least {@code count * MAX_LENGTH} chars
+	 * @param ends                  the end of each label in {@code buffer}, at least {@code count} ints
+	 * @return the number of formatted temperatures, less than {@code count} if a value is not finite or too large
+	 */
+	public static int formatAll(float[] temperaturesInCelsius, int count, TemperatureUnit unit, char[] buffer, int[] ends) {
+		final Symbols symbols = getSymbols();
+		int offset = 0;
+		for (int i = 0; i < count; i++) {
+			final int end = format(unit.fromCelsius(temperaturesInCelsius[i]), buffer, offset, symbols);
+			if (end < 0) {
+				return i;
+			}
+			ends[i] = offset = end;
+		}
+		return count;
+	}
+
+	/**
+	 * Write {@code value}, formatted with one decimal at most, into {@code buffer} from {@code offset}.
+	 *
+	 * @param value  the value to format
+	 * @param buffer the array receiving the chars, at least {@link #MAX_LENGTH} chars from {@code offset}
+	 * @param offset the index of the first char
+	 * @return the index after the last written char,
+	 * -1 if the value is not finite or too large and nothing has been written.
+	 */
+	public static int format(float value, char[] buffer, int offset) {
+		return format(value, buffer, offset, getSymbols());
+	}
+
+	private static int format(float value, char[] buffer, int offset, Symbols symbols) {
+		//a float times 10 is exact in a double, rint rounds half to even like DecimalFormat
+		final double scaled = Math.rint((double) value * 10);
+		if (!(Math.abs(scaled) < MAX_SCALED_VALUE) || symbols.mNegativePrefix.length > MAX_SIGN_LENGTH) {
+			return -1;
+		}
+
+		long tenths = (long) scaled;
+		int position = offset;
+		//DecimalFormat keeps the sign of the values rounded to zero, "-0"
+		if (value < 0 || (value == 0 && Float.floatToRawIntBits(value) != 0)) {
+			final char[] negativePrefix = symbols.mNegativePrefix;
+			System.arraycopy(negativePrefix, 0, buffer, position, negativePrefix.length);
+			position += negativePrefix.length;
+			tenths = -tenths;
+		}
+
+		//the decimal, omitted if zero
+		final int decimal = (int) (tenths % 10);
+		long integer = tenths / 10;
+
+		//the integer part, written backward
+		final int start = position;
+		do {
+			buffer[position++] = (char) (symbols.mZeroDigit + (int) (integer % 10));
+			integer /= 10;
+		} while (integer != 0);
+		for (int low = start, high = position - 1; low < high; low++, high--) {
+			final char digit = buffer[low];
+			buffer[low] = buffer[high];
+			buffer[high] = digit;
+		}
+
+		if (decimal != 0) {
+			buffer[position++] = symbols.mDecimalSeparator;
+			buffer[position++] = (char) (symbols.mZeroDigit + decimal);
+		}
+		return position;
+	}
+
+	private static String formatWithDecimalFormat(float value) {
+		return new DecimalFormat(PATTERN).format(value);
+	}
+
+	/**
+	 * Return the symbols of the default locale, read again only if the default locale has changed.
+	 */
+	private static Symbols getSymbols() {
+		final Locale locale = Locale.getDefault();
+		Symbols symbols = sSymbols;
+		if (symbols == null || !symbols.mLocale.equals(locale)) {
+			symbols = new Symbols(locale);
+			sSymbols = symbols;
+		}
+		return symbols;
+	}
+
+	/**
+	 * The symbols used to format a number in a locale
+	 */
+	private static final class Symbols {
+		private final Locale mLocale;
+		private final char mZeroDigit;
+		private final char[] mNegativePrefix;
+		private final char mDecimalSeparator;
+
+		private Symbols(Locale locale) {
+			final DecimalFormat decimalFormat = new DecimalFormat(PATTERN, new DecimalFormatSymbols(locale));
+			final DecimalFormatSymbols decimalFormatSymbols = decimalFormat.getDecimalFormatSymbols();
+			mLocale = locale;
+			mZeroDigit = decimalFormatSymbols.getZeroDigit();
+			mNegativePrefix = decimalFormat.getNegativePrefix().toCharArray();
+			mDecimalSeparator = decimalFormatSymbols.getDecimalSeparator();
+		}
+	}
+}
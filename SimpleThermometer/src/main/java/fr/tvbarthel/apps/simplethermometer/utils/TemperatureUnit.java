@@ -0,0 +1,104 @@
+package fr.tvbarthel.apps.simplethermometer.utils;
+
+import android.content.Context;
+
+import fr.tvbarthel.apps.simplethermometer.R;
+
+/**
+ * The units in which a temperature can be displayed.
+ * <p/>
+ * The temperatures are stored in Celsius, {@link #fromCelsius(float)} converts them to the unit.
+ * The unit stored in the preferences is its symbol, {@link #fromSymbol(String, String, String)}
+ * resolves it once so that the symbol is not compared for each displayed temperature.
+ */
+public enum TemperatureUnit {
+
+	CELSIUS(R.string.temperature_unit_celsius_symbol) {
+		@Override
+		public float fromCelsius(float temperatureInCelsius) {
+			return temperatureInCelsius;
+		}
+	},
+
+	FAHRENHEIT(R.string.temperature_unit_fahrenheit_symbol) {
+		@Override
+		public float fromCelsius(float temperatureInCelsius) {
+			return temperatureInCelsius * 1.8f + 32f;
+		}
+	},
+
+	KELVIN(R.string.temperature_unit_kelvin_symbol) {
+		@Override
+		public float fromCelsius(float temperatureInCelsius) {
+			return temperatureInCelsius + 273.15f;
+		}
+	};
+
+	//The resource id of the symbol of the unit
+	private final int mSymbolResourceId;
+
+	private TemperatureUnit(int symbolResourceId) {
+		mSymbolResourceId = symbolResourceId;
+	}
+
+	/**
+	 * Convert {@code temperatureInCelsius} to this unit.
+	 *
+	 * @param temperatureInCelsius the temperature value in Celsius
+	 * @return the temperature value in this unit
+	 */
+	public abstract float fromCelsius(float temperatureInCelsius);
+
+	/**
+	 * Convert the first {@code count} temperatures of {@code temperaturesInCelsius} to this unit.
+	 *
+	 * @param temperaturesInCelsius the temperature values in Celsius
+	 * @param count                 the number of temperatures to convert
+	 * @param temperatures          the array receiving the converted values, may be {@code temperaturesInCelsius}
+	 */
+	public void fromCelsius(float[] temperaturesInCelsius, int count, float[] temperatures) {
+		for (int i = 0; i < count; i++) {
+			temperatures[i] = fromCelsius(temperaturesInCelsius[i]);
+		}
+	}
+
+	/**
+	 * Return the symbol of this unit.
+	 *
+	 * @param context the {@link android.content.Context} for getting the string
+	 * @return the symbol of this unit
+	 */
+	public String getSymbol(Context context) {
+		return context.getString(mSymbolResourceId);
+	}
+
+	/**
+	 * Return the unit of {@code temperatureUnit}, as stored in the preferences.
+	 *
+	 * @param context         the {@link android.content.Context} for getting the symbols
+	 * @param temperatureUnit the symbol of a unit
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.utils.TemperatureUnit}, {@link #CELSIUS} if unknown
+	 */
+	public static TemperatureUnit fromSymbol(Context context, String temperatureUnit) {
+		return fromSymbol(temperatureUnit, FAHRENHEIT.getSymbol(context), KELVIN.getSymbol(context));
+	}
+
+	/**
+	 * Return the unit of {@code temperatureUnit}.
+	 * <p/>
+	 * Nothing is read from the Android framework so that it can be run on a plain JVM.
+	 *
+	 * @param temperatureUnit  the symbol of a unit
+	 * @param fahrenheitSymbol the symbol of the Fahrenheit unit
+	 * @param kelvinSymbol     the symbol of the Kelvin unit
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.utils.TemperatureUnit}, {@link #CELSIUS} if unknown
+	 */
+	public static TemperatureUnit fromSymbol(String temperatureUnit, String fahrenheitSymbol, String kelvinSymbol) {
+		if (temperatureUnit.equals(fahrenheitSymbol)) {
+			return FAHRENHEIT;
+		} else if (temperatureUnit.equals(kelvinSymbol)) {
+			return KELVIN;
+		}
+		return CELSIUS;
+	}
+}
@@ -0,0 +1,154 @@
+package fr.tvbarthel.apps.simplethermometer.widget;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import fr.tvbarthel.apps.simplethermometer.RefreshScheduler;
+import fr.tvbarthel.apps.simplethermometer.utils.ConnectivityUtils;
+
+/**
+ * Decide which connectivity changes are worth an update of the Simple Thermometer Widgets.
+ * <p/>
+ * A flapping network sends a burst of {@link android.net.ConnectivityManager#CONNECTIVITY_ACTION}.
+ * A change only lets an update through when the network is connected, the temperature is due
+ * according to the {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler}, the last update let through
+ * is older than {@link #MIN_SPACING_IN_MILLIS} and a token is left in the bucket.
+ * The bucket holds {@link #BUCKET_CAPACITY} tokens and gets a new one every {@link #TOKEN_INTERVAL_IN_MILLIS}.
+ * <p/>
+ * Must be used from the main thread.
+ */
+public class ConnectivityGate {
+
+	//min time between two updates let through (in Millis)
+	public static final long MIN_SPACING_IN_MILLIS = 60000;
+	//max number of tokens in the bucket
+	public static final int BUCKET_CAPACITY = 3;
+	//time to get a new token (in Millis)
+	public static final long TOKEN_INTERVAL_IN_MILLIS = 900000;
+
+	private static ConnectivityGate sInstance;
+
+	//number of tokens left in the bucket
+	private int mTokens;
+	//time of the last token added to the bucket, since the boot (in Millis)
+	private long mLastRefillTime;
+	//time of the last update let through, since the boot (in Millis)
+	private long mLastPassTime;
+
+	/*
+		Counters
+	 */
+
+	//number of connectivity changes received
+	private int mEventCount;
+	//number of changes ignored because the network is not connected
+	private int mDisconnectedCount;
+	//number of changes ignored because the temperature is not due
+	private int mFreshCount;
+	//number of changes ignored by the spacing or the bucket
+	private int mRateLimitedCount;
+	//number of changes which let an update through
+	private int mPassedCount;
+
+	/**
+	 * Return the shared instance of the gate.
+	 *
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.widget.ConnectivityGate}
+	 */
+	public static ConnectivityGate getInstance() {
+		if (sInstance == null) {
+			sInstance = new ConnectivityGate();
+		}
+		return sInstance;
+	}
+
+	private ConnectivityGate() {
+		mTokens = BUCKET_CAPACITY;
+		mLastRefillTime = SystemClock.elapsedRealtime();
+		mLastPassTime = -MIN_SPACING_IN_MILLIS;
+	}
+
+	/**
+	 * Count a connectivity change and check if it should update the widgets.
+	 *
+	 * @param context the {@link android.content.Context} used to check the network and the scheduler
+	 * @return true if the widgets should be updated, false if the change is ignored.
+	 */
+	public boolean onConnectivityChanged(Context context) {
+		mEventCount++;
+		if (!ConnectivityUtils.isNetworkConnected(context)) {
+			mDisconnectedCount++;
+			return false;
+		}
+		if (!RefreshScheduler.getInstance(context).isRefreshDue(System.currentTimeMillis())) {
+			//the widgets already show a fresh temperature
+			mFreshCount++;
+			return false;
+		}
+
+		final long now = SystemClock.elapsedRealtime();
+		refill(now);
+		if (now - mLastPassTime < MIN_SPACING_IN_MILLIS || mTokens == 0) {
+			mRateLimitedCount++;
+			return false;
+		}
+		mTokens--;
+		mLastPassTime = now;
+		mPassedCount++;
+		return true;
+	}
+
+	/**
+	 * @return the number of connectivity changes received since the start of the application
+	 */
+	public int getEventCount() {
+		return mEventCount;
+	}
+
+	/**
+	 * @return the number of connectivity changes ignored because the network was not connected
+	 */
+	public int getDisconnectedCount() {
+		return mDisconnectedCount;
+	}
+
+	/**
+	 * @return the number of connectivity changes ignored because the temperature was not due
+	 */
+	public int getFreshCount() {
+		return mFreshCount;
+	}
+
+	/**
+	 * @return the number of connectivity changes ignored by the spacing or the token bucket
+	 */
+	public int getRateLimitedCount() {
+		return mRateLimitedCount;
+	}
+
+	/**
+	 * @return the number of connectivity changes which updated the widgets
+	 */
+	public int getPassedCount() {
+		return mPassedCount;
+	}
+
+	/*
+		Private Methods
+	 */
+
+	/**
+	 * Add the tokens earned since the last refill.
+	 */
+	private void refill(long now) {
+		final long earned = (now - mLastRefillTime) / TOKEN_INTERVAL_IN_MILLIS;
+		if (earned > 0) {
+			mTokens = (int) Math.min(BUCKET_CAPACITY, mTokens + earned);
+			mLastRefillTime += earned * TOKEN_INTERVAL_IN_MILLIS;
+		}
+		if (mTokens == BUCKET_CAPACITY) {
+			//a full bucket does not save the time spent full
+			mLastRefillTime = now;
+		}
+	}
+}
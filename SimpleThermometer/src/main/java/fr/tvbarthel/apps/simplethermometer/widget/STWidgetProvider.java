@@ -1,20 +1,23 @@
 package fr.tvbarthel.apps.simplethermometer.widget;
 
+import android.app.AlarmManager;
+import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
-import android.preference.PreferenceManager;
 
-import fr.tvbarthel.apps.simplethermometer.TemperatureLoader;
+import fr.tvbarthel.apps.simplethermometer.RefreshScheduler;
 import fr.tvbarthel.apps.simplethermometer.utils.ConnectivityUtils;
 
 /**
  * An {@link android.appwidget.AppWidgetProvider} used to update the
  * Simple Thermometer Widgets
+ * <p/>
+ * The temperature is reloaded when the {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler}
+ * says so, an alarm is set at the time of the next update.
  */
 public class STWidgetProvider extends AppWidgetProvider {
 
@@ -22,6 +25,12 @@ public class STWidgetProvider extends AppWidgetProvider {
 	// temperature unit etc.
 	public static final String APPWIDGET_DATA_CHANGED =
 			"fr.vbarthel.apps.simplethermometer.widget.STWidgetProvider.DataChanged";
+	//An int extra of APPWIDGET_DATA_CHANGED holding the changed fields,
+	// see the FIELD_* flags of WidgetUpdateDispatcher
+	public static final String EXTRA_CHANGED_FIELDS = "ExtraChangedFields";
+	//An intent Action used by the alarm set at the time of the next update
+	public static final String APPWIDGET_REFRESH =
+			"fr.vbarthel.apps.simplethermometer.widget.STWidgetProvider.Refresh";
 
 	/*
 		AppWidgetProvider overrides
@@ -29,7 +38,9 @@ public class STWidgetProvider extends AppWidgetProvider {
 	@Override
 	public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
 		super.onUpdate(context, appWidgetManager, appWidgetIds);
-		updateAppWidgets(context, appWidgetIds);
+		//the widgets may have been reset by the host, every view is set again
+		STWidgetUpdateService.forgetRenderedStates(appWidgetIds);
+		updateAppWidgets(context, appWidgetIds, true, WidgetUpdateDispatcher.FIELD_ALL);
 	}
 
 	@Override
@@ -37,14 +48,22 @@ public class STWidgetProvider extends AppWidgetProvider {
 		super.onReceive(context, intent);
 		final String action = intent.getAction();
 		boolean needAnUpdate = false;
+		boolean reloadAllowed = true;
+		int changedFields = WidgetUpdateDispatcher.FIELD_ALL;
 
 		if (STWidgetProvider.APPWIDGET_DATA_CHANGED.equals(action)) {
 			//if a data changed, an update is needed.
 			needAnUpdate = true;
-		} else if (ConnectivityManager.CONNECTIVITY_ACTION.equals(action) && ConnectivityUtils.isNetworkConnected(context)) {
-			//if the temperature is outdated and there is a network connection
-			//an update is needed.
+			//the changes sent by the application only have to be displayed, the application loads the temperature itself
+			reloadAllowed = !intent.hasExtra(EXTRA_CHANGED_FIELDS);
+			changedFields = intent.getIntExtra(EXTRA_CHANGED_FIELDS, WidgetUpdateDispatcher.FIELD_ALL);
+		} else if (STWidgetProvider.APPWIDGET_REFRESH.equals(action)) {
+			//the time of the next update has come
 			needAnUpdate = true;
+		} else if (ConnectivityManager.CONNECTIVITY_ACTION.equals(action)) {
+			//if the temperature is outdated and there is a network connection
+			//an update is needed, the bursts of changes are let through once.
+			needAnUpdate = ConnectivityGate.getInstance().onConnectivityChanged(context);
 		}
 
 		if (needAnUpdate) {
@@ -54,33 +73,80 @@ public class STWidgetProvider extends AppWidgetProvider {
 			final int[] allWidgetIds = appWidgetManager.getAppWidgetIds(thisWidget);
 
 			//Update the Simple Thermometer Widgets
-			updateAppWidgets(context, allWidgetIds);
+			updateAppWidgets(context, allWidgetIds, reloadAllowed, changedFields);
 		}
 	}
 
+	@Override
+	public void onDeleted(Context context, int[] appWidgetIds) {
+		super.onDeleted(context, appWidgetIds);
+		STWidgetUpdateService.forgetRenderedStates(appWidgetIds);
+	}
+
+	@Override
+	public void onDisabled(Context context) {
+		super.onDisabled(context);
+		//there is no widget left to update
+		final AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		alarmManager.cancel(getRefreshPendingIntent(context));
+	}
+
+	/*
+		Public Methods
+	 */
+
+	/**
+	 * Set an alarm at the time of the next update chosen by the
+	 * {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler}.
+	 * The alarm does not wake the device up, it goes off when the device is used again.
+	 *
+	 * @param context context
+	 */
+	public static void scheduleNextRefresh(Context context) {
+		final long nextRefreshTime = RefreshScheduler.getInstance(context)
+				.getNextRefreshTime(System.currentTimeMillis());
+		final AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		alarmManager.set(AlarmManager.RTC, nextRefreshTime, getRefreshPendingIntent(context));
+	}
+
 	/*
 		Private Methods
 	 */
 
+	/**
+	 * Return the {@link android.app.PendingIntent} broadcast by the alarm of the next update
+	 *
+	 * @param context context
+	 */
+	private static PendingIntent getRefreshPendingIntent(Context context) {
+		final Intent intent = new Intent(context.getApplicationContext(), STWidgetProvider.class);
+		intent.setAction(APPWIDGET_REFRESH);
+		return PendingIntent.getBroadcast(context.getApplicationContext(), 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+	}
+
 	/**
 	 * Update the Simple Thermometer Widgets by starting a {@link fr.tvbarthel.apps.simplethermometer.widget.STWidgetUpdateService}
 	 *
-	 * @param context      context
-	 * @param appWidgetIds widget ids
+	 * @param context       context
+	 * @param appWidgetIds  widget ids
+	 * @param reloadAllowed true if the temperature may be reloaded, false to only display the stored values
+	 * @param changedFields the fields to display again, see the FIELD_* flags of WidgetUpdateDispatcher
 	 */
-	private void updateAppWidgets(Context context, int[] appWidgetIds) {
-		//Check if the temperature is outdated
-		boolean reloadTemperature = false;
-		SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
-		if (TemperatureLoader.isTemperatureOutdated(defaultSharedPreferences,
-				TemperatureLoader.UPDATE_INTERVAL_IN_MILLIS)) {
-			reloadTemperature = true;
+	private void updateAppWidgets(Context context, int[] appWidgetIds, boolean reloadAllowed, int changedFields) {
+		//Check if an update is due, without a network connection the update waits for the connectivity change
+		final boolean reloadTemperature = reloadAllowed && ConnectivityUtils.isNetworkConnected(context)
+				&& RefreshScheduler.getInstance(context).isRefreshDue(System.currentTimeMillis());
+		if (!reloadTemperature) {
+			//the update service sets the alarm once the temperature is reloaded
+			scheduleNextRefresh(context);
 		}
 
 		//Build an intent to start the update service
 		final Intent intent = new Intent(context.getApplicationContext(), STWidgetUpdateService.class);
 		intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, appWidgetIds);
 		intent.putExtra(STWidgetUpdateService.EXTRA_RELOAD_TEMPERATURE, reloadTemperature);
+		//a reload may change the temperature and the weather
+		intent.putExtra(STWidgetUpdateService.EXTRA_CHANGED_FIELDS, reloadTemperature ? WidgetUpdateDispatcher.FIELD_ALL : changedFields);
 		context.startService(intent);
 	}
 
@@ -5,45 +5,150 @@ import android.app.Service;
 import android.appwidget.AppWidgetManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Build;
 import android.os.IBinder;
-import android.preference.PreferenceManager;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.View;
 import android.widget.RemoteViews;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import fr.tvbarthel.apps.simplethermometer.MainActivity;
 import fr.tvbarthel.apps.simplethermometer.R;
 import fr.tvbarthel.apps.simplethermometer.TemperatureLoader;
-import fr.tvbarthel.apps.simplethermometer.utils.PreferenceUtils;
+import fr.tvbarthel.apps.simplethermometer.history.HistoryWriter;
+import fr.tvbarthel.apps.simplethermometer.history.RecentReadings;
+import fr.tvbarthel.apps.simplethermometer.utils.DisplayState;
+import fr.tvbarthel.apps.simplethermometer.utils.SparklineRenderer;
 
 /**
  * A {@link android.app.Service} used by the {@link fr.tvbarthel.apps.simplethermometer.widget.STWidgetProvider}
  * to update the Simple Thermometer Widgets.
+ * <p/>
+ * The start requests are queued: the widget ids of the pending requests are merged, and so are their
+ * reload flags. At most one temperature loader runs at a time, a reload asked while the temperature is loading
+ * is served by the running load. The widgets are updated once the load ends, and the service stops once
+ * the queue is drained.
+ * <p/>
+ * A request tells which fields have changed, see {@link #EXTRA_CHANGED_FIELDS}. The widgets whose rendered
+ * state is known only read and compare these fields, the trend of the temperature is not drawn again
+ * when only the colors of the background or of the icons have changed.
+ * <p/>
+ * The number of renders, and the counters of the {@link fr.tvbarthel.apps.simplethermometer.widget.WidgetUpdateDispatcher}
+ * and of the {@link fr.tvbarthel.apps.simplethermometer.widget.ConnectivityGate}, are logged after each update
+ * when the debug logs of {@link #TAG} are enabled: adb shell setprop log.tag.STWidgetUpdateService DEBUG
  */
 public class STWidgetUpdateService extends Service implements TemperatureLoader.Listener {
 
 	public static final String EXTRA_RELOAD_TEMPERATURE = "ExtraReloadTemperature";
+	//An int extra holding the fields to display again, see the FIELD_* flags of WidgetUpdateDispatcher
+	//every field is displayed again if it is missing
+	public static final String EXTRA_CHANGED_FIELDS = "ExtraChangedFields";
+
+	private static final String TAG = "STWidgetUpdateService";
+	//the fields whose changes come with new readings, drawn by the sparkline
+	private static final int READING_FIELDS = WidgetUpdateDispatcher.FIELD_TEMPERATURE
+			| WidgetUpdateDispatcher.FIELD_WEATHER;
 
 	//The instance of the AppWidgetManager
 	private AppWidgetManager mAppWidgetManager;
-	//The Simple Thermometer Widget Ids
-	private int[] mAllWidgetIds;
+	//The loader of the temperature, a single one runs at a time
+	private TemperatureLoader mTemperatureLoader;
+	//true while the temperature is loading
+	private boolean mLoading;
+	//The Simple Thermometer Widget Ids waiting for an update
+	private final Set<Integer> mPendingWidgetIds = new LinkedHashSet<Integer>();
+	//true if a pending request asked for a new temperature
+	private boolean mPendingReload;
+	//The fields changed according to the pending requests
+	private int mPendingFields;
+	//The id of the last start request
+	private int mLastStartId;
+	//true once the service is being destroyed
+	private boolean mDestroyed;
+	//The trend of the recent temperatures drawn for the current update
+	private Bitmap mSparkline;
+	//true once the trend has been drawn for the current update
+	private boolean mSparklineRendered;
+	//The color of the line of mSparkline
+	private int mSparklineColor;
+
+	//The state rendered by each widget, by widget id
+	private static final SparseArray<WidgetState> sRenderedStates = new SparseArray<WidgetState>();
+	//number of widget renders since the start of the application: whole, changes only, and skipped
+	private static int sFullRenderCount;
+	private static int sPartialRenderCount;
+	private static int sSkippedRenderCount;
+
+	/**
+	 * Forget the state rendered by the widgets {@code appWidgetIds},
+	 * their next update sets every view.
+	 *
+	 * @param appWidgetIds widget ids
+	 */
+	public static void forgetRenderedStates(int[] appWidgetIds) {
+		for (int widgetId : appWidgetIds) {
+			sRenderedStates.delete(widgetId);
+		}
+	}
+
+	/**
+	 * @return the number of widgets whose every view has been set since the start of the application
+	 */
+	public static int getFullRenderCount() {
+		return sFullRenderCount;
+	}
+
+	/**
+	 * @return the number of widgets which got their changed views only since the start of the application
+	 */
+	public static int getPartialRenderCount() {
+		return sPartialRenderCount;
+	}
+
+	/**
+	 * @return the number of widget renders skipped because nothing visible had changed
+	 */
+	public static int getSkippedRenderCount() {
+		return sSkippedRenderCount;
+	}
 
 	/*
 		Service overrides
 	 */
 	@Override
-	public int onStartCommand(Intent intent, int flags, int startId) {
+	public void onCreate() {
+		super.onCreate();
 		mAppWidgetManager = AppWidgetManager.getInstance(this.getApplicationContext());
-		mAllWidgetIds = intent.getIntArrayExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS);
+		mTemperatureLoader = new TemperatureLoader(this, getApplicationContext());
+	}
 
-		//Check if the temperature has to be reloaded
-		if (intent.getBooleanExtra(EXTRA_RELOAD_TEMPERATURE, false)) {
-			//start a temperature loader
-			new TemperatureLoader(this, getApplicationContext()).start();
-		} else {
-			//finalize the update
-			finalizeUpdateRequest();
+	@Override
+	public int onStartCommand(Intent intent, int flags, int startId) {
+		mLastStartId = startId;
+		if (intent != null) {
+			//Merge the request with the pending ones
+			final int[] appWidgetIds = intent.getIntArrayExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS);
+			if (appWidgetIds != null) {
+				for (int widgetId : appWidgetIds) {
+					mPendingWidgetIds.add(widgetId);
+				}
+			}
+			mPendingFields |= intent.getIntExtra(EXTRA_CHANGED_FIELDS, WidgetUpdateDispatcher.FIELD_ALL);
+			//a reload asked during a load is served by the running load
+			if (!mLoading && intent.getBooleanExtra(EXTRA_RELOAD_TEMPERATURE, false)) {
+				mPendingReload = true;
+			}
 		}
+		processQueue();
 
 		//Try to avoid a null intent, got a NullPointerException in a report crash. Dunno the reason :s
 		return START_REDELIVER_INTENT;
@@ -54,50 +159,294 @@ public class STWidgetUpdateService extends Service implements TemperatureLoader.
 		return null;
 	}
 
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		//Stop waiting for the temperature, the cancellation must not update the widgets anymore
+		mDestroyed = true;
+		mTemperatureLoader.pause();
+		//Write the pending observations right away, the process may be killed in the background
+		HistoryWriter.getInstance(this).flush();
+	}
+
 	/*
 		Private Methods
 	 */
 
 	/**
 	 * Update the app widgets according to the stored parameters.
+	 * <p/>
+	 * The widgets already showing the stored parameters are skipped. The others get a single
+	 * {@link android.widget.RemoteViews} for all of them: the changes only for the widgets whose
+	 * rendered state is known, when the partial updates are supported, the whole widget otherwise.
+	 * Before Jelly Bean MR1 the AppWidgetService does not merge the partial updates in the views it caches,
+	 * a restarted host would show the last whole update while the rendered state is the last partial one,
+	 * so only whole updates are sent.
+	 *
+	 * @param appWidgetIds  widget ids
+	 * @param changedFields the fields to display again, the other ones are left as rendered
 	 */
-	private void updateAppWidgets() {
-		//Retrieve the stored values
-		final Context context = getApplicationContext();
-		final SharedPreferences defaultSharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
-		final String temperature = PreferenceUtils.getTemperatureAsString(context, defaultSharedPreferences);
-		final int textColor = PreferenceUtils.getTextColor(context, defaultSharedPreferences);
-		final int backgroundColor = PreferenceUtils.getBackgroundColor(context, defaultSharedPreferences);
-		final int iconColor = PreferenceUtils.getIconColor(context, defaultSharedPreferences);
-
-		//Update all the app widgets
-		for (int widgetId : mAllWidgetIds) {
-			final RemoteViews remoteViews = new RemoteViews(context.getPackageName(), R.layout.widget);
-
-			//Use the stored values to update the app widget
-			remoteViews.setTextViewText(R.id.widget_temperature, temperature);
-			remoteViews.setTextColor(R.id.widget_temperature, textColor);
-			remoteViews.setInt(R.id.widget_root_layout, "setBackgroundColor", backgroundColor);
-			remoteViews.setInt(R.id.widget_fair_icon, "setColorFilter", iconColor);
-			remoteViews.setInt(R.id.widget_storm_icon, "setColorFilter", iconColor);
+	private void updateAppWidgets(int[] appWidgetIds, int changedFields) {
+		//Retrieve the displayed values
+		final DisplayState displayState = DisplayState.get(getApplicationContext());
+
+		//Sort the widgets by the state they have to render and by the state they are rendering
+		final boolean partialUpdateSupported = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1;
+		final Map<WidgetState, WidgetState> statesToRender = new HashMap<WidgetState, WidgetState>();
+		WidgetState unknownStateToRender = null;
+		final Map<WidgetState, List<Integer>> fullUpdateIds = new HashMap<WidgetState, List<Integer>>();
+		final Map<WidgetState, List<Integer>> partialUpdateIds = new HashMap<WidgetState, List<Integer>>();
+		for (int widgetId : appWidgetIds) {
+			final WidgetState renderedState = sRenderedStates.get(widgetId);
+			final WidgetState state;
+			if (renderedState == null) {
+				//every field is unknown
+				if (unknownStateToRender == null) {
+					unknownStateToRender = buildState(displayState, WidgetUpdateDispatcher.FIELD_ALL, null);
+				}
+				state = unknownStateToRender;
+			} else {
+				//the widgets rendering the same state render the same changes
+				WidgetState stateToRender = statesToRender.get(renderedState);
+				if (stateToRender == null) {
+					stateToRender = buildState(displayState, changedFields, renderedState);
+					statesToRender.put(renderedState, stateToRender);
+				}
+				state = stateToRender;
+			}
 
+			if (state.equals(renderedState)) {
+				//nothing visible has changed
+				sSkippedRenderCount++;
+				continue;
+			}
+			if (renderedState == null || !partialUpdateSupported) {
+				addWidgetId(fullUpdateIds, state, widgetId);
+				sFullRenderCount++;
+			} else {
+				addWidgetId(partialUpdateIds, renderedState, widgetId);
+				sPartialRenderCount++;
+			}
+			sRenderedStates.put(widgetId, state);
+		}
+
+		//the trend of the recent temperatures is drawn at most once per color
+		mSparkline = null;
+		mSparklineRendered = false;
+
+		if (!fullUpdateIds.isEmpty()) {
 			//Add a clickIntent on the app widget
 			//This Intent will launch the SimpleThermometer Application
-			final Intent clickIntent = new Intent(getApplicationContext(), MainActivity.class);
-			final PendingIntent pendingIntent = PendingIntent.getActivity(getApplicationContext(), 0, clickIntent, PendingIntent.FLAG_UPDATE_CURRENT);
-			remoteViews.setOnClickPendingIntent(R.id.widget_root_layout, pendingIntent);
+			final Context context = getApplicationContext();
+			final Intent clickIntent = new Intent(context, MainActivity.class);
+			final PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, clickIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+			for (Map.Entry<WidgetState, List<Integer>> entry : fullUpdateIds.entrySet()) {
+				final RemoteViews remoteViews = buildRemoteViews(entry.getKey(), null);
+				remoteViews.setOnClickPendingIntent(R.id.widget_root_layout, pendingIntent);
+
+				//Update the app widgets
+				mAppWidgetManager.updateAppWidget(toArray(entry.getValue()), remoteViews);
+			}
+		}
+
+		for (Map.Entry<WidgetState, List<Integer>> entry : partialUpdateIds.entrySet()) {
+			//Send the changes only
+			mAppWidgetManager.partiallyUpdateAppWidget(toArray(entry.getValue()),
+					buildRemoteViews(statesToRender.get(entry.getKey()), entry.getKey()));
+		}
+	}
+
+	/**
+	 * Build the state to render by a widget rendering {@code renderedState}.
+	 *
+	 * @param displayState  the displayed values
+	 * @param changedFields the fields read from {@code displayState}, the other ones are copied from {@code renderedState}
+	 * @param renderedState the state currently rendered, null to read every field
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.widget.STWidgetUpdateService.WidgetState} to render
+	 */
+	private WidgetState buildState(DisplayState displayState, int changedFields, WidgetState renderedState) {
+		final int fields = renderedState == null ? WidgetUpdateDispatcher.FIELD_ALL : changedFields;
+
+		final String temperature = (fields & WidgetUpdateDispatcher.FIELD_TEMPERATURE) != 0
+				? displayState.getTemperature() : renderedState.mTemperature;
+		final int textColor = (fields & WidgetUpdateDispatcher.FIELD_TEXT_COLOR) != 0
+				? displayState.getTextColor() : renderedState.mTextColor;
+		final int backgroundColor = (fields & WidgetUpdateDispatcher.FIELD_BACKGROUND_COLOR) != 0
+				? displayState.getBackgroundColor() : renderedState.mBackgroundColor;
+		final int iconColor = (fields & WidgetUpdateDispatcher.FIELD_ICON_COLOR) != 0
+				? displayState.getIconColor() : renderedState.mIconColor;
+
+		final int fairIconAlpha;
+		final int stormIconAlpha;
+		if ((fields & WidgetUpdateDispatcher.FIELD_WEATHER) != 0) {
+			//the fair icon stands for the fair and changing weathers, the storm icon for the rain and the storms
+			fairIconAlpha = Math.max(displayState.getWeatherIconAlpha(DisplayState.WEATHER_ICON_FAIR),
+					displayState.getWeatherIconAlpha(DisplayState.WEATHER_ICON_CHANGE));
+			stormIconAlpha = Math.max(displayState.getWeatherIconAlpha(DisplayState.WEATHER_ICON_RAIN),
+					displayState.getWeatherIconAlpha(DisplayState.WEATHER_ICON_STORM));
+		} else {
+			fairIconAlpha = renderedState.mFairIconAlpha;
+			stormIconAlpha = renderedState.mStormIconAlpha;
+		}
+
+		//the readings only change with the temperature and the weather
+		final long readingCount = (fields & READING_FIELDS) != 0
+				? RecentReadings.getInstance(getApplicationContext()).getAppendCount() : renderedState.mReadingCount;
 
-			//Update the app widget
-			mAppWidgetManager.updateAppWidget(widgetId, remoteViews);
+		return new WidgetState(temperature, textColor, backgroundColor, iconColor, fairIconAlpha, stormIconAlpha,
+				readingCount);
+	}
+
+	private static void addWidgetId(Map<WidgetState, List<Integer>> widgetIdsByState, WidgetState state, int widgetId) {
+		List<Integer> widgetIds = widgetIdsByState.get(state);
+		if (widgetIds == null) {
+			widgetIds = new ArrayList<Integer>();
+			widgetIdsByState.put(state, widgetIds);
+		}
+		widgetIds.add(widgetId);
+	}
+
+	/**
+	 * Build the {@link android.widget.RemoteViews} turning widgets rendering {@code renderedState} into widgets
+	 * rendering {@code state}.
+	 *
+	 * @param state         the state to render
+	 * @param renderedState the state currently rendered, null to set every view
+	 * @return the {@link android.widget.RemoteViews}
+	 */
+	private RemoteViews buildRemoteViews(WidgetState state, WidgetState renderedState) {
+		final RemoteViews remoteViews = new RemoteViews(getPackageName(), R.layout.widget);
+		final boolean full = renderedState == null;
+
+		//Use the stored values to update the app widget
+		if (full || !state.mTemperature.equals(renderedState.mTemperature)) {
+			remoteViews.setTextViewText(R.id.widget_temperature, state.mTemperature);
+		}
+		if (full || state.mTextColor != renderedState.mTextColor) {
+			remoteViews.setTextColor(R.id.widget_temperature, state.mTextColor);
+		}
+		if (full || state.mBackgroundColor != renderedState.mBackgroundColor) {
+			remoteViews.setInt(R.id.widget_root_layout, "setBackgroundColor", state.mBackgroundColor);
+		}
+		if (full || state.mIconColor != renderedState.mIconColor) {
+			remoteViews.setInt(R.id.widget_fair_icon, "setColorFilter", state.mIconColor);
+			remoteViews.setInt(R.id.widget_storm_icon, "setColorFilter", state.mIconColor);
+		}
+		if (full || state.mFairIconAlpha != renderedState.mFairIconAlpha) {
+			remoteViews.setInt(R.id.widget_fair_icon, "setAlpha", state.mFairIconAlpha);
+		}
+		if (full || state.mStormIconAlpha != renderedState.mStormIconAlpha) {
+			remoteViews.setInt(R.id.widget_storm_icon, "setAlpha", state.mStormIconAlpha);
+		}
+		//the sparkline is drawn with the text color
+		if (full || state.mReadingCount != renderedState.mReadingCount || state.mTextColor != renderedState.mTextColor) {
+			final Bitmap sparkline = getSparkline(state.mTextColor);
+			if (sparkline == null) {
+				remoteViews.setViewVisibility(R.id.widget_sparkline, View.GONE);
+			} else {
+				remoteViews.setImageViewBitmap(R.id.widget_sparkline, sparkline);
+				remoteViews.setViewVisibility(R.id.widget_sparkline, View.VISIBLE);
+			}
+		}
+		return remoteViews;
+	}
+
+	/**
+	 * Return the trend of the recent temperatures, drawn the first time it is asked for.
+	 *
+	 * @param color the color of the line
+	 * @return the {@link android.graphics.Bitmap} of the sparkline, null until two temperatures are known
+	 */
+	private Bitmap getSparkline(int color) {
+		if (!mSparklineRendered || mSparklineColor != color) {
+			final Context context = getApplicationContext();
+			final Resources resources = context.getResources();
+			mSparkline = SparklineRenderer.render(RecentReadings.getInstance(context),
+					resources.getDimensionPixelSize(R.dimen.widget_sparkline_width),
+					resources.getDimensionPixelSize(R.dimen.widget_sparkline_height),
+					resources.getDimension(R.dimen.sparkline_stroke_width),
+					color);
+			mSparklineRendered = true;
+			mSparklineColor = color;
+		}
+		return mSparkline;
+	}
+
+	private static int[] toArray(List<Integer> widgetIds) {
+		final int[] array = new int[widgetIds.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = widgetIds.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Serve the pending requests: load the temperature if asked, then update the pending widgets
+	 * and stop the service.
+	 */
+	private void processQueue() {
+		if (mDestroyed) {
+			//the service is going away, the next start serves its own requests
+			return;
+		}
+		if (mLoading) {
+			//the pending widgets are updated at the end of the load
+			return;
+		}
+		if (mPendingReload) {
+			//start the temperature loader, it may answer right away
+			mPendingReload = false;
+			mLoading = true;
+			mTemperatureLoader.start();
+			return;
 		}
+
+		//the queue is drained
+		final int[] appWidgetIds = new int[mPendingWidgetIds.size()];
+		int i = 0;
+		for (Integer widgetId : mPendingWidgetIds) {
+			appWidgetIds[i++] = widgetId;
+		}
+		final int changedFields = mPendingFields;
+		mPendingWidgetIds.clear();
+		mPendingFields = 0;
+		updateAppWidgets(appWidgetIds, changedFields);
+		logCounters();
+		//Set the alarm of the next update
+		STWidgetProvider.scheduleNextRefresh(getApplicationContext());
+		//a request received since the last one has its own processing
+		stopSelf(mLastStartId);
 	}
 
 	/**
-	 * Finalize the Update Request
+	 * Log the number of renders, of the broadcasts saved by the coalescing
+	 * and of the connectivity changes ignored, if the debug logs are enabled.
 	 */
-	private void finalizeUpdateRequest() {
-		updateAppWidgets();
-		stopSelf();
+	private void logCounters() {
+		if (!Log.isLoggable(TAG, Log.DEBUG)) {
+			return;
+		}
+		final WidgetUpdateDispatcher dispatcher = WidgetUpdateDispatcher.getInstance(this);
+		final ConnectivityGate connectivityGate = ConnectivityGate.getInstance();
+		Log.d(TAG, "renders: full " + sFullRenderCount + ", partial " + sPartialRenderCount
+				+ ", skipped " + sSkippedRenderCount);
+		Log.d(TAG, "data changes: notified " + dispatcher.getNotificationCount()
+				+ ", broadcast " + dispatcher.getBroadcastCount()
+				+ ", saved " + dispatcher.getSavedBroadcastCount());
+		Log.d(TAG, "connectivity changes: received " + connectivityGate.getEventCount()
+				+ ", disconnected " + connectivityGate.getDisconnectedCount()
+				+ ", fresh " + connectivityGate.getFreshCount()
+				+ ", rate limited " + connectivityGate.getRateLimitedCount()
+				+ ", passed " + connectivityGate.getPassedCount());
+	}
+
+	/**
+	 * End the running load and serve the requests received meanwhile.
+	 */
+	private void onLoadingEnded() {
+		mLoading = false;
+		processQueue();
 	}
 
 	/*
@@ -106,21 +455,76 @@ public class STWidgetUpdateService extends Service implements TemperatureLoader.
 
 	@Override
 	public void onTemperatureLoadingSuccess() {
-		finalizeUpdateRequest();
+		onLoadingEnded();
 	}
 
 	@Override
 	public void onTemperatureLoadingProgress(int progress) {
-		finalizeUpdateRequest();
+		//the widgets are updated at the end of the load
 	}
 
 	@Override
 	public void onTemperatureLoadingFail(int stringResourceId) {
-		finalizeUpdateRequest();
+		onLoadingEnded();
 	}
 
 	@Override
 	public void onTemperatureLoadingCancelled() {
-		finalizeUpdateRequest();
+		onLoadingEnded();
+	}
+
+	/**
+	 * The values rendered by a widget
+	 */
+	private static final class WidgetState {
+		private final String mTemperature;
+		private final int mTextColor;
+		private final int mBackgroundColor;
+		private final int mIconColor;
+		private final int mFairIconAlpha;
+		private final int mStormIconAlpha;
+		//number of readings drawn by the sparkline, see RecentReadings#getAppendCount()
+		private final long mReadingCount;
+
+		private WidgetState(String temperature, int textColor, int backgroundColor, int iconColor,
+							int fairIconAlpha, int stormIconAlpha, long readingCount) {
+			mTemperature = temperature;
+			mTextColor = textColor;
+			mBackgroundColor = backgroundColor;
+			mIconColor = iconColor;
+			mFairIconAlpha = fairIconAlpha;
+			mStormIconAlpha = stormIconAlpha;
+			mReadingCount = readingCount;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof WidgetState)) {
+				return false;
+			}
+			final WidgetState other = (WidgetState) o;
+			return mTextColor == other.mTextColor
+					&& mBackgroundColor == other.mBackgroundColor
+					&& mIconColor == other.mIconColor
+					&& mFairIconAlpha == other.mFairIconAlpha
+					&& mStormIconAlpha == other.mStormIconAlpha
+					&& mReadingCount == other.mReadingCount
+					&& mTemperature.equals(other.mTemperature);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = mTemperature.hashCode();
+			result = 31 * result + mTextColor;
+			result = 31 * result + mBackgroundColor;
+			result = 31 * result + mIconColor;
+			result = 31 * result + mFairIconAlpha;
+			result = 31 * result + mStormIconAlpha;
+			result = 31 * result + (int) (mReadingCount ^ (mReadingCount >>> 32));
+			return result;
+		}
 	}
 }
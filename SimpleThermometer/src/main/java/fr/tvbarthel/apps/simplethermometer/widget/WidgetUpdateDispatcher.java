@@ -0,0 +1,126 @@
+package fr.tvbarthel.apps.simplethermometer.widget;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+/**
+ * Gather the changes of the displayed values and notify the Simple Thermometer Widgets once.
+ * <p/>
+ * A change of a preference used to send its own {@link STWidgetProvider#APPWIDGET_DATA_CHANGED} broadcast,
+ * and each broadcast re-renders every widget. A new temperature changes several preferences at once.
+ * The changes notified during {@link #COALESCING_DELAY_IN_MILLIS} after the first one are now sent
+ * as a single broadcast, with the changed fields in {@link STWidgetProvider#EXTRA_CHANGED_FIELDS}.
+ * <p/>
+ * Must be used from the main thread.
+ */
+public class WidgetUpdateDispatcher implements Handler.Callback {
+
+	//delay during which the changes are gathered before being broadcast (in Millis)
+	public static final long COALESCING_DELAY_IN_MILLIS = 300;
+
+	/*
+		Changed fields
+	 */
+
+	public static final int FIELD_BACKGROUND_COLOR = 1;
+	public static final int FIELD_TEXT_COLOR = 1 << 1;
+	public static final int FIELD_ICON_COLOR = 1 << 2;
+	//the value or the unit of the temperature
+	public static final int FIELD_TEMPERATURE = 1 << 3;
+	//the weather and the trend of the temperature
+	public static final int FIELD_WEATHER = 1 << 4;
+	//every field, for the updates which are not caused by a known change
+	public static final int FIELD_ALL = (1 << 5) - 1;
+
+	private static final int MESSAGE_DISPATCH = 1;
+
+	private static WidgetUpdateDispatcher sInstance;
+
+	private final Context mContext;
+	private final Handler mHandler;
+	//the fields changed since the last broadcast
+	private int mPendingFields;
+	//number of changes notified
+	private int mNotificationCount;
+	//number of broadcasts sent
+	private int mBroadcastCount;
+
+	/**
+	 * Return the shared instance of the dispatcher.
+	 *
+	 * @param context a {@link android.content.Context}, its application context is kept
+	 * @return the {@link fr.tvbarthel.apps.simplethermometer.widget.WidgetUpdateDispatcher}
+	 */
+	public static WidgetUpdateDispatcher getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new WidgetUpdateDispatcher(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	private WidgetUpdateDispatcher(Context context) {
+		mContext = context;
+		mHandler = new Handler(Looper.getMainLooper(), this);
+	}
+
+	/**
+	 * Notify a change of the values displayed by the widgets.
+	 * The widgets are updated at the end of the current coalescing delay.
+	 *
+	 * @param changedFields the changed fields, a combination of the FIELD_* flags
+	 */
+	public void notifyChanged(int changedFields) {
+		mNotificationCount++;
+		if (mPendingFields == 0) {
+			//first change of the batch
+			mHandler.sendEmptyMessageDelayed(MESSAGE_DISPATCH, COALESCING_DELAY_IN_MILLIS);
+		}
+		mPendingFields |= changedFields;
+	}
+
+	/**
+	 * @return the number of changes notified since the start of the application
+	 */
+	public int getNotificationCount() {
+		return mNotificationCount;
+	}
+
+	/**
+	 * @return the number of broadcasts sent since the start of the application
+	 */
+	public int getBroadcastCount() {
+		return mBroadcastCount;
+	}
+
+	/**
+	 * @return the number of broadcasts, and of renders of every widget, saved by the coalescing
+	 */
+	public int getSavedBroadcastCount() {
+		return mNotificationCount - mBroadcastCount;
+	}
+
+	/*
+		Handler.Callback Override
+	 */
+
+	@Override
+	public boolean handleMessage(Message msg) {
+		if (msg.what != MESSAGE_DISPATCH) {
+			return false;
+		}
+		final int changedFields = mPendingFields;
+		mPendingFields = 0;
+		if (changedFields != 0) {
+			//A change has to be propagate to the app widgets
+			final Intent intent = new Intent(mContext, STWidgetProvider.class);
+			intent.setAction(STWidgetProvider.APPWIDGET_DATA_CHANGED);
+			intent.putExtra(STWidgetProvider.EXTRA_CHANGED_FIELDS, changedFields);
+			mContext.sendBroadcast(intent);
+			mBroadcastCount++;
+		}
+		return true;
+	}
+}
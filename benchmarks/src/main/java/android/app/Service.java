@@ -0,0 +1,10 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.app.Service},
+ * only its constants are used by the sources shared with the application.
+ */
+public abstract class Service extends Context {
+}
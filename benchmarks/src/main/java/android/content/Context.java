@@ -0,0 +1,34 @@
+package android.content;
+
+import android.content.res.Resources;
+
+import java.io.File;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.content.Context}.
+ * <p/>
+ * Only the methods used by the sources shared with the application are declared,
+ * see {@link fr.tvbarthel.apps.simplethermometer.benchmarks.BenchmarkContext} for an implementation.
+ */
+public abstract class Context {
+
+	public static final int MODE_PRIVATE = 0;
+	public static final String LOCATION_SERVICE = "location";
+	public static final String ALARM_SERVICE = "alarm";
+
+	public abstract Context getApplicationContext();
+
+	public abstract String getPackageName();
+
+	public abstract Resources getResources();
+
+	public final String getString(int resId) {
+		return getResources().getString(resId);
+	}
+
+	public abstract File getFilesDir();
+
+	public abstract Object getSystemService(String name);
+
+	public abstract SharedPreferences getSharedPreferences(String name, int mode);
+}
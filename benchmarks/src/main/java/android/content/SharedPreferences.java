@@ -0,0 +1,53 @@
+package android.content;
+
+import java.util.Map;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.content.SharedPreferences}.
+ */
+public interface SharedPreferences {
+
+	public interface Editor {
+		Editor putString(String key, String value);
+
+		Editor putInt(String key, int value);
+
+		Editor putLong(String key, long value);
+
+		Editor putFloat(String key, float value);
+
+		Editor putBoolean(String key, boolean value);
+
+		Editor remove(String key);
+
+		Editor clear();
+
+		boolean commit();
+
+		void apply();
+	}
+
+	public interface OnSharedPreferenceChangeListener {
+		void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key);
+	}
+
+	Map<String, ?> getAll();
+
+	String getString(String key, String defValue);
+
+	int getInt(String key, int defValue);
+
+	long getLong(String key, long defValue);
+
+	float getFloat(String key, float defValue);
+
+	boolean getBoolean(String key, boolean defValue);
+
+	boolean contains(String key);
+
+	Editor edit();
+
+	void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener);
+
+	void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener);
+}
@@ -0,0 +1,11 @@
+package android.content.res;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.content.res.Resources}.
+ */
+public abstract class Resources {
+
+	public abstract String getString(int id);
+
+	public abstract int getColor(int id);
+}
@@ -0,0 +1,20 @@
+package android.location;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.location.Criteria}.
+ */
+public class Criteria {
+
+	public static final int ACCURACY_FINE = 1;
+	public static final int ACCURACY_COARSE = 2;
+
+	private int mAccuracy;
+
+	public void setAccuracy(int accuracy) {
+		mAccuracy = accuracy;
+	}
+
+	public int getAccuracy() {
+		return mAccuracy;
+	}
+}
@@ -0,0 +1,35 @@
+package android.location;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.location.Location}.
+ */
+public class Location {
+
+	private final String mProvider;
+	private double mLatitude;
+	private double mLongitude;
+
+	public Location(String provider) {
+		mProvider = provider;
+	}
+
+	public String getProvider() {
+		return mProvider;
+	}
+
+	public double getLatitude() {
+		return mLatitude;
+	}
+
+	public void setLatitude(double latitude) {
+		mLatitude = latitude;
+	}
+
+	public double getLongitude() {
+		return mLongitude;
+	}
+
+	public void setLongitude(double longitude) {
+		mLongitude = longitude;
+	}
+}
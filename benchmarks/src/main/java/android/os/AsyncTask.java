@@ -0,0 +1,87 @@
+package android.os;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.os.AsyncTask}.
+ * <p/>
+ * There is no main thread outside of Android: {@link #onProgressUpdate(Object[])}, {@link #onPostExecute(Object)}
+ * and {@link #onCancelled()} are called on the thread running {@link #doInBackground(Object[])},
+ * the listeners of the tasks must be thread safe.
+ */
+public abstract class AsyncTask<Params, Progress, Result> {
+
+	//The default executor, as many threads as needed
+	public static final Executor THREAD_POOL_EXECUTOR = new Executor() {
+		private final ExecutorService mExecutorService = Executors.newCachedThreadPool();
+
+		@Override
+		public void execute(Runnable command) {
+			mExecutorService.execute(command);
+		}
+	};
+
+	private final AtomicBoolean mCancelled = new AtomicBoolean();
+	private FutureTask<Result> mFuture;
+
+	protected abstract Result doInBackground(Params... params);
+
+	protected void onPreExecute() {
+	}
+
+	protected void onPostExecute(Result result) {
+	}
+
+	protected void onProgressUpdate(Progress... values) {
+	}
+
+	protected void onCancelled() {
+	}
+
+	public final AsyncTask<Params, Progress, Result> execute(Params... params) {
+		return executeOnExecutor(THREAD_POOL_EXECUTOR, params);
+	}
+
+	public final AsyncTask<Params, Progress, Result> executeOnExecutor(Executor executor, final Params... params) {
+		onPreExecute();
+		mFuture = new FutureTask<Result>(new Callable<Result>() {
+			@Override
+			public Result call() {
+				final Result result = doInBackground(params);
+				if (isCancelled()) {
+					onCancelled();
+				} else {
+					onPostExecute(result);
+				}
+				return result;
+			}
+		});
+		executor.execute(mFuture);
+		return this;
+	}
+
+	public final boolean cancel(boolean mayInterruptIfRunning) {
+		mCancelled.set(true);
+		return mFuture != null && mFuture.cancel(mayInterruptIfRunning);
+	}
+
+	public final boolean isCancelled() {
+		return mCancelled.get();
+	}
+
+	public final Result get() throws InterruptedException, ExecutionException {
+		return mFuture.get();
+	}
+
+	protected final void publishProgress(Progress... values) {
+		if (!isCancelled()) {
+			onProgressUpdate(values);
+		}
+	}
+}
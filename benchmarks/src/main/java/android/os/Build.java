@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.os.Build},
+ * the benchmarks run as the last version supported by the application.
+ */
+public class Build {
+
+	public static class VERSION {
+		public static final int SDK_INT = VERSION_CODES.JELLY_BEAN_MR2;
+	}
+
+	public static class VERSION_CODES {
+		public static final int ECLAIR_MR1 = 7;
+		public static final int FROYO = 8;
+		public static final int GINGERBREAD = 9;
+		public static final int HONEYCOMB = 11;
+		public static final int JELLY_BEAN = 16;
+		public static final int JELLY_BEAN_MR2 = 18;
+	}
+}
@@ -0,0 +1,32 @@
+package android.os;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.os.Handler}.
+ * There is no message loop outside of Android, the shared sources only compile against it.
+ */
+public class Handler {
+
+	public interface Callback {
+		public boolean handleMessage(Message msg);
+	}
+
+	public Handler(Looper looper, Callback callback) {
+		throw new UnsupportedOperationException("No message loop outside of Android");
+	}
+
+	public final boolean sendEmptyMessage(int what) {
+		throw new UnsupportedOperationException();
+	}
+
+	public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+		throw new UnsupportedOperationException();
+	}
+
+	public final boolean postAtFrontOfQueue(Runnable r) {
+		throw new UnsupportedOperationException();
+	}
+
+	public final void removeMessages(int what) {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.os.HandlerThread}.
+ * There is no message loop outside of Android, the shared sources only compile against it.
+ */
+public class HandlerThread extends Thread {
+
+	public HandlerThread(String name, int priority) {
+		super(name);
+	}
+
+	public Looper getLooper() {
+		throw new UnsupportedOperationException("No message loop outside of Android");
+	}
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.os.Looper}.
+ * There is no message loop outside of Android, the shared sources only compile against it.
+ */
+public final class Looper {
+
+	private Looper() {
+	}
+
+	public static Looper getMainLooper() {
+		throw new UnsupportedOperationException("No message loop outside of Android");
+	}
+}
@@ -0,0 +1,12 @@
+package android.os;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.os.Message}.
+ */
+public final class Message {
+
+	public int what;
+	public int arg1;
+	public int arg2;
+	public Object obj;
+}
@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.os.Process}.
+ */
+public class Process {
+
+	public static final int THREAD_PRIORITY_DEFAULT = 0;
+	public static final int THREAD_PRIORITY_BACKGROUND = 10;
+}
@@ -0,0 +1,14 @@
+package android.preference;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.preference.PreferenceManager}.
+ */
+public class PreferenceManager {
+
+	public static SharedPreferences getDefaultSharedPreferences(Context context) {
+		return context.getSharedPreferences(context.getPackageName() + "_preferences", Context.MODE_PRIVATE);
+	}
+}
@@ -0,0 +1,15 @@
+package android.util;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * A plain JVM stand-in of the Android {@link android.util.Xml},
+ * the pull parsers are the kXML 2 parser that Android also uses.
+ */
+public class Xml {
+
+	public static XmlPullParser newPullParser() {
+		return new KXmlParser();
+	}
+}
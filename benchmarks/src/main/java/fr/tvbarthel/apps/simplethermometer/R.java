@@ -0,0 +1,28 @@
+package fr.tvbarthel.apps.simplethermometer;
+
+/**
+ * A plain JVM stand-in of the resource ids generated for the application,
+ * only the ids used by the sources shared with the benchmarks are declared.
+ * The values are resolved by {@link fr.tvbarthel.apps.simplethermometer.benchmarks.BenchmarkContext}.
+ */
+public final class R {
+
+	public static final class string {
+		public static final int error_message_server_not_available = 0x7f050001;
+		public static final int error_message_malformed_url = 0x7f050002;
+		public static final int error_message_io_exception = 0x7f050003;
+		public static final int error_message_parser_exception = 0x7f050004;
+		public static final int error_message_location_not_found = 0x7f050005;
+		public static final int error_message_location_provider_not_found = 0x7f050006;
+		public static final int temperature_unit_celsius_symbol = 0x7f050007;
+		public static final int temperature_unit_kelvin_symbol = 0x7f050008;
+		public static final int temperature_unit_fahrenheit_symbol = 0x7f050009;
+		public static final int url_open_weather_api = 0x7f05000a;
+	}
+
+	public static final class color {
+		public static final int holo_blue = 0x7f060001;
+		public static final int white = 0x7f060002;
+		public static final int black = 0x7f060003;
+	}
+}
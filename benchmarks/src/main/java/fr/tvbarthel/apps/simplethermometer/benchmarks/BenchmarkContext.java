@@ -0,0 +1,122 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.location.LocationManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.tvbarthel.apps.simplethermometer.R;
+
+/**
+ * A {@link android.content.Context} running the shared sources on a plain JVM.
+ * <p/>
+ * The resources hold the default values of the application, the preferences are kept in memory,
+ * the files are written in a temporary directory and the location is a fixed one.
+ */
+public class BenchmarkContext extends Context {
+
+	private static final String PACKAGE_NAME = "fr.tvbarthel.apps.simplethermometer";
+	//the fixed location, Paris
+	private static final double LATITUDE = 48.8566;
+	private static final double LONGITUDE = 2.3522;
+
+	private final Resources mResources = new BenchmarkResources();
+	private final Map<String, SharedPreferences> mSharedPreferences = new HashMap<String, SharedPreferences>();
+	private final LocationManager mLocationManager = new LocationManager(LATITUDE, LONGITUDE);
+	private File mFilesDir;
+
+	@Override
+	public Context getApplicationContext() {
+		return this;
+	}
+
+	@Override
+	public String getPackageName() {
+		return PACKAGE_NAME;
+	}
+
+	@Override
+	public Resources getResources() {
+		return mResources;
+	}
+
+	@Override
+	public synchronized File getFilesDir() {
+		if (mFilesDir == null) {
+			try {
+				final File filesDir = File.createTempFile("files", "");
+				if (!filesDir.delete() || !filesDir.mkdir()) {
+					throw new IOException("Can not create " + filesDir);
+				}
+				filesDir.deleteOnExit();
+				mFilesDir = filesDir;
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return mFilesDir;
+	}
+
+	@Override
+	public Object getSystemService(String name) {
+		return LOCATION_SERVICE.equals(name) ? mLocationManager : null;
+	}
+
+	@Override
+	public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+		SharedPreferences sharedPreferences = mSharedPreferences.get(name);
+		if (sharedPreferences == null) {
+			sharedPreferences = new InMemorySharedPreferences();
+			mSharedPreferences.put(name, sharedPreferences);
+		}
+		return sharedPreferences;
+	}
+
+	/**
+	 * The default values of the resources of the application
+	 */
+	private static final class BenchmarkResources extends Resources {
+		private final Map<Integer, String> mStrings = new HashMap<Integer, String>();
+		private final Map<Integer, Integer> mColors = new HashMap<Integer, Integer>();
+
+		private BenchmarkResources() {
+			mStrings.put(R.string.error_message_server_not_available, "Server not available, try again later");
+			mStrings.put(R.string.error_message_malformed_url, "Malformed Url");
+			mStrings.put(R.string.error_message_io_exception, "IO Exception");
+			mStrings.put(R.string.error_message_parser_exception, "Invalid weather data");
+			mStrings.put(R.string.error_message_location_not_found, "Location not found");
+			mStrings.put(R.string.error_message_location_provider_not_found, "Location provider not allowed");
+			mStrings.put(R.string.temperature_unit_celsius_symbol, "\u00b0C");
+			mStrings.put(R.string.temperature_unit_kelvin_symbol, "K");
+			mStrings.put(R.string.temperature_unit_fahrenheit_symbol, "\u00b0F");
+			mStrings.put(R.string.url_open_weather_api, "http://api.openweathermap.org/data/2.5/weather"
+					+ "?lat=%1$f&lon=%2$f&mode=%3$s&units=metric&APPID=c756ce72a59777bd32a5762e12e74057");
+			mColors.put(R.color.holo_blue, 0xFF33B5E5);
+			mColors.put(R.color.white, 0xFFFFFFFF);
+			mColors.put(R.color.black, 0xFF000000);
+		}
+
+		@Override
+		public String getString(int id) {
+			final String string = mStrings.get(id);
+			if (string == null) {
+				throw new IllegalArgumentException("Unknown string resource " + Integer.toHexString(id));
+			}
+			return string;
+		}
+
+		@Override
+		public int getColor(int id) {
+			final Integer color = mColors.get(id);
+			if (color == null) {
+				throw new IllegalArgumentException("Unknown color resource " + Integer.toHexString(id));
+			}
+			return color;
+		}
+	}
+}
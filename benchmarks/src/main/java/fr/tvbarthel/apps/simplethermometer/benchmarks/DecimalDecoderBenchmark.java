@@ -0,0 +1,105 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fr.tvbarthel.apps.simplethermometer.openweathermap.DecimalDecoder;
+
+/**
+ * Time to decode the numeric attribute values of the large xml fixture, in ns per value:
+ * <ul>
+ * <li>from the Strings returned by the pull parser, like the xml parser: {@link #floatValueOf()} as the first
+ * parser did, {@link #parseFloat()} and {@link #decoder()},</li>
+ * <li>from a reused {@link java.lang.StringBuilder}, like the json reader: {@link #parseFloatFromBuilder()},
+ * which needs a String, and {@link #decoderFromBuilder()}, which does not.</li>
+ * </ul>
+ * Run with -prof gc to compare the allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecimalDecoderBenchmark {
+
+	//number of values decoded per invocation
+	private static final int VALUE_COUNT = 1024;
+
+	private static final Pattern NUMERIC_ATTRIBUTE = Pattern.compile("(?:value|min|max|lon|lat|distance)=\"(-?[0-9.]+)\"");
+
+	private final String[] mValues = new String[VALUE_COUNT];
+	private final StringBuilder[] mBuilders = new StringBuilder[VALUE_COUNT];
+
+	@Setup
+	public void setUp() throws IOException {
+		final String fixture = new String(Fixtures.read(Fixtures.WEATHER_LARGE, Fixtures.EXTENSION_XML), "UTF-8");
+		final List<String> values = new ArrayList<String>();
+		final Matcher matcher = NUMERIC_ATTRIBUTE.matcher(fixture);
+		while (matcher.find()) {
+			values.add(matcher.group(1));
+		}
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			//a copy per slot, like the pull parser creates a new String per attribute
+			mValues[i] = new String(values.get(i % values.size()).toCharArray());
+			mBuilders[i] = new StringBuilder(mValues[i]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUE_COUNT)
+	public void floatValueOf(Blackhole blackhole) {
+		for (String value : mValues) {
+			blackhole.consume(Float.valueOf(value));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUE_COUNT)
+	public void parseFloat(Blackhole blackhole) {
+		for (String value : mValues) {
+			blackhole.consume(Float.parseFloat(value));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUE_COUNT)
+	public void decoder(Blackhole blackhole) {
+		for (String value : mValues) {
+			blackhole.consume(DecimalDecoder.parseFloat(value));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUE_COUNT)
+	public void parseFloatFromBuilder(Blackhole blackhole) {
+		for (StringBuilder builder : mBuilders) {
+			blackhole.consume(Float.parseFloat(builder.toString()));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUE_COUNT)
+	public void decoderFromBuilder(Blackhole blackhole) {
+		for (StringBuilder builder : mBuilders) {
+			blackhole.consume(DecimalDecoder.parseFloat(builder));
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import android.util.Xml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser;
+
+/**
+ * Time to dispatch the start tags read below the root of a response, as
+ * {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser} does:
+ * <ul>
+ * <li>{@link #perfectHash()}: the current dispatch, a slot computed from the length and the first char
+ * of the name then a single {@link String#equals(Object)},</li>
+ * <li>{@link #hashMap()}: a lookup in a {@link java.util.HashMap} of the tag names,</li>
+ * <li>{@link #equalsChain()}: the chain of {@link String#equals(Object)} of the first parser,</li>
+ * <li>{@link #copyOnly()}: the copy of the names alone, to subtract from the others.</li>
+ * </ul>
+ * The names are copied before each dispatch, like a pull parser returns a new String per tag,
+ * so that their hash code is not already cached. On the wide fixture, most of the names are unknown.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+	//names and fields of the children of the root, as dispatched by the parser
+	private static final String[] NAMES = {OpenWeatherMapParser.NAME_CITY, OpenWeatherMapParser.NAME_TEMPERATURE,
+			OpenWeatherMapParser.NAME_HUMDITY, OpenWeatherMapParser.NAME_PRESSURE, OpenWeatherMapParser.NAME_WIND,
+			OpenWeatherMapParser.NAME_CLOUD, OpenWeatherMapParser.NAME_PRECIPITATION, OpenWeatherMapParser.NAME_WEATHER,
+			OpenWeatherMapParser.NAME_LAST_UPDATE};
+	private static final int[] FIELDS = {OpenWeatherMapParser.FIELD_CITY, OpenWeatherMapParser.FIELD_TEMPERATURE,
+			OpenWeatherMapParser.FIELD_HUMIDITY, OpenWeatherMapParser.FIELD_PRESSURE, OpenWeatherMapParser.FIELD_WIND,
+			OpenWeatherMapParser.FIELD_CLOUD, OpenWeatherMapParser.FIELD_PRECIPITATION, OpenWeatherMapParser.FIELD_WEATHER,
+			OpenWeatherMapParser.FIELD_LAST_UPDATE};
+
+	//same perfect hash table as the parser
+	private static final int TAG_TABLE_SIZE = 64;
+	private static final String[] sTagNames = new String[TAG_TABLE_SIZE];
+	private static final int[] sTags = new int[TAG_TABLE_SIZE];
+
+	private static final HashMap<String, Integer> sTagMap = new HashMap<String, Integer>();
+
+	static {
+		for (int i = 0; i < NAMES.length; i++) {
+			sTagNames[getTagIndex(NAMES[i])] = NAMES[i];
+			sTags[getTagIndex(NAMES[i])] = FIELDS[i];
+			sTagMap.put(NAMES[i], FIELDS[i]);
+		}
+	}
+
+	@Param({Fixtures.WEATHER_MEDIUM, Fixtures.WEATHER_LARGE})
+	public String fixture;
+
+	//the names of the children of the root, in the order of the fixture
+	private char[][] mNames;
+
+	@Setup
+	public void setUp() throws IOException, XmlPullParserException {
+		final XmlPullParser parser = Xml.newPullParser();
+		parser.setInput(new ByteArrayInputStream(Fixtures.read(fixture, Fixtures.EXTENSION_XML)), null);
+		final List<char[]> names = new ArrayList<char[]>();
+		int eventType;
+		while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT) {
+			if (eventType == XmlPullParser.START_TAG && parser.getDepth() == 2) {
+				names.add(parser.getName().toCharArray());
+			}
+		}
+		mNames = names.toArray(new char[names.size()][]);
+	}
+
+	@Benchmark
+	public int perfectHash() {
+		int fields = 0;
+		for (char[] name : mNames) {
+			final String tagName = new String(name);
+			final int index = getTagIndex(tagName);
+			fields |= tagName.equals(sTagNames[index]) ? sTags[index] : 0;
+		}
+		return fields;
+	}
+
+	@Benchmark
+	public int hashMap() {
+		int fields = 0;
+		for (char[] name : mNames) {
+			final Integer tag = sTagMap.get(new String(name));
+			fields |= tag == null ? 0 : tag;
+		}
+		return fields;
+	}
+
+	@Benchmark
+	public int equalsChain() {
+		int fields = 0;
+		for (char[] name : mNames) {
+			fields |= getTagWithEquals(new String(name));
+		}
+		return fields;
+	}
+
+	@Benchmark
+	public int copyOnly() {
+		int length = 0;
+		for (char[] name : mNames) {
+			length += new String(name).length();
+		}
+		return length;
+	}
+
+	private static int getTagIndex(String name) {
+		if (name.length() == 0) {
+			return 0;
+		}
+		return (name.length() * 3 + name.charAt(0)) & (TAG_TABLE_SIZE - 1);
+	}
+
+	private static int getTagWithEquals(String name) {
+		if (name.equals(OpenWeatherMapParser.NAME_CITY)) {
+			return OpenWeatherMapParser.FIELD_CITY;
+		} else if (name.equals(OpenWeatherMapParser.NAME_TEMPERATURE)) {
+			return OpenWeatherMapParser.FIELD_TEMPERATURE;
+		} else if (name.equals(OpenWeatherMapParser.NAME_HUMDITY)) {
+			return OpenWeatherMapParser.FIELD_HUMIDITY;
+		} else if (name.equals(OpenWeatherMapParser.NAME_PRESSURE)) {
+			return OpenWeatherMapParser.FIELD_PRESSURE;
+		} else if (name.equals(OpenWeatherMapParser.NAME_WIND)) {
+			return OpenWeatherMapParser.FIELD_WIND;
+		} else if (name.equals(OpenWeatherMapParser.NAME_CLOUD)) {
+			return OpenWeatherMapParser.FIELD_CLOUD;
+		} else if (name.equals(OpenWeatherMapParser.NAME_PRECIPITATION)) {
+			return OpenWeatherMapParser.FIELD_PRECIPITATION;
+		} else if (name.equals(OpenWeatherMapParser.NAME_WEATHER)) {
+			return OpenWeatherMapParser.FIELD_WEATHER;
+		} else if (name.equals(OpenWeatherMapParser.NAME_LAST_UPDATE)) {
+			return OpenWeatherMapParser.FIELD_LAST_UPDATE;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,53 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The recorded responses of the OpenWeatherMap Api, in src/main/resources/fixtures.
+ */
+public final class Fixtures {
+
+	//A compact response, as sent by the Api
+	public static final String WEATHER_SMALL = "weather_small";
+	//An indented response with the fields added by the later versions of the Api
+	public static final String WEATHER_MEDIUM = "weather_medium";
+	//A wide response, the observations of the nearby stations come before the weather
+	//in json, they come before the last update, the sun and the city
+	public static final String WEATHER_LARGE = "weather_large";
+
+	public static final String EXTENSION_XML = ".xml";
+	public static final String EXTENSION_JSON = ".json";
+
+	private static final String DIRECTORY = "/fixtures/";
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Read a fixture in memory.
+	 *
+	 * @param name      the name of the fixture, one of the WEATHER_* constants
+	 * @param extension the extension of the fixture, one of the EXTENSION_* constants
+	 * @return the bytes of the fixture
+	 * @throws IOException if the fixture can not be read
+	 */
+	public static byte[] read(String name, String extension) throws IOException {
+		final InputStream in = Fixtures.class.getResourceAsStream(DIRECTORY + name + extension);
+		if (in == null) {
+			throw new IOException("Unknown fixture " + name + extension);
+		}
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParser;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParserException;
+
+/**
+ * Compare the xml and the json formats of the same responses: the payload size, printed once per trial,
+ * and the time of {@link fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParser#parse(java.io.InputStream, int)}.
+ * Run with -prof gc to compare the allocations per parse.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+	@Param({Fixtures.WEATHER_SMALL, Fixtures.WEATHER_MEDIUM, Fixtures.WEATHER_LARGE})
+	public String fixture;
+
+	@Param({"XML", "JSON"})
+	public WeatherFormat format;
+
+	private byte[] mResponse;
+	private WeatherParser mParser;
+
+	@Setup
+	public void setUp() throws IOException {
+		mResponse = Fixtures.read(fixture, format == WeatherFormat.JSON ? Fixtures.EXTENSION_JSON : Fixtures.EXTENSION_XML);
+		mParser = format.newParser();
+		System.out.println();
+		System.out.println(fixture + " in " + format.getMode() + ": " + mResponse.length + " bytes, "
+				+ gzip(mResponse).length + " bytes with gzip");
+	}
+
+	@Benchmark
+	public OpenWeatherMapParserResult parseAllFields() throws WeatherParserException, IOException {
+		return mParser.parse(new ByteArrayInputStream(mResponse), OpenWeatherMapParser.FIELD_ALL);
+	}
+
+	@Benchmark
+	public OpenWeatherMapParserResult parseTemperature() throws WeatherParserException, IOException {
+		return mParser.parse(new ByteArrayInputStream(mResponse), OpenWeatherMapParser.FIELD_TEMPERATURE);
+	}
+
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+		gzipOut.write(bytes);
+		gzipOut.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,112 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import fr.tvbarthel.apps.simplethermometer.utils.TemperatureFormatter;
+import fr.tvbarthel.apps.simplethermometer.utils.TemperatureUnit;
+
+/**
+ * Time to format a temperature with one decimal at most, in ns per temperature:
+ * <ul>
+ * <li>{@link #newDecimalFormat()}: a new {@link java.text.DecimalFormat} per temperature, as the first
+ * PreferenceUtils#getTemperatureAsString did,</li>
+ * <li>{@link #cachedDecimalFormat()}: a {@link java.text.DecimalFormat} kept by the thread,</li>
+ * <li>{@link #formatter()}: {@link fr.tvbarthel.apps.simplethermometer.utils.TemperatureFormatter#format(float, TemperatureUnit, String)},
+ * which only allocates a scratch array and the returned String,</li>
+ * <li>{@link #formatterIntoBuffer()}: the chars written into a reused array, nothing is allocated,</li>
+ * <li>{@link #formatAll()} and {@link #decimalFormatAll()}: the labels of a chart of {@link #BULK_SIZE} temperatures.</li>
+ * </ul>
+ * Run with -prof gc to compare the allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+
+	//number of temperatures of a chart
+	public static final int BULK_SIZE = 256;
+
+	private static final String PATTERN = "#.#";
+	private static final String SYMBOL = "\u00b0C";
+
+	@Param({"CELSIUS", "FAHRENHEIT"})
+	public TemperatureUnit unit;
+
+	//temperatures in Celsius, with two decimals like the OpenWeatherMap Api
+	private final float[] mTemperatures = new float[BULK_SIZE];
+	private int mIndex;
+
+	private DecimalFormat mDecimalFormat;
+	private char[] mBuffer;
+	private int[] mEnds;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(42);
+		for (int i = 0; i < BULK_SIZE; i++) {
+			mTemperatures[i] = Math.round((random.nextFloat() * 75 - 30) * 100) / 100f;
+		}
+		mDecimalFormat = new DecimalFormat(PATTERN);
+		mBuffer = new char[BULK_SIZE * TemperatureFormatter.MAX_LENGTH];
+		mEnds = new int[BULK_SIZE];
+	}
+
+	@Benchmark
+	public String newDecimalFormat() {
+		final Float temperature = unit.fromCelsius(nextTemperature());
+		return new DecimalFormat(PATTERN).format(temperature) + SYMBOL;
+	}
+
+	@Benchmark
+	public String cachedDecimalFormat() {
+		return mDecimalFormat.format(unit.fromCelsius(nextTemperature())) + SYMBOL;
+	}
+
+	@Benchmark
+	public String formatter() {
+		return TemperatureFormatter.format(nextTemperature(), unit, SYMBOL);
+	}
+
+	@Benchmark
+	public int formatterIntoBuffer() {
+		return TemperatureFormatter.format(unit.fromCelsius(nextTemperature()), mBuffer, 0);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BULK_SIZE)
+	public int formatAll() {
+		return TemperatureFormatter.formatAll(mTemperatures, BULK_SIZE, unit, mBuffer, mEnds);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BULK_SIZE)
+	public void decimalFormatAll(Blackhole blackhole) {
+		for (int i = 0; i < BULK_SIZE; i++) {
+			blackhole.consume(mDecimalFormat.format(unit.fromCelsius(mTemperatures[i])));
+		}
+	}
+
+	private float nextTemperature() {
+		mIndex = (mIndex + 1) & (BULK_SIZE - 1);
+		return mTemperatures[mIndex];
+	}
+}
@@ -0,0 +1,83 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryDecoder;
+import fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryEncoder;
+import fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog;
+
+/**
+ * Encode and decode a year of observations, a {@link fr.tvbarthel.apps.simplethermometer.benchmarks.HistorySeries},
+ * with the {@link fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryEncoder}, in ns per observation.
+ * The bytes per observation are printed once per trial, against the
+ * {@link fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog#RECORD_SIZE_IN_BYTES} of a record of the log.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+	//a year of refreshes
+	private static final int SAMPLE_COUNT = 365 * 48;
+
+	//true to delay the refreshes like inexact alarms
+	@Param({"false", "true"})
+	public boolean irregular;
+
+	private HistorySeries mSeries;
+	private byte[] mEncoded;
+
+	@Setup
+	public void setUp() throws IOException {
+		mSeries = new HistorySeries(SAMPLE_COUNT, irregular, 42);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encode().writeTo(out);
+		mEncoded = out.toByteArray();
+		System.out.println(String.format(Locale.US, "%n%d observations, %d bytes: %.2f bytes per observation against %d",
+				SAMPLE_COUNT, mEncoded.length, (double) mEncoded.length / SAMPLE_COUNT,
+				TemperatureHistoryLog.RECORD_SIZE_IN_BYTES));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLE_COUNT)
+	public CompressedHistoryEncoder encode() {
+		final CompressedHistoryEncoder encoder = new CompressedHistoryEncoder();
+		final HistorySeries series = mSeries;
+		for (int i = 0; i < SAMPLE_COUNT; i++) {
+			encoder.add(series.mTimes[i], series.mTemperatures[i], series.mHumidities[i],
+					series.mPressures[i], series.mWeatherIds[i]);
+		}
+		return encoder;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLE_COUNT)
+	public double decode() throws IOException {
+		final CompressedHistoryDecoder decoder = new CompressedHistoryDecoder(mEncoded);
+		double sum = 0;
+		while (decoder.moveToNext()) {
+			sum += decoder.getTimeInMillis() + decoder.getTemperatureInCelsius() + decoder.getHumidity()
+					+ decoder.getPressure() + decoder.getWeatherId();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,74 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import java.util.Random;
+
+/**
+ * A generated history of observations, shaped like the ones appended by the application:
+ * a refresh every {@link #REFRESH_INTERVAL_IN_MILLIS} delayed by the inexact alarms, the temperature
+ * and the pressure with two decimals as sent by the Api and unchanged when the weather has not been updated,
+ * an integer humidity sometimes missing, and a weather condition that rarely changes.
+ */
+public final class HistorySeries {
+
+	//interval between two refreshes (in Millis)
+	public static final long REFRESH_INTERVAL_IN_MILLIS = 30 * 60 * 1000;
+	//max delay of an inexact alarm (in Millis)
+	private static final int MAX_DELAY_IN_MILLIS = 90 * 1000;
+	//part of the refreshes answered with an unchanged weather
+	private static final double UNCHANGED_RATE = 0.3;
+	//part of the observations without humidity
+	private static final double MISSING_HUMIDITY_RATE = 0.05;
+	private static final int[] WEATHER_IDS = {800, 801, 802, 803, 804, 500, 501, 701};
+
+	public final long[] mTimes;
+	public final float[] mTemperatures;
+	public final float[] mHumidities;
+	public final float[] mPressures;
+	public final int[] mWeatherIds;
+
+	/**
+	 * Generate {@code count} observations.
+	 *
+	 * @param count     the number of observations
+	 * @param irregular true to delay the refreshes like inexact alarms, false for a fixed interval
+	 * @param seed      the seed of the generator
+	 */
+	public HistorySeries(int count, boolean irregular, long seed) {
+		mTimes = new long[count];
+		mTemperatures = new float[count];
+		mHumidities = new float[count];
+		mPressures = new float[count];
+		mWeatherIds = new int[count];
+
+		final Random random = new Random(seed);
+		//2013-09-12T00:00:00Z
+		long time = 1378944000000L;
+		float temperature = 15f;
+		float humidity = 70f;
+		float pressure = 1013.25f;
+		int weatherId = WEATHER_IDS[0];
+		for (int i = 0; i < count; i++) {
+			mTimes[i] = time + (irregular ? random.nextInt(MAX_DELAY_IN_MILLIS) : 0);
+			time += REFRESH_INTERVAL_IN_MILLIS;
+
+			if (i == 0 || random.nextDouble() >= UNCHANGED_RATE) {
+				//a daily cycle and some noise, rounded like the values of the Api
+				final double hourAngle = 2 * Math.PI * (time % (24 * 3600000L)) / (24 * 3600000.0);
+				temperature = round(15 + 8 * (float) Math.sin(hourAngle) + (float) random.nextGaussian(), 100);
+				humidity = Math.max(0, Math.min(100, Math.round(humidity + random.nextGaussian() * 3)));
+				pressure = round(pressure + (float) random.nextGaussian() * 0.3f, 100);
+				if (random.nextInt(20) == 0) {
+					weatherId = WEATHER_IDS[random.nextInt(WEATHER_IDS.length)];
+				}
+			}
+			mTemperatures[i] = temperature;
+			mHumidities[i] = random.nextDouble() < MISSING_HUMIDITY_RATE ? Float.NaN : humidity;
+			mPressures[i] = pressure;
+			mWeatherIds[i] = weatherId;
+		}
+	}
+
+	private static float round(float value, int scale) {
+		return Math.round(value * scale) / (float) scale;
+	}
+}
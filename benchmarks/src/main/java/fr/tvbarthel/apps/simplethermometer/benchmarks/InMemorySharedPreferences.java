@@ -0,0 +1,159 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link android.content.SharedPreferences} kept in memory, with the same types and defaults as on Android.
+ * The changes of an editor are applied at once, and are visible by every thread.
+ */
+public class InMemorySharedPreferences implements SharedPreferences {
+
+	private final Map<String, Object> mValues = new HashMap<String, Object>();
+	private final List<OnSharedPreferenceChangeListener> mListeners = new ArrayList<OnSharedPreferenceChangeListener>();
+
+	@Override
+	public synchronized Map<String, ?> getAll() {
+		return new HashMap<String, Object>(mValues);
+	}
+
+	@Override
+	public synchronized String getString(String key, String defValue) {
+		final String value = (String) mValues.get(key);
+		return value == null ? defValue : value;
+	}
+
+	@Override
+	public synchronized int getInt(String key, int defValue) {
+		final Integer value = (Integer) mValues.get(key);
+		return value == null ? defValue : value;
+	}
+
+	@Override
+	public synchronized long getLong(String key, long defValue) {
+		final Long value = (Long) mValues.get(key);
+		return value == null ? defValue : value;
+	}
+
+	@Override
+	public synchronized float getFloat(String key, float defValue) {
+		final Float value = (Float) mValues.get(key);
+		return value == null ? defValue : value;
+	}
+
+	@Override
+	public synchronized boolean getBoolean(String key, boolean defValue) {
+		final Boolean value = (Boolean) mValues.get(key);
+		return value == null ? defValue : value;
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+		return mValues.containsKey(key);
+	}
+
+	@Override
+	public Editor edit() {
+		return new InMemoryEditor();
+	}
+
+	@Override
+	public synchronized void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+		mListeners.add(listener);
+	}
+
+	@Override
+	public synchronized void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+		mListeners.remove(listener);
+	}
+
+	/**
+	 * Apply the changes of an editor and notify the listeners
+	 */
+	private void applyChanges(Map<String, Object> changes, boolean clear) {
+		final List<OnSharedPreferenceChangeListener> listeners;
+		synchronized (this) {
+			if (clear) {
+				mValues.clear();
+			}
+			for (Map.Entry<String, Object> change : changes.entrySet()) {
+				if (change.getValue() == null) {
+					mValues.remove(change.getKey());
+				} else {
+					mValues.put(change.getKey(), change.getValue());
+				}
+			}
+			listeners = new ArrayList<OnSharedPreferenceChangeListener>(mListeners);
+		}
+		for (String key : changes.keySet()) {
+			for (OnSharedPreferenceChangeListener listener : listeners) {
+				listener.onSharedPreferenceChanged(this, key);
+			}
+		}
+	}
+
+	/**
+	 * The changes made to the preferences, null values are removals
+	 */
+	private final class InMemoryEditor implements Editor {
+		private final Map<String, Object> mChanges = new HashMap<String, Object>();
+		private boolean mClear;
+
+		@Override
+		public Editor putString(String key, String value) {
+			mChanges.put(key, value);
+			return this;
+		}
+
+		@Override
+		public Editor putInt(String key, int value) {
+			mChanges.put(key, value);
+			return this;
+		}
+
+		@Override
+		public Editor putLong(String key, long value) {
+			mChanges.put(key, value);
+			return this;
+		}
+
+		@Override
+		public Editor putFloat(String key, float value) {
+			mChanges.put(key, value);
+			return this;
+		}
+
+		@Override
+		public Editor putBoolean(String key, boolean value) {
+			mChanges.put(key, value);
+			return this;
+		}
+
+		@Override
+		public Editor remove(String key) {
+			mChanges.put(key, null);
+			return this;
+		}
+
+		@Override
+		public Editor clear() {
+			mClear = true;
+			return this;
+		}
+
+		@Override
+		public boolean commit() {
+			applyChanges(mChanges, mClear);
+			return true;
+		}
+
+		@Override
+		public void apply() {
+			applyChanges(mChanges, mClear);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParserException;
+
+/**
+ * Time of {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser#parse(java.io.InputStream, int)}
+ * on the recorded xml responses, with every field and with the temperature only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({Fixtures.WEATHER_SMALL, Fixtures.WEATHER_MEDIUM, Fixtures.WEATHER_LARGE})
+	public String fixture;
+
+	private byte[] mResponse;
+	private OpenWeatherMapParser mParser;
+
+	@Setup
+	public void setUp() throws IOException {
+		mResponse = Fixtures.read(fixture, Fixtures.EXTENSION_XML);
+		mParser = new OpenWeatherMapParser();
+	}
+
+	@Benchmark
+	public OpenWeatherMapParserResult parseAllFields() throws WeatherParserException, IOException {
+		return mParser.parse(new ByteArrayInputStream(mResponse), OpenWeatherMapParser.FIELD_ALL);
+	}
+
+	@Benchmark
+	public OpenWeatherMapParserResult parseTemperature() throws WeatherParserException, IOException {
+		return mParser.parse(new ByteArrayInputStream(mResponse), OpenWeatherMapParser.FIELD_TEMPERATURE);
+	}
+}
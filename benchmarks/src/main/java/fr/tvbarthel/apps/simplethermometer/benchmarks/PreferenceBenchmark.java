@@ -0,0 +1,57 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import fr.tvbarthel.apps.simplethermometer.R;
+import fr.tvbarthel.apps.simplethermometer.utils.PreferenceUtils;
+
+/**
+ * Time of {@link fr.tvbarthel.apps.simplethermometer.utils.PreferenceUtils#getTemperatureAsString(android.content.Context, android.content.SharedPreferences)}
+ * in each of the three units.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreferenceBenchmark {
+
+	//the string resource of the symbol of the unit
+	@Param({"temperature_unit_celsius_symbol", "temperature_unit_fahrenheit_symbol", "temperature_unit_kelvin_symbol"})
+	public String unit;
+
+	private BenchmarkContext mContext;
+	private SharedPreferences mSharedPreferences;
+
+	@Setup
+	public void setUp() throws NoSuchFieldException, IllegalAccessException {
+		mContext = new BenchmarkContext();
+		mSharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+		final int unitSymbolId = R.string.class.getField(unit).getInt(null);
+		final SharedPreferences.Editor editor = mSharedPreferences.edit();
+		editor.putString(PreferenceUtils.PREF_KEY_TEMPERATURE_UNIT_STRING, mContext.getString(unitSymbolId));
+		editor.putFloat(PreferenceUtils.PREF_KEY_LAST_TEMPERATURE_IN_CELSIUS, 21.47f);
+		editor.commit();
+	}
+
+	@Benchmark
+	public String getTemperatureAsString() {
+		return PreferenceUtils.getTemperatureAsString(mContext, mSharedPreferences);
+	}
+}
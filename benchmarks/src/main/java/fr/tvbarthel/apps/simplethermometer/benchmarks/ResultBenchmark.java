@@ -0,0 +1,95 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import fr.tvbarthel.apps.simplethermometer.history.TemperatureHistoryLog;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParser;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParserException;
+
+/**
+ * Compare the result handed to the consumers of a response, as read by the
+ * {@link fr.tvbarthel.apps.simplethermometer.TemperatureLoader} to append an observation to the history:
+ * <ul>
+ * <li>{@link #boxedResult()}: a new {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult}
+ * per response, its numeric values boxed, as before,</li>
+ * <li>{@link #compactResult()}: a pooled {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
+ * recycled once read, as the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserAsyncTask} does.</li>
+ * </ul>
+ * Run with -prof gc to compare the allocations per response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultBenchmark {
+
+	//the fields requested by the TemperatureLoader
+	private static final int FIELDS = OpenWeatherMapParser.FIELD_CITY
+			| OpenWeatherMapParser.FIELD_TEMPERATURE
+			| OpenWeatherMapParser.FIELD_HUMIDITY
+			| OpenWeatherMapParser.FIELD_PRESSURE
+			| OpenWeatherMapParser.FIELD_WIND
+			| OpenWeatherMapParser.FIELD_WEATHER;
+
+	@Param({Fixtures.WEATHER_SMALL, Fixtures.WEATHER_MEDIUM})
+	public String fixture;
+
+	@Param({"XML", "JSON"})
+	public WeatherFormat format;
+
+	private byte[] mResponse;
+	private WeatherParser mParser;
+
+	@Setup
+	public void setUp() throws IOException {
+		mResponse = Fixtures.read(fixture, format == WeatherFormat.JSON ? Fixtures.EXTENSION_JSON : Fixtures.EXTENSION_XML);
+		mParser = format.newParser();
+	}
+
+	@Benchmark
+	public float boxedResult() throws WeatherParserException, IOException {
+		final OpenWeatherMapParserResult result = mParser.parse(new ByteArrayInputStream(mResponse), FIELDS);
+		final Float humidity = result.getHumidityValue();
+		final Float pressure = result.getPressureValue();
+		final Integer weatherId = result.getWeatherNumber();
+		return result.getTemperatureValue()
+				+ (humidity == null ? Float.NaN : humidity)
+				+ (pressure == null ? Float.NaN : pressure)
+				+ (weatherId == null ? TemperatureHistoryLog.WEATHER_ID_UNKNOWN : weatherId);
+	}
+
+	@Benchmark
+	public float compactResult() throws WeatherParserException, IOException {
+		final CompactWeatherResult result = CompactWeatherResult.obtain();
+		try {
+			mParser.parse(new ByteArrayInputStream(mResponse), FIELDS, result);
+			return result.getTemperatureValue()
+					+ (result.has(CompactWeatherResult.HAS_HUMIDITY_VALUE) ? result.getHumidityValue() : Float.NaN)
+					+ (result.has(CompactWeatherResult.HAS_PRESSURE_VALUE) ? result.getPressureValue() : Float.NaN)
+					+ (result.has(CompactWeatherResult.HAS_WEATHER_NUMBER) ? result.getWeatherNumber()
+					: TemperatureHistoryLog.WEATHER_ID_UNKNOWN);
+		} finally {
+			result.recycle();
+		}
+	}
+}
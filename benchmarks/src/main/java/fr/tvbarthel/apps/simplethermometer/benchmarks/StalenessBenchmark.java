@@ -0,0 +1,62 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import fr.tvbarthel.apps.simplethermometer.RefreshScheduler;
+import fr.tvbarthel.apps.simplethermometer.TemperatureLoader;
+import fr.tvbarthel.apps.simplethermometer.utils.PreferenceUtils;
+
+/**
+ * Time of the checks run before each update to know if the stored temperature is outdated:
+ * {@link fr.tvbarthel.apps.simplethermometer.TemperatureLoader#isTemperatureOutdated(android.content.SharedPreferences, long)}
+ * and {@link fr.tvbarthel.apps.simplethermometer.RefreshScheduler#isRefreshDue(long)} which replaced it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StalenessBenchmark {
+
+	//the former update interval of the widgets (in Millis)
+	private static final long UPDATE_INTERVAL_IN_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private SharedPreferences mSharedPreferences;
+	private RefreshScheduler mRefreshScheduler;
+
+	@Setup
+	public void setUp() {
+		final BenchmarkContext context = new BenchmarkContext();
+		mSharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+		final SharedPreferences.Editor editor = mSharedPreferences.edit();
+		editor.putFloat(PreferenceUtils.PREF_KEY_LAST_TEMPERATURE_IN_CELSIUS, 21.47f);
+		editor.putLong(PreferenceUtils.PREF_KEY_LAST_UPDATE_TIME, System.currentTimeMillis());
+		editor.commit();
+		mRefreshScheduler = RefreshScheduler.getInstance(context);
+	}
+
+	@Benchmark
+	public boolean isTemperatureOutdated() {
+		return TemperatureLoader.isTemperatureOutdated(mSharedPreferences, UPDATE_INTERVAL_IN_MILLIS);
+	}
+
+	@Benchmark
+	public boolean isRefreshDue() {
+		return mRefreshScheduler.isRefreshDue(System.currentTimeMillis());
+	}
+}
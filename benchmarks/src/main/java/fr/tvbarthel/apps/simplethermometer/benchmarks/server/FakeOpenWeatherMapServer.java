@@ -0,0 +1,428 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat;
+
+/**
+ * A local stand-in of the current weather endpoint of the OpenWeatherMap Api, /data/2.5/weather.
+ * <p/>
+ * The weather answered is either a recorded response, see {@link #setRecordedResponse(WeatherFormat, byte[])},
+ * or a synthetic one computed from the requested location, which changes every {@link #setChangeInterval(long)}.
+ * The server behaves like the real Api:
+ * <ul>
+ * <li>the responses carry an ETag, a request sending it back gets a 304 while the weather has not changed,</li>
+ * <li>the responses are gzip compressed when the client accepts it.</li>
+ * </ul>
+ * and can misbehave on purpose: a latency can be added to each response, the requests above a rate are
+ * throttled with a 429, a part of the requests fail with a 500 and a part of the bodies are truncated.
+ * <p/>
+ * Point {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient#setEndpoint(String)}
+ * to {@link #getEndpoint()} to send the requests of the application to the server.
+ */
+public class FakeOpenWeatherMapServer {
+
+	public static final String PATH_WEATHER = "/data/2.5/weather";
+
+	private static final int HTTP_OK = 200;
+	private static final int HTTP_NOT_MODIFIED = 304;
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+	private static final int HTTP_INTERNAL_ERROR = 500;
+	private static final String PARAMETER_LATITUDE = "lat";
+	private static final String PARAMETER_LONGITUDE = "lon";
+	private static final String PARAMETER_MODE = "mode";
+
+	static {
+		//answer without waiting for the delayed acks of the client, read once by the http server
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer mHttpServer;
+	private final ExecutorService mExecutorService;
+
+	/*
+		Configuration, can be changed while the server is running
+	 */
+
+	//recorded responses by format, null for the synthetic ones
+	private volatile byte[] mRecordedXml;
+	private volatile byte[] mRecordedJson;
+	//the last body compressed, a recorded response is only compressed once
+	private volatile CompressedBody mLastCompressedBody;
+	//time during which a synthetic weather does not change (in Millis)
+	private volatile long mChangeIntervalInMillis = TimeUnit.MINUTES.toMillis(10);
+	//latency added to each response (in Millis), drawn between the min and the max
+	private volatile long mMinLatencyInMillis;
+	private volatile long mMaxLatencyInMillis;
+	//max number of requests answered per second, 0 for no limit
+	private volatile int mMaxRequestsPerSecond;
+	//part of the requests answered with an error, and of the bodies truncated
+	private volatile double mErrorRate;
+	private volatile double mTruncationRate;
+
+	/*
+		Throttling
+	 */
+
+	//the second of the current window and the number of requests received during it
+	private long mWindowSecond;
+	private int mWindowRequestCount;
+
+	/*
+		Counters
+	 */
+
+	private final AtomicLong mRequestCount = new AtomicLong();
+	private final AtomicLong mOkCount = new AtomicLong();
+	private final AtomicLong mNotModifiedCount = new AtomicLong();
+	private final AtomicLong mThrottledCount = new AtomicLong();
+	private final AtomicLong mErrorCount = new AtomicLong();
+	private final AtomicLong mTruncatedCount = new AtomicLong();
+	private final AtomicLong mBodyBytesSent = new AtomicLong();
+
+	/**
+	 * Create a server listening on the loopback interface.
+	 *
+	 * @param port    the port to listen to, 0 for any free port
+	 * @param threads the number of threads answering the requests
+	 * @throws IOException if the port can not be bound
+	 */
+	public FakeOpenWeatherMapServer(int port, int threads) throws IOException {
+		mHttpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		mExecutorService = Executors.newFixedThreadPool(threads);
+		mHttpServer.setExecutor(mExecutorService);
+		mHttpServer.createContext(PATH_WEATHER, new WeatherHandler());
+	}
+
+	public void start() {
+		mHttpServer.start();
+	}
+
+	public void stop() {
+		mHttpServer.stop(0);
+		mExecutorService.shutdownNow();
+	}
+
+	/**
+	 * @return the scheme and authority of the server, for instance "http://127.0.0.1:43210"
+	 */
+	public String getEndpoint() {
+		final InetSocketAddress address = mHttpServer.getAddress();
+		return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+	}
+
+	/**
+	 * Answer every request for {@code weatherFormat} with {@code body}.
+	 *
+	 * @param weatherFormat the {@link fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat} of the body
+	 * @param body          the recorded response, null to answer with synthetic ones
+	 */
+	public void setRecordedResponse(WeatherFormat weatherFormat, byte[] body) {
+		if (weatherFormat == WeatherFormat.JSON) {
+			mRecordedJson = body;
+		} else {
+			mRecordedXml = body;
+		}
+	}
+
+	/**
+	 * @param changeIntervalInMillis the time during which a synthetic weather does not change (in Millis)
+	 */
+	public void setChangeInterval(long changeIntervalInMillis) {
+		mChangeIntervalInMillis = changeIntervalInMillis;
+	}
+
+	/**
+	 * @param minLatencyInMillis the min time waited before each response (in Millis)
+	 * @param maxLatencyInMillis the max time waited before each response (in Millis)
+	 */
+	public void setLatency(long minLatencyInMillis, long maxLatencyInMillis) {
+		mMinLatencyInMillis = minLatencyInMillis;
+		mMaxLatencyInMillis = Math.max(minLatencyInMillis, maxLatencyInMillis);
+	}
+
+	/**
+	 * @param maxRequestsPerSecond the number of requests answered per second, the next ones get a 429. 0 for no limit.
+	 */
+	public void setThrottling(int maxRequestsPerSecond) {
+		mMaxRequestsPerSecond = maxRequestsPerSecond;
+	}
+
+	/**
+	 * @param errorRate the part of the requests answered with a 500, from 0 to 1
+	 */
+	public void setErrorRate(double errorRate) {
+		mErrorRate = errorRate;
+	}
+
+	/**
+	 * @param truncationRate the part of the bodies cut in the middle, from 0 to 1
+	 */
+	public void setTruncationRate(double truncationRate) {
+		mTruncationRate = truncationRate;
+	}
+
+	public long getRequestCount() {
+		return mRequestCount.get();
+	}
+
+	public long getOkCount() {
+		return mOkCount.get();
+	}
+
+	public long getNotModifiedCount() {
+		return mNotModifiedCount.get();
+	}
+
+	public long getThrottledCount() {
+		return mThrottledCount.get();
+	}
+
+	public long getErrorCount() {
+		return mErrorCount.get();
+	}
+
+	public long getTruncatedCount() {
+		return mTruncatedCount.get();
+	}
+
+	/**
+	 * @return the number of bytes of the bodies sent, after the compression
+	 */
+	public long getBodyBytesSent() {
+		return mBodyBytesSent.get();
+	}
+
+	/**
+	 * Reset the counters.
+	 */
+	public void resetCounters() {
+		mRequestCount.set(0);
+		mOkCount.set(0);
+		mNotModifiedCount.set(0);
+		mThrottledCount.set(0);
+		mErrorCount.set(0);
+		mTruncatedCount.set(0);
+		mBodyBytesSent.set(0);
+	}
+
+	/*
+		Private Methods
+	 */
+
+	/**
+	 * @return true if the request received at {@code nowInMillis} is above the rate
+	 */
+	private synchronized boolean isThrottled(long nowInMillis) {
+		final int maxRequestsPerSecond = mMaxRequestsPerSecond;
+		if (maxRequestsPerSecond <= 0) {
+			return false;
+		}
+		final long second = nowInMillis / 1000;
+		if (second != mWindowSecond) {
+			mWindowSecond = second;
+			mWindowRequestCount = 0;
+		}
+		return ++mWindowRequestCount > maxRequestsPerSecond;
+	}
+
+	/**
+	 * Return the body answered to a request for {@code weatherFormat} at the location
+	 */
+	private byte[] getBody(WeatherFormat weatherFormat, double latitude, double longitude, long nowInMillis) {
+		final byte[] recorded = weatherFormat == WeatherFormat.JSON ? mRecordedJson : mRecordedXml;
+		if (recorded != null) {
+			return recorded;
+		}
+		//the same weather for the same location during the change interval
+		final long version = nowInMillis / Math.max(1, mChangeIntervalInMillis);
+		final Random random = new Random(Double.doubleToLongBits(latitude) * 31 + Double.doubleToLongBits(longitude) + version);
+		final float temperature = Math.round((25 - Math.abs((float) latitude) / 3 + random.nextFloat() * 6) * 100) / 100f;
+		final int humidity = 40 + random.nextInt(60);
+		final float pressure = Math.round((990 + random.nextFloat() * 40) * 100) / 100f;
+		final float windSpeed = Math.round(random.nextFloat() * 1200) / 100f;
+		final int windDirection = random.nextInt(360);
+		final int clouds = random.nextInt(100);
+		final int weatherNumber = random.nextBoolean() ? 800 : 500 + random.nextInt(5);
+		final String text;
+		if (weatherFormat == WeatherFormat.JSON) {
+			text = String.format(Locale.US, "{\"coord\":{\"lon\":%.4f,\"lat\":%.4f},"
+							+ "\"sys\":{\"country\":\"FR\",\"sunrise\":1378963124,\"sunset\":1379009311},"
+							+ "\"weather\":[{\"id\":%d,\"main\":\"Clouds\",\"description\":\"synthetic weather\",\"icon\":\"04d\"}],"
+							+ "\"base\":\"gdps stations\","
+							+ "\"main\":{\"temp\":%.2f,\"humidity\":%d,\"pressure\":%.2f,\"temp_min\":%.2f,\"temp_max\":%.2f},"
+							+ "\"wind\":{\"speed\":%.2f,\"deg\":%d},\"clouds\":{\"all\":%d},\"dt\":%d,"
+							+ "\"id\":%d,\"name\":\"Synthetic\",\"cod\":200}",
+					longitude, latitude, weatherNumber, temperature, humidity, pressure, temperature - 1, temperature + 1,
+					windSpeed, windDirection, clouds, nowInMillis / 1000, 1000000 + random.nextInt(1000000));
+		} else {
+			text = String.format(Locale.US, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<current>"
+							+ "<city id=\"%d\" name=\"Synthetic\"><coord lon=\"%.4f\" lat=\"%.4f\"/><country>FR</country>"
+							+ "<sun rise=\"2013-09-12T05:18:44\" set=\"2013-09-12T18:08:31\"/></city>"
+							+ "<temperature value=\"%.2f\" min=\"%.2f\" max=\"%.2f\" unit=\"celsius\"/>"
+							+ "<humidity value=\"%d\" unit=\"%%\"/><pressure value=\"%.2f\" unit=\"hPa\"/>"
+							+ "<wind><speed value=\"%.2f\" name=\"Breeze\"/><direction value=\"%d\" code=\"N\" name=\"North\"/></wind>"
+							+ "<clouds value=\"%d\" name=\"synthetic clouds\"/><precipitation mode=\"no\"/>"
+							+ "<weather number=\"%d\" value=\"synthetic weather\" icon=\"04d\"/>"
+							+ "<lastupdate value=\"2013-09-12T14:05:37\"/></current>",
+					1000000 + random.nextInt(1000000), longitude, latitude, temperature, temperature - 1, temperature + 1,
+					humidity, pressure, windSpeed, windDirection, clouds, weatherNumber);
+		}
+		try {
+			return text.getBytes("UTF-8");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Return {@code body} compressed with gzip
+	 */
+	private byte[] getCompressedBody(byte[] body) throws IOException {
+		final CompressedBody last = mLastCompressedBody;
+		if (last != null && last.mBody == body) {
+			return last.mCompressed;
+		}
+		final CompressedBody compressedBody = new CompressedBody(body, gzip(body));
+		mLastCompressedBody = compressedBody;
+		return compressedBody.mCompressed;
+	}
+
+	private static String getParameter(String query, String name) {
+		if (query == null) {
+			return null;
+		}
+		for (String parameter : query.split("&")) {
+			final int separator = parameter.indexOf('=');
+			if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+				return parameter.substring(separator + 1);
+			}
+		}
+		return null;
+	}
+
+	private static double getCoordinate(String query, String name) {
+		final String value = getParameter(query, name);
+		try {
+			return value == null ? 0 : Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+		gzipOut.write(body);
+		gzipOut.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * A body and its gzip compressed bytes
+	 */
+	private static final class CompressedBody {
+		private final byte[] mBody;
+		private final byte[] mCompressed;
+
+		private CompressedBody(byte[] body, byte[] compressed) {
+			mBody = body;
+			mCompressed = compressed;
+		}
+	}
+
+	/**
+	 * Answer the requests of the current weather
+	 */
+	private final class WeatherHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				mRequestCount.incrementAndGet();
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				final long latency = mMinLatencyInMillis + (mMaxLatencyInMillis > mMinLatencyInMillis
+						? random.nextLong(mMaxLatencyInMillis - mMinLatencyInMillis + 1) : 0);
+				if (latency > 0) {
+					Thread.sleep(latency);
+				}
+
+				final long now = System.currentTimeMillis();
+				if (isThrottled(now)) {
+					mThrottledCount.incrementAndGet();
+					exchange.sendResponseHeaders(HTTP_TOO_MANY_REQUESTS, -1);
+					return;
+				}
+				if (random.nextDouble() < mErrorRate) {
+					mErrorCount.incrementAndGet();
+					exchange.sendResponseHeaders(HTTP_INTERNAL_ERROR, -1);
+					return;
+				}
+
+				final String query = exchange.getRequestURI().getRawQuery();
+				final WeatherFormat weatherFormat = WeatherFormat.JSON.getMode().equals(getParameter(query, PARAMETER_MODE))
+						? WeatherFormat.JSON : WeatherFormat.XML;
+				final byte[] body = getBody(weatherFormat, getCoordinate(query, PARAMETER_LATITUDE),
+						getCoordinate(query, PARAMETER_LONGITUDE), now);
+
+				final Headers responseHeaders = exchange.getResponseHeaders();
+				final String eTag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+				responseHeaders.set("ETag", eTag);
+				if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					mNotModifiedCount.incrementAndGet();
+					exchange.sendResponseHeaders(HTTP_NOT_MODIFIED, -1);
+					return;
+				}
+
+				responseHeaders.set("Content-Type", weatherFormat == WeatherFormat.JSON
+						? "application/json; charset=utf-8" : "text/xml; charset=utf-8");
+				final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				final byte[] encodedBody;
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+					responseHeaders.set("Content-Encoding", "gzip");
+					encodedBody = getCompressedBody(body);
+				} else {
+					encodedBody = body;
+				}
+
+				exchange.sendResponseHeaders(HTTP_OK, encodedBody.length);
+				final OutputStream out = exchange.getResponseBody();
+				if (random.nextDouble() < mTruncationRate) {
+					//announce the whole body but only send its first half,
+					//closing the exchange before the end of the body closes the connection
+					mTruncatedCount.incrementAndGet();
+					out.write(encodedBody, 0, encodedBody.length / 2);
+					out.flush();
+					mBodyBytesSent.addAndGet(encodedBody.length / 2);
+					return;
+				}
+				out.write(encodedBody);
+				out.close();
+				mOkCount.incrementAndGet();
+				mBodyBytesSent.addAndGet(encodedBody.length);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks.server;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.tvbarthel.apps.simplethermometer.R;
+import fr.tvbarthel.apps.simplethermometer.benchmarks.BenchmarkContext;
+import fr.tvbarthel.apps.simplethermometer.benchmarks.Fixtures;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserAsyncTask;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat;
+
+/**
+ * Run the fetch and parse path of the application, {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserAsyncTask}
+ * over the shared {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient},
+ * at high concurrency against a {@link fr.tvbarthel.apps.simplethermometer.benchmarks.server.FakeOpenWeatherMapServer}.
+ * The p50 and p99 latencies, the throughput and the outcome of the requests are reported.
+ * <p/>
+ * The options are given as name=value arguments, for instance:
+ * ./gradlew :benchmarks:loadDriver -PloadDriver="requests=5000 concurrency=64 latency=20-80 errors=0.01"
+ * <ul>
+ * <li>requests: the number of measured requests, 2000 by default</li>
+ * <li>concurrency: the number of requests running at the same time, 32 by default</li>
+ * <li>cells: the number of distinct locations requested, 10 by default. The client remembers the validators
+ * of 16 urls, more cells than that never get a 304.</li>
+ * <li>format: xml or json, xml by default</li>
+ * <li>fields: all or projected (the fields used by the application), projected by default</li>
+ * <li>fixture: small, medium or large to answer a recorded response, synthetic ones by default</li>
+ * <li>latency: the latency added by the server in Millis, "min-max" or a single value, 0 by default</li>
+ * <li>throttle: the max number of requests per second answered by the server, no limit by default</li>
+ * <li>errors: the part of the requests answered with a 500, 0 by default</li>
+ * <li>truncations: the part of the bodies truncated, 0 by default</li>
+ * </ul>
+ */
+public class LoadDriver {
+
+	//the fields requested by the TemperatureLoader
+	private static final int PROJECTED_FIELDS = OpenWeatherMapParser.FIELD_CITY
+			| OpenWeatherMapParser.FIELD_TEMPERATURE
+			| OpenWeatherMapParser.FIELD_HUMIDITY
+			| OpenWeatherMapParser.FIELD_PRESSURE
+			| OpenWeatherMapParser.FIELD_WIND
+			| OpenWeatherMapParser.FIELD_WEATHER;
+	//size of the grid cells, as the ObservationCache (in Degrees)
+	private static final double CELL_SIZE_IN_DEGREES = 0.05;
+
+	private final BenchmarkContext mContext = new BenchmarkContext();
+	private final OpenWeatherMapHttpClient mHttpClient = OpenWeatherMapHttpClient.getInstance();
+	private final String mUrlFormat = mContext.getString(R.string.url_open_weather_api);
+	private final WeatherFormat mWeatherFormat;
+	private final int mFields;
+	private final int mCellCount;
+
+	//outcome of the requests
+	private final AtomicInteger mSuccessCount = new AtomicInteger();
+	private final AtomicInteger mNotModifiedCount = new AtomicInteger();
+	private final Map<Integer, AtomicInteger> mFailureCounts = new HashMap<Integer, AtomicInteger>();
+
+	public LoadDriver(WeatherFormat weatherFormat, int fields, int cellCount) {
+		mWeatherFormat = weatherFormat;
+		mFields = fields;
+		mCellCount = cellCount;
+		for (int errorMessage : new int[]{R.string.error_message_server_not_available, R.string.error_message_malformed_url,
+				R.string.error_message_io_exception, R.string.error_message_parser_exception}) {
+			mFailureCounts.put(errorMessage, new AtomicInteger());
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		final Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			final int separator = arg.indexOf('=');
+			if (separator <= 0) {
+				throw new IllegalArgumentException("Expected name=value, got " + arg);
+			}
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		final int requestCount = Integer.parseInt(getOption(options, "requests", "2000"));
+		final int concurrency = Integer.parseInt(getOption(options, "concurrency", "32"));
+		final int cellCount = Integer.parseInt(getOption(options, "cells", "10"));
+		final WeatherFormat weatherFormat = WeatherFormat.valueOf(getOption(options, "format", "xml").toUpperCase(Locale.US));
+		final int fields = "all".equals(getOption(options, "fields", "projected")) ? OpenWeatherMapParser.FIELD_ALL : PROJECTED_FIELDS;
+		final String fixture = getOption(options, "fixture", null);
+		final String[] latency = getOption(options, "latency", "0").split("-");
+
+		final FakeOpenWeatherMapServer server = new FakeOpenWeatherMapServer(0, concurrency);
+		if (fixture != null) {
+			server.setRecordedResponse(weatherFormat, Fixtures.read("weather_" + fixture, "." + weatherFormat.getMode()));
+		}
+		server.setLatency(Long.parseLong(latency[0]), Long.parseLong(latency[latency.length - 1]));
+		server.setThrottling(Integer.parseInt(getOption(options, "throttle", "0")));
+		server.setErrorRate(Double.parseDouble(getOption(options, "errors", "0")));
+		server.setTruncationRate(Double.parseDouble(getOption(options, "truncations", "0")));
+		server.start();
+
+		try {
+			final LoadDriver loadDriver = new LoadDriver(weatherFormat, fields, cellCount);
+			loadDriver.mHttpClient.setEndpoint(server.getEndpoint());
+
+			//warm up the connections, the parsers and the JIT
+			loadDriver.run(Math.max(concurrency * 4, requestCount / 10), concurrency);
+			loadDriver.resetOutcomes();
+			server.resetCounters();
+
+			final long start = System.nanoTime();
+			final long[] latencies = loadDriver.run(requestCount, concurrency);
+			final long elapsed = System.nanoTime() - start;
+			loadDriver.report(latencies, elapsed, server);
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Run {@code requestCount} requests, {@code concurrency} at a time.
+	 *
+	 * @return the latency of each request (in Nanos)
+	 */
+	public long[] run(int requestCount, int concurrency) throws InterruptedException {
+		final long[] latencies = new long[requestCount];
+		final CountDownLatch done = new CountDownLatch(requestCount);
+		final ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+		try {
+			for (int i = 0; i < requestCount; i++) {
+				//the locations are spread on the cells, as the devices of a city
+				final int cell = i % mCellCount;
+				final String url = String.format(Locale.US, mUrlFormat, 48 + cell * CELL_SIZE_IN_DEGREES,
+						2 + cell * CELL_SIZE_IN_DEGREES, mWeatherFormat.getMode());
+				final Request request = new Request(latencies, i, done);
+				new OpenWeatherMapParserAsyncTask(request, mHttpClient, mWeatherFormat, mFields)
+						.executeOnExecutor(executorService, url);
+			}
+			done.await();
+		} finally {
+			executorService.shutdown();
+		}
+		return latencies;
+	}
+
+	private void resetOutcomes() {
+		mSuccessCount.set(0);
+		mNotModifiedCount.set(0);
+		for (AtomicInteger failureCount : mFailureCounts.values()) {
+			failureCount.set(0);
+		}
+	}
+
+	private void report(long[] latencies, long elapsedInNanos, FakeOpenWeatherMapServer server) {
+		Arrays.sort(latencies);
+		final double seconds = elapsedInNanos / 1e9;
+		System.out.println(String.format(Locale.US, "requests      %d in %.2f s, %.1f requests/s",
+				latencies.length, seconds, latencies.length / seconds));
+		System.out.println(String.format(Locale.US, "latency       p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+				getPercentile(latencies, 0.50) / 1e6, getPercentile(latencies, 0.99) / 1e6,
+				latencies[latencies.length - 1] / 1e6));
+		System.out.println("outcomes      success " + mSuccessCount.get() + ", not modified " + mNotModifiedCount.get());
+		for (Map.Entry<Integer, AtomicInteger> failureCount : mFailureCounts.entrySet()) {
+			if (failureCount.getValue().get() > 0) {
+				System.out.println("              " + mContext.getString(failureCount.getKey()) + " " + failureCount.getValue().get());
+			}
+		}
+		System.out.println("server        200 " + server.getOkCount() + ", 304 " + server.getNotModifiedCount()
+				+ ", 429 " + server.getThrottledCount() + ", 500 " + server.getErrorCount()
+				+ ", truncated " + server.getTruncatedCount());
+		System.out.println(String.format(Locale.US, "body bytes    %d, %.1f per request",
+				server.getBodyBytesSent(), (double) server.getBodyBytesSent() / Math.max(1, server.getRequestCount())));
+	}
+
+	private static long getPercentile(long[] sortedValues, double percentile) {
+		return sortedValues[(int) Math.ceil(percentile * sortedValues.length) - 1];
+	}
+
+	private static String getOption(Map<String, String> options, String name, String defaultValue) {
+		final String value = options.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * A request of the load, records its latency and its outcome
+	 */
+	private final class Request implements OpenWeatherMapParserAsyncTask.Listener {
+		private final long[] mLatencies;
+		private final int mIndex;
+		private final CountDownLatch mDone;
+		//time at which the task started to run, the time spent waiting for a thread is not measured
+		private long mStartTime;
+
+		private Request(long[] latencies, int index, CountDownLatch done) {
+			mLatencies = latencies;
+			mIndex = index;
+			mDone = done;
+		}
+
+		private void end() {
+			mLatencies[mIndex] = System.nanoTime() - mStartTime;
+			mDone.countDown();
+		}
+
+		@Override
+		public void onWeatherLoadingSuccess(CompactWeatherResult result) {
+			mSuccessCount.incrementAndGet();
+			end();
+		}
+
+		@Override
+		public void onWeatherNotModified() {
+			mNotModifiedCount.incrementAndGet();
+			end();
+		}
+
+		@Override
+		public void onWeatherLoadingFail(int stringResourceId) {
+			mFailureCounts.get(stringResourceId).incrementAndGet();
+			end();
+		}
+
+		@Override
+		public void onWeatherLoadingProgress(int progress) {
+			if (progress == 0) {
+				//the task starts to run
+				mStartTime = System.nanoTime();
+			}
+		}
+
+		@Override
+		public void onWeatherLoadingCancelled() {
+			end();
+		}
+	}
+}
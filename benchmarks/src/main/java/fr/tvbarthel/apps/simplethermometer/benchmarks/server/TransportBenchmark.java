@@ -0,0 +1,126 @@
+package fr.tvbarthel.apps.simplethermometer.benchmarks.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import fr.tvbarthel.apps.simplethermometer.benchmarks.Fixtures;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParser;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapParserResult;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherFormat;
+import fr.tvbarthel.apps.simplethermometer.openweathermap.WeatherParserException;
+
+/**
+ * Time of a weather refresh, the request and the parsing of its response, against a local
+ * {@link fr.tvbarthel.apps.simplethermometer.benchmarks.server.FakeOpenWeatherMapServer}:
+ * <ul>
+ * <li>{@link #newConnection()}: the transport used before the shared http client, a new connection per
+ * request and an identity body,</li>
+ * <li>{@link #pooledGzip()}: {@link fr.tvbarthel.apps.simplethermometer.openweathermap.OpenWeatherMapHttpClient},
+ * a kept-alive connection and a gzip body, the validators are forgotten so that each request gets the whole body,</li>
+ * <li>{@link #pooledGzipRevalidated()}: the same client sending back the validators, the weather does not change
+ * so each request gets a 304.</li>
+ * </ul>
+ * The bytes of body sent per request, after the compression, are printed at the end of each iteration.
+ * The server adds {@link #latency} Millis to each response, the latency of a round trip on the loopback
+ * interface being far below the one of a mobile network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+
+	//size of the buffer used to read the responses, as the http client
+	private static final int BUFFER_SIZE_IN_BYTES = 8192;
+	//connect timeout of the previous transport (in Millis)
+	private static final int CONNECT_TIMEOUT_IN_MILLIS = 10000;
+
+	@Param({Fixtures.WEATHER_MEDIUM, Fixtures.WEATHER_LARGE})
+	public String fixture;
+
+	@Param({"0"})
+	public long latency;
+
+	private FakeOpenWeatherMapServer mServer;
+	private OpenWeatherMapHttpClient mHttpClient;
+	private OpenWeatherMapParser mParser;
+	//the url of the weather, on the OpenWeatherMap Api and on the server
+	private String mApiUrl;
+	private String mServerUrl;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mServer = new FakeOpenWeatherMapServer(0, 1);
+		mServer.setRecordedResponse(WeatherFormat.XML, Fixtures.read(fixture, Fixtures.EXTENSION_XML));
+		mServer.setLatency(latency, latency);
+		mServer.start();
+
+		mHttpClient = OpenWeatherMapHttpClient.getInstance();
+		mHttpClient.setEndpoint(mServer.getEndpoint());
+		mParser = new OpenWeatherMapParser();
+		final String path = FakeOpenWeatherMapServer.PATH_WEATHER + "?lat=48.85&lon=2.35&mode=xml";
+		mApiUrl = OpenWeatherMapHttpClient.DEFAULT_ENDPOINT + path;
+		mServerUrl = mServer.getEndpoint() + path;
+	}
+
+	@TearDown(Level.Iteration)
+	public void printBodyBytes() {
+		final long requestCount = mServer.getRequestCount();
+		if (requestCount > 0) {
+			System.out.println(String.format(Locale.US, "%n%d requests, %.0f bytes of body per request",
+					requestCount, (double) mServer.getBodyBytesSent() / requestCount));
+		}
+		mServer.resetCounters();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mHttpClient.setEndpoint(null);
+		mServer.stop();
+	}
+
+	@Benchmark
+	public OpenWeatherMapParserResult newConnection() throws IOException, WeatherParserException {
+		final URLConnection urlConnection = new URL(mServerUrl).openConnection();
+		urlConnection.setConnectTimeout(CONNECT_TIMEOUT_IN_MILLIS);
+		//the previous parser closed the body before its end, which dropped the connection
+		urlConnection.setRequestProperty("Connection", "close");
+		final InputStream inputStream = new BufferedInputStream(urlConnection.getInputStream(), BUFFER_SIZE_IN_BYTES);
+		return mParser.parse(inputStream, OpenWeatherMapParser.FIELD_ALL);
+	}
+
+	@Benchmark
+	public OpenWeatherMapParserResult pooledGzip() throws IOException, WeatherParserException {
+		mHttpClient.forgetValidators(mApiUrl);
+		return mParser.parse(mHttpClient.get(mApiUrl), OpenWeatherMapParser.FIELD_ALL);
+	}
+
+	@Benchmark
+	public OpenWeatherMapParserResult pooledGzipRevalidated() throws IOException, WeatherParserException {
+		final InputStream inputStream = mHttpClient.get(mApiUrl);
+		//null when the server answered a 304, the last result is still fresh
+		return inputStream == null ? null : mParser.parse(inputStream, OpenWeatherMapParser.FIELD_ALL);
+	}
+}
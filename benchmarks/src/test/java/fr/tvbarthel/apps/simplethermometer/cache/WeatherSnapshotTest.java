@@ -0,0 +1,113 @@
+package fr.tvbarthel.apps.simplethermometer.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that a {@link fr.tvbarthel.apps.simplethermometer.cache.WeatherSnapshot} keeps the
+ * {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult} it is built from once recycled,
+ * and that it is decoded as encoded, the missing values included.
+ */
+public class WeatherSnapshotTest {
+
+	private static final long TIME_IN_MILLIS = 1378944000000L;
+
+	@Test
+	public void keepsTheResultOnceRecycled() {
+		final CompactWeatherResult result = CompactWeatherResult.obtain();
+		result.setTemperatureValue(21.47f);
+		result.setCityName("Paris");
+		final WeatherSnapshot snapshot = new WeatherSnapshot(result, TIME_IN_MILLIS);
+		result.recycle();
+
+		assertTrue(snapshot.getResult().has(CompactWeatherResult.HAS_TEMPERATURE_VALUE));
+		assertEquals(21.47f, snapshot.getResult().getTemperatureValue(), 0f);
+		assertEquals("Paris", snapshot.getResult().getCityName());
+	}
+
+	@Test
+	public void roundTripsAFullResult() throws IOException {
+		final CompactWeatherResult result = new CompactWeatherResult();
+		result.setCityId(2988507);
+		result.setLongitude(2.35f);
+		result.setLatitude(48.85f);
+		result.setTemperatureValue(21.47f);
+		result.setTemperatureMax(23f);
+		result.setTemperatureMin(-0f);
+		result.setHumidityValue(64f);
+		result.setPressureValue(1005.09f);
+		result.setWindSpeedValue(3.6f);
+		result.setWindDirectionValue(250f);
+		result.setCloudValue(0f);
+		result.setWeatherNumber(800);
+		result.setCityName("Paris");
+		result.setCountry("FR");
+		result.setSunRise("2013-09-12T05:23:41");
+		result.setSunSet("2013-09-12T18:07:45");
+		result.setTemperatureUnit("celsius");
+		result.setHumidityUnit("%");
+		result.setPressureUnit("hPa");
+		result.setWindSpeedName("Gentle Breeze");
+		result.setWindDirectionCode("WSW");
+		result.setWindDirectionName("West-southwest");
+		result.setCloudName("sky is clear");
+		result.setPrecipitationMode("no");
+		result.setWeatherValue("Sky is Clear");
+		result.setWeatherIcon("01d");
+		result.setLastUpdate("2013-09-12T14:20:00");
+
+		final WeatherSnapshot snapshot = roundTrip(result);
+		assertEquals(TIME_IN_MILLIS, snapshot.getTimeInMillis());
+		final CompactWeatherResult decoded = snapshot.getResult();
+		assertEquals(result.getPresence(), decoded.getPresence());
+		assertEquals(2988507, decoded.getCityId());
+		assertEquals(Float.floatToIntBits(-0f), Float.floatToIntBits(decoded.getTemperatureMin()));
+		assertEquals(1005.09f, decoded.getPressureValue(), 0f);
+		assertEquals(800, decoded.getWeatherNumber());
+		assertEquals("West-southwest", decoded.getWindDirectionName());
+		assertEquals("2013-09-12T14:20:00", decoded.getLastUpdate());
+	}
+
+	@Test
+	public void roundTripsTheMissingValues() throws IOException {
+		final CompactWeatherResult result = CompactWeatherResult.obtain();
+		//values left by a previous use of a pooled instance
+		result.setHumidityValue(70f);
+		result.setWeatherNumber(500);
+		result.setCountry("FR");
+		result.reset();
+		result.setTemperatureValue(12.5f);
+		result.setCityName("S\u00e3o Paulo");
+
+		final byte[] encoded = new WeatherSnapshot(result, TIME_IN_MILLIS).encode();
+		final CompactWeatherResult decoded = WeatherSnapshot.decode(ByteBuffer.wrap(encoded)).getResult();
+		result.recycle();
+
+		assertEquals(CompactWeatherResult.HAS_TEMPERATURE_VALUE, decoded.getPresence());
+		assertFalse(decoded.has(CompactWeatherResult.HAS_HUMIDITY_VALUE));
+		assertFalse(decoded.has(CompactWeatherResult.HAS_WEATHER_NUMBER));
+		assertEquals(12.5f, decoded.getTemperatureValue(), 0f);
+		assertEquals("S\u00e3o Paulo", decoded.getCityName());
+		assertNull(decoded.getCountry());
+		//a missing value is written as 0, not as the value left in the pooled instance
+		assertArrayEquals(encoded, new WeatherSnapshot(decoded, TIME_IN_MILLIS).encode());
+	}
+
+	/*
+		Private Methods
+	 */
+
+	private static WeatherSnapshot roundTrip(CompactWeatherResult result) throws IOException {
+		return WeatherSnapshot.decode(ByteBuffer.wrap(new WeatherSnapshot(result, TIME_IN_MILLIS).encode()));
+	}
+}
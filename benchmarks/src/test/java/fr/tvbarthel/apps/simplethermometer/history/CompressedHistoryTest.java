@@ -0,0 +1,210 @@
+package fr.tvbarthel.apps.simplethermometer.history;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import fr.tvbarthel.apps.simplethermometer.benchmarks.HistorySeries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Check that the observations encoded by a {@link fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryEncoder}
+ * are decoded bit for bit by a {@link fr.tvbarthel.apps.simplethermometer.history.CompressedHistoryDecoder}.
+ */
+public class CompressedHistoryTest {
+
+	@Rule
+	public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void roundTripsNoObservation() throws IOException {
+		final CompressedHistoryDecoder decoder = new CompressedHistoryDecoder(encode(new CompressedHistoryEncoder()));
+		assertEquals(0, decoder.getCount());
+		assertFalse(decoder.moveToNext());
+	}
+
+	@Test
+	public void roundTripsASingleObservation() throws IOException {
+		final Series series = new Series(1);
+		series.set(0, 1378944000000L, 21.47f, Float.NaN, 1005.09f, 800);
+		assertRoundTrip(series);
+	}
+
+	@Test
+	public void roundTripsTheMissingHumidities() throws IOException {
+		final Series series = new Series(6);
+		series.set(0, 1000, 20f, Float.NaN, 1000f, 800);
+		series.set(1, 2000, 20f, 70f, 1000f, 800);
+		series.set(2, 3000, 20f, Float.NaN, 1000f, 800);
+		//another NaN, its payload is kept
+		series.set(3, 4000, 20f, Float.intBitsToFloat(0x7fc00001), 1000f, 800);
+		series.set(4, 5000, 20f, Float.NaN, Float.NaN, 800);
+		series.set(5, 6000, -0f, Float.POSITIVE_INFINITY, 1000f, TemperatureHistoryLog.WEATHER_ID_UNKNOWN);
+		assertRoundTrip(series);
+	}
+
+	@Test
+	public void roundTripsEveryBucketOfTimeDifference() throws IOException {
+		//the differences of intervals on the bounds of the 7, 9, 12, 32 and 64 bit buckets
+		final long[] differences = {0, 1, -1, 63, -64, 64, -65, 255, -256, 256, -257, 2047, -2048, 2048, -2049,
+				Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE + 1L, Integer.MIN_VALUE - 1L,
+				Long.MAX_VALUE / 4, Long.MIN_VALUE / 4};
+		final Series series = new Series(differences.length + 2);
+		long time = Long.MIN_VALUE / 2;
+		long interval = 0;
+		for (int i = 0; i < series.mCount; i++) {
+			if (i >= 2) {
+				interval += differences[i - 2];
+			}
+			time += interval;
+			series.set(i, time, i, i, i, i);
+		}
+		assertRoundTrip(series);
+	}
+
+	@Test
+	public void roundTripsTheExtremeTimes() throws IOException {
+		final Series series = new Series(5);
+		series.set(0, Long.MIN_VALUE, 1f, 1f, 1f, Integer.MIN_VALUE);
+		series.set(1, -1, 1f, 1f, 1f, Integer.MAX_VALUE);
+		series.set(2, 0, 1f, 1f, 1f, -1);
+		series.set(3, Long.MAX_VALUE - 1, 1f, 1f, 1f, 0);
+		series.set(4, Long.MAX_VALUE, 1f, 1f, 1f, 0);
+		assertRoundTrip(series);
+	}
+
+	@Test
+	public void roundTripsRandomBits() throws IOException {
+		final Random random = new Random(3);
+		final Series series = new Series(20000);
+		for (int i = 0; i < series.mCount; i++) {
+			series.set(i, random.nextLong(), Float.intBitsToFloat(random.nextInt()), Float.intBitsToFloat(random.nextInt()),
+					Float.intBitsToFloat(random.nextInt()), random.nextInt());
+		}
+		assertRoundTrip(series);
+	}
+
+	@Test
+	public void roundTripsAGeneratedHistory() throws IOException {
+		final HistorySeries historySeries = new HistorySeries(365 * 48, true, 7);
+		final Series series = new Series(historySeries.mTimes.length);
+		for (int i = 0; i < series.mCount; i++) {
+			series.set(i, historySeries.mTimes[i], historySeries.mTemperatures[i], historySeries.mHumidities[i],
+					historySeries.mPressures[i], historySeries.mWeatherIds[i]);
+		}
+		final byte[] bytes = assertRoundTrip(series);
+		assertTrue("Not compressed: " + bytes.length + " bytes",
+				bytes.length < series.mCount * TemperatureHistoryLog.RECORD_SIZE_IN_BYTES / 2);
+	}
+
+	@Test
+	public void exportsAndImportsALog() throws IOException {
+		final TemperatureHistoryLog log = new TemperatureHistoryLog(mTemporaryFolder.newFile("source.log"));
+		final HistorySeries historySeries = new HistorySeries(1000, true, 11);
+		for (int i = 0; i < historySeries.mTimes.length; i++) {
+			log.append(historySeries.mTimes[i], historySeries.mTemperatures[i], historySeries.mHumidities[i],
+					historySeries.mPressures[i], historySeries.mWeatherIds[i]);
+		}
+		final File file = mTemporaryFolder.newFile("history.sthc");
+		assertEquals(1000, CompressedHistoryEncoder.export(log, file));
+
+		final TemperatureHistoryLog importedLog = new TemperatureHistoryLog(mTemporaryFolder.newFile("imported.log"));
+		assertEquals(1000, CompressedHistoryDecoder.importInto(file, importedLog));
+		//already imported, the last observation included
+		assertEquals(0, CompressedHistoryDecoder.importInto(file, importedLog));
+		assertEquals(log.getRecords(0, 1000), importedLog.getRecords(0, 1000));
+		log.close();
+		importedLog.close();
+	}
+
+	@Test
+	public void rejectsATruncatedHistory() throws IOException {
+		final CompressedHistoryEncoder encoder = new CompressedHistoryEncoder();
+		encoder.add(1000, 20f, 70f, 1000f, 800);
+		encoder.add(2000, 21f, 71f, 1001f, 801);
+		final byte[] bytes = encode(encoder);
+		final byte[] truncated = new byte[bytes.length - 1];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		try {
+			new CompressedHistoryDecoder(truncated);
+			fail("A truncated history is decoded");
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	/*
+		Private Methods
+	 */
+
+	private static byte[] encode(CompressedHistoryEncoder encoder) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoder.writeTo(out);
+		assertEquals(encoder.getSizeInBytes(), out.size());
+		return out.toByteArray();
+	}
+
+	private static byte[] assertRoundTrip(Series series) throws IOException {
+		final CompressedHistoryEncoder encoder = new CompressedHistoryEncoder();
+		for (int i = 0; i < series.mCount; i++) {
+			encoder.add(series.mTimes[i], series.mTemperatures[i], series.mHumidities[i], series.mPressures[i],
+					series.mWeatherIds[i]);
+		}
+		final byte[] bytes = encode(encoder);
+
+		final CompressedHistoryDecoder decoder = new CompressedHistoryDecoder(bytes);
+		assertEquals(series.mCount, decoder.getCount());
+		for (int i = 0; i < series.mCount; i++) {
+			assertTrue(decoder.moveToNext());
+			assertEquals("time " + i, series.mTimes[i], decoder.getTimeInMillis());
+			assertBits("temperature " + i, series.mTemperatures[i], decoder.getTemperatureInCelsius());
+			assertBits("humidity " + i, series.mHumidities[i], decoder.getHumidity());
+			assertBits("pressure " + i, series.mPressures[i], decoder.getPressure());
+			assertEquals("weather " + i, series.mWeatherIds[i], decoder.getWeatherId());
+		}
+		assertFalse(decoder.moveToNext());
+		return bytes;
+	}
+
+	private static void assertBits(String message, float expected, float actual) {
+		assertEquals(message, Float.floatToRawIntBits(expected), Float.floatToRawIntBits(actual));
+	}
+
+	/**
+	 * The observations given to the encoder
+	 */
+	private static final class Series {
+		private final int mCount;
+		private final long[] mTimes;
+		private final float[] mTemperatures;
+		private final float[] mHumidities;
+		private final float[] mPressures;
+		private final int[] mWeatherIds;
+
+		private Series(int count) {
+			mCount = count;
+			mTimes = new long[count];
+			mTemperatures = new float[count];
+			mHumidities = new float[count];
+			mPressures = new float[count];
+			mWeatherIds = new int[count];
+		}
+
+		private void set(int index, long time, float temperature, float humidity, float pressure, int weatherId) {
+			mTimes[index] = time;
+			mTemperatures[index] = temperature;
+			mHumidities[index] = humidity;
+			mPressures[index] = pressure;
+			mWeatherIds[index] = weatherId;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Check that the pool of {@link fr.tvbarthel.apps.simplethermometer.openweathermap.CompactWeatherResult}
+ * never hands the same instance out twice.
+ */
+public class CompactWeatherResultTest {
+
+	@Test
+	public void recyclesAnEmptyInstance() {
+		final CompactWeatherResult result = CompactWeatherResult.obtain();
+		result.setTemperatureValue(21.47f);
+		result.setCityName("Paris");
+		result.recycle();
+
+		final CompactWeatherResult reused = CompactWeatherResult.obtain();
+		assertFalse(reused.has(CompactWeatherResult.HAS_TEMPERATURE_VALUE));
+		assertNull(reused.getCityName());
+		reused.recycle();
+	}
+
+	@Test
+	public void rejectsASecondRecycle() {
+		final CompactWeatherResult result = CompactWeatherResult.obtain();
+		result.recycle();
+		try {
+			result.recycle();
+			fail("A CompactWeatherResult is recycled twice");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+
+		final CompactWeatherResult first = CompactWeatherResult.obtain();
+		final CompactWeatherResult second = CompactWeatherResult.obtain();
+		assertNotSame(first, second);
+		first.recycle();
+		second.recycle();
+	}
+}
@@ -0,0 +1,137 @@
+package fr.tvbarthel.apps.simplethermometer.openweathermap;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Check that {@link fr.tvbarthel.apps.simplethermometer.openweathermap.DecimalDecoder} gives the same values
+ * as {@link Float#parseFloat(String)} and {@link Long#parseLong(String)}, bit for bit, on the values found in the
+ * attributes of the OpenWeatherMap fluxes and on random ones.
+ */
+public class DecimalDecoderTest {
+
+	private static final int RANDOM_VALUES = 1000000;
+
+	@Test
+	public void decodesTheTemperatures() {
+		//every temperature with two decimals from -90 to 60 Celsius, and in Kelvin
+		for (int hundredths = -9000; hundredths <= 6000; hundredths++) {
+			assertFloat(formatHundredths(hundredths));
+			assertFloat(formatHundredths(hundredths + 27315));
+		}
+		//the api also drops the trailing zeros
+		for (int tenths = -900; tenths <= 600; tenths++) {
+			assertFloat(formatHundredths(tenths * 10).replaceAll("0$", ""));
+			assertFloat(Integer.toString(tenths));
+		}
+	}
+
+	@Test
+	public void decodesThePressuresAndTheHumidities() {
+		//every pressure with two decimals from 850 to 1090 hPa
+		for (int hundredths = 85000; hundredths <= 109000; hundredths++) {
+			assertFloat(formatHundredths(hundredths));
+		}
+		for (int humidity = 0; humidity <= 100; humidity++) {
+			assertFloat(Integer.toString(humidity));
+			assertLong(Integer.toString(humidity));
+		}
+	}
+
+	@Test
+	public void decodesTheCoordinatesAndTheWinds() {
+		final Random random = new Random(42);
+		for (int i = 0; i < RANDOM_VALUES; i++) {
+			//coordinates and wind directions with 4 decimals, wind speeds with 2
+			assertFloat(String.format(Locale.US, "%.4f", random.nextDouble() * 360 - 180));
+			assertFloat(String.format(Locale.US, "%.4f", random.nextDouble() * 360));
+			assertFloat(String.format(Locale.US, "%.2f", random.nextDouble() * 40));
+		}
+	}
+
+	@Test
+	public void decodesTheIdsAndTheTimes() {
+		final Random random = new Random(7);
+		for (int i = 0; i < RANDOM_VALUES; i++) {
+			assertLong(Integer.toString(random.nextInt(10000000)));
+			assertLong(Long.toString(1000000000L + random.nextInt(1000000000)));
+			assertLong(Long.toString(random.nextLong()));
+		}
+		assertLong("0");
+		assertLong("-0");
+		assertLong("+12");
+		assertLong(Long.toString(Long.MAX_VALUE));
+		assertLong(Long.toString(Long.MIN_VALUE));
+		assertEquals(Integer.MIN_VALUE, DecimalDecoder.parseInt(Integer.toString(Integer.MIN_VALUE)));
+	}
+
+	@Test
+	public void decodesRandomFloats() {
+		final Random random = new Random(1);
+		for (int i = 0; i < RANDOM_VALUES; i++) {
+			final float value = Float.intBitsToFloat(random.nextInt());
+			assertFloat(Float.toString(value));
+			assertFloat(Double.toString(random.nextDouble() * 2000 - 1000));
+			assertFloat(String.format(Locale.US, "%.3e", random.nextDouble() * 1e6));
+		}
+	}
+
+	@Test
+	public void decodesTheUnusualForms() {
+		for (String value : new String[]{"0", "-0", "+0", "0.0", "-0.0", ".5", "5.", "-.5", "007.50", "1e3", "1E-3", "1e+3",
+				"2.5e-10", "16777216", "16777217", "16777217.0", "0.1", "0.000000000000000000001",
+				"123456789012345678901234567890", "3.4028235e38", "3.5e38", "1.4e-45", "1e-50",
+				"NaN", "Infinity", "-Infinity", " 21.47", "21.47 ", "21.47f", "21.47d", "0x1p3"}) {
+			assertFloat(value);
+		}
+	}
+
+	@Test
+	public void rejectsTheInvalidNumbers() {
+		for (String value : new String[]{"", "-", "+", ".", "e3", "1e", "1e+", "1.2.3", "21,47", "--1", "1e3.5", "abc"}) {
+			assertSameFailure(value);
+		}
+	}
+
+	/*
+		Private Methods
+	 */
+
+	private static String formatHundredths(int hundredths) {
+		final String sign = hundredths < 0 ? "-" : "";
+		final int absolute = Math.abs(hundredths);
+		return String.format(Locale.US, "%s%d.%02d", sign, absolute / 100, absolute % 100);
+	}
+
+	private static void assertFloat(String value) {
+		final float expected = Float.parseFloat(value);
+		//decoded from a String, like the xml attributes, and from a builder, like the json numbers
+		assertEquals(value, Float.floatToIntBits(expected), Float.floatToIntBits(DecimalDecoder.parseFloat(value)));
+		assertEquals(value, Float.floatToIntBits(expected),
+				Float.floatToIntBits(DecimalDecoder.parseFloat(new StringBuilder(value))));
+	}
+
+	private static void assertLong(String value) {
+		assertEquals(value, Long.parseLong(value), DecimalDecoder.parseLong(value));
+	}
+
+	private static void assertSameFailure(String value) {
+		try {
+			Float.parseFloat(value);
+			fail("Float.parseFloat accepts " + value);
+		} catch (NumberFormatException e) {
+			//expected
+		}
+		try {
+			DecimalDecoder.parseFloat(value);
+			fail("DecimalDecoder.parseFloat accepts " + value);
+		} catch (NumberFormatException e) {
+			//expected
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package fr.tvbarthel.apps.simplethermometer.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check that {@link fr.tvbarthel.apps.simplethermometer.utils.TemperatureFormatter} writes the same chars
+ * as a {@link java.text.DecimalFormat} "#.#" in locales with other separators, signs and digits.
+ */
+public class TemperatureFormatterTest {
+
+	private static final Locale[] LOCALES = {Locale.US, Locale.FRANCE, Locale.GERMANY,
+			new Locale("ar", "EG"), new Locale("fa", "IR"), new Locale("hi", "IN"), new Locale("th", "TH", "TH")};
+	private static final int RANDOM_VALUES = 200000;
+
+	private Locale mDefaultLocale;
+
+	@Before
+	public void setUp() {
+		mDefaultLocale = Locale.getDefault();
+	}
+
+	@After
+	public void tearDown() {
+		Locale.setDefault(mDefaultLocale);
+	}
+
+	@Test
+	public void formatsLikeDecimalFormat() {
+		final char[] buffer = new char[TemperatureFormatter.MAX_LENGTH];
+		for (Locale locale : LOCALES) {
+			Locale.setDefault(locale);
+			final DecimalFormat decimalFormat = new DecimalFormat("#.#");
+			final Random random = new Random(locale.hashCode());
+
+			//the halves are rounded to even, the values rounded to zero keep their sign
+			for (float value : new float[]{0f, -0f, 0.05f, -0.05f, 0.04f, -0.04f, 0.15f, 0.25f, -0.25f, 9.95f,
+					21.47f, -40f, 1005.09f, 273.15f, 99.95f, 1e9f, -1e9f, 1e16f}) {
+				assertFormat(decimalFormat, value, buffer);
+			}
+			for (int i = 0; i < RANDOM_VALUES; i++) {
+				//two decimals, like the api
+				assertFormat(decimalFormat, Math.round((random.nextFloat() * 200 - 100) * 100) / 100f, buffer);
+				assertFormat(decimalFormat, Float.intBitsToFloat(random.nextInt()), buffer);
+			}
+		}
+	}
+
+	@Test
+	public void formatsEachUnitWithItsSymbol() {
+		Locale.setDefault(Locale.US);
+		assertEquals("21.5\u00b0C", TemperatureFormatter.format(21.47f, TemperatureUnit.CELSIUS, "\u00b0C"));
+		assertEquals("70.6\u00b0F", TemperatureFormatter.format(21.47f, TemperatureUnit.FAHRENHEIT, "\u00b0F"));
+		assertEquals("294.6K", TemperatureFormatter.format(21.47f, TemperatureUnit.KELVIN, "K"));
+		assertEquals("\u221e\u00b0C", TemperatureFormatter.format(Float.POSITIVE_INFINITY, TemperatureUnit.CELSIUS, "\u00b0C"));
+	}
+
+	@Test
+	public void formatsAllTheLabels() {
+		Locale.setDefault(Locale.FRANCE);
+		final float[] temperatures = {-3.26f, 0f, 12.04f, 21.47f};
+		final char[] buffer = new char[temperatures.length * TemperatureFormatter.MAX_LENGTH];
+		final int[] ends = new int[temperatures.length];
+
+		assertEquals(temperatures.length, TemperatureFormatter.formatAll(temperatures, temperatures.length,
+				TemperatureUnit.CELSIUS, buffer, ends));
+		final String[] expected = {"-3,3", "0", "12", "21,5"};
+		for (int i = 0; i < expected.length; i++) {
+			final int start = i == 0 ? 0 : ends[i - 1];
+			assertEquals(expected[i], new String(buffer, start, ends[i] - start));
+		}
+	}
+
+	private static void assertFormat(DecimalFormat decimalFormat, float value, char[] buffer) {
+		final String expected = decimalFormat.format(value);
+		final int length = TemperatureFormatter.format(value, buffer, 0);
+		if (length < 0) {
+			//not finite or too large, given to a DecimalFormat
+			assertEquals(expected, TemperatureFormatter.append(new StringBuilder(), value, buffer).toString());
+		} else {
+			assertEquals("format of " + value, expected, new String(buffer, 0, length));
+		}
+	}
+}